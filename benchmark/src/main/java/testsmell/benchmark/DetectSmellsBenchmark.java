@@ -0,0 +1,40 @@
+package testsmell.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import testsmell.TestFile;
+import testsmell.TestSmellDetector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a complete class level analysis of a test file, from reading and parsing the files to the results of all
+ * detectors. The production file cache is disabled, so that every invocation parses both files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DetectSmellsBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public TestClassSize size;
+
+    private TestSmellDetector detector;
+    private TestFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        detector = new TestSmellDetector(null);
+        file = size.write(Files.createTempDirectory("tsdetect-benchmark"));
+    }
+
+    @Benchmark
+    public TestFile detectSmells() throws IOException {
+        TestFile testFile = new TestFile(file.getApp(), file.getTestFilePath(), file.getProductionFilePath());
+        return detector.detectSmells(testFile);
+    }
+}
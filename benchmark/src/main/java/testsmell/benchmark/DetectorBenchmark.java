@@ -0,0 +1,62 @@
+package testsmell.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import testsmell.AbstractSmell;
+import testsmell.AnalysisSession;
+import testsmell.SmellResult;
+import testsmell.TestSmellDetector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each detector on its own against pre-parsed test and production files, so that a detector whose cost grows
+ * faster than the size of the test class stands out when comparing the sizes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DetectorBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public TestClassSize size;
+
+    @Param({"Assertion Roulette", "Conditional Test Logic", "Constructor Initialization", "Default Test",
+            "Dependent Test", "Duplicate Assert", "Eager Test", "EmptyTest", "Exception Catching Throwing",
+            "General Fixture", "IgnoredTest", "Lazy Test", "Magic Number Test", "Mystery Guest", "Print Statement",
+            "Redundant Assertion", "Resource Optimism", "Sensitive Equality", "Sleepy Test", "Unknown Test",
+            "Verbose Test"})
+    public String smellName;
+
+    private AbstractSmell smell;
+    private AnalysisSession session;
+
+    @Setup
+    public void setUp() throws IOException {
+        TestSmellDetector detector = new TestSmellDetector(null);
+        smell = detector.getTestSmellsClassLevel().stream()
+                .filter(x -> x.getSmellName().equals(smellName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown smell: " + smellName));
+        Path directory = Files.createTempDirectory("tsdetect-benchmark");
+        session = detector.openSession(size.write(directory));
+        // parse both files up front; the session keeps the ASTs for all invocations
+        session.getTestFileCompilationUnit();
+        session.getProductionMethodIndex();
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+    }
+
+    @Benchmark
+    public SmellResult analyze() throws IOException {
+        return smell.analyze(session);
+    }
+}
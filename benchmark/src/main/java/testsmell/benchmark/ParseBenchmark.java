@@ -0,0 +1,34 @@
+package testsmell.benchmark;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of parsing a test class, which every analysis pays before any detector runs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public TestClassSize size;
+
+    private String testSource;
+
+    @Setup
+    public void setUp() {
+        testSource = size.testSource();
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return JavaParser.parse(testSource);
+    }
+}
@@ -0,0 +1,88 @@
+package testsmell.benchmark;
+
+import testsmell.TestFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The sizes of the generated test classes the benchmarks run against. Every test method calls several production
+ * methods, shares production methods with other test methods and reads a part of the fixture, so that the detectors
+ * whose cost grows with the number of methods and fields (Eager Test, Lazy Test, General Fixture) are exercised.
+ */
+public enum TestClassSize {
+    SMALL(5, 10, 3),
+    MEDIUM(50, 50, 20),
+    LARGE(2000, 500, 200);
+
+    private final int testMethods;
+    private final int productionMethods;
+    private final int fixtureFields;
+
+    TestClassSize(int testMethods, int productionMethods, int fixtureFields) {
+        this.testMethods = testMethods;
+        this.productionMethods = productionMethods;
+        this.fixtureFields = fixtureFields;
+    }
+
+    public String productionSource() {
+        StringBuilder source = new StringBuilder();
+        source.append("package bench;\n\n");
+        source.append("public class Subject {\n");
+        for (int j = 0; j < productionMethods; j++) {
+            source.append("    public int method").append(j).append("(int value) {\n");
+            source.append("        return value + ").append(j).append(";\n");
+            source.append("    }\n\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    public String testSource() {
+        StringBuilder source = new StringBuilder();
+        source.append("package bench;\n\n");
+        source.append("import org.junit.Before;\n");
+        source.append("import org.junit.Test;\n\n");
+        source.append("import static org.junit.Assert.*;\n\n");
+        source.append("public class SubjectTest {\n");
+        source.append("    private Subject subject;\n");
+        for (int k = 0; k < fixtureFields; k++) {
+            source.append("    private int field").append(k).append(";\n");
+        }
+        source.append("\n    @Before\n");
+        source.append("    public void setUp() {\n");
+        source.append("        subject = new Subject();\n");
+        for (int k = 0; k < fixtureFields; k++) {
+            source.append("        field").append(k).append(" = ").append(k).append(";\n");
+        }
+        source.append("    }\n");
+        for (int i = 0; i < testMethods; i++) {
+            source.append("\n    @Test\n");
+            source.append("    public void testMethod").append(i).append("() {\n");
+            source.append("        int value = subject.method").append(i % productionMethods).append("(field").append(i % fixtureFields).append(");\n");
+            source.append("        int other = subject.method").append((i + 1) % productionMethods).append("(value);\n");
+            source.append("        if (other > 3) {\n");
+            source.append("            System.out.println(other);\n");
+            source.append("        }\n");
+            source.append("        assertEquals(").append(i).append(", value);\n");
+            source.append("        assertTrue(other >= value);\n");
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Writes the test and production class to the given directory
+     * @return the test file referring to the written classes
+     */
+    public TestFile write(Path directory) throws IOException {
+        Path productionFile = directory.resolve("Subject.java");
+        Path testFile = directory.resolve("SubjectTest.java");
+        Files.write(productionFile, productionSource().getBytes(StandardCharsets.UTF_8));
+        Files.write(testFile, testSource().getBytes(StandardCharsets.UTF_8));
+        return new TestFile("bench", testFile.toString(), productionFile.toString());
+    }
+}
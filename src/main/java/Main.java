@@ -1,162 +1,240 @@
-import testsmell.AbstractSmell;
+import testsmell.AnalysisPipeline;
+import testsmell.AnalysisServer;
+import testsmell.DatabaseResultsSink;
+import testsmell.GitChangeSet;
+import testsmell.IncrementalResults;
+import testsmell.Instrumentation;
+import testsmell.ManifestReader;
+import testsmell.ProductionFileCache;
+import testsmell.ResultCache;
+import testsmell.ResultsSink;
 import testsmell.ResultsWriter;
-import testsmell.SmellyElement;
+import testsmell.RunOptions;
+import testsmell.SourceCrawler;
+import testsmell.SourceWatcher;
 import testsmell.TestFile;
+import testsmell.TestFileAnalyzer;
 import testsmell.TestSmellDetector;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.LinkedHashMap;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 public class Main {
     public static void main(String[] args) throws IOException {
-        if (args == null) {
+        RunOptions options;
+        try {
+            options = RunOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (options.getInputFile() == null && options.getSourceRoots() == null && !options.isServer()) {
             System.out.println("Please provide the file containing the paths to the collection of test files");
             return;
         }
-        if(!args[0].isEmpty()){
-            File inputFile = new File(args[0]);
+        if(options.getInputFile() != null && options.getSourceRoots() == null && !options.getInputFile().isEmpty()){
+            File inputFile = new File(options.getInputFile());
             if(!inputFile.exists() || inputFile.isDirectory()) {
                 System.out.println("Please provide a valid file containing the paths to the collection of test files");
                 return;
             }
         }
 
-        TestSmellDetector testSmellDetector = new TestSmellDetector();
+        Instrumentation instrumentation = options.isInstrument() ? new Instrumentation() : Instrumentation.DISABLED;
+        TestSmellDetector testSmellDetector = new TestSmellDetector(new ProductionFileCache(options.getProductionCacheBytes()), instrumentation);
+        testSmellDetector.setPrescan(options.isPrescan());
+
+        if (options.isServer()) {
+            serve(testSmellDetector, options);
+            System.out.println(testSmellDetector.getProductionFileCache().getStatistics());
+            System.out.println("end");
+            return;
+        }
 
         /*
-          Read the input file and build the TestFile objects
+          Open the input file and initialize the output file - Create the output file and add the column names
          */
-        BufferedReader in = new BufferedReader(new FileReader(args[0]));
-        String str;
-
-        String[] lineItem;
-        TestFile testFile;
-        List<TestFile> testFiles = new ArrayList<>();
-        while ((str = in.readLine()) != null) {
-            // use comma as separator
-            lineItem = str.split(",");
+        ResultCache resultCache = null;
+        try (ManifestReader manifest = options.getSourceRoots() == null ? new ManifestReader(options.getInputFile()) : null;
+             ResultsSink resultsWriter = options.getDatabaseUrl() != null ? DatabaseResultsSink.open(options.getDatabaseUrl(), instrumentation)
+                     : ResultsWriter.createResultsWriter(options.getFormat(), options.getFlushThreshold(), options.getFlushIntervalMillis(), options.isAsyncWriter(), instrumentation)) {
+            resultCache = openResultCache(testSmellDetector, options);
+            TestFileAnalyzer analyzer = new TestFileAnalyzer(testSmellDetector, resultCache, options.isMetrics());
+            Iterator<TestFile> testFiles = manifest;
+            if (manifest == null && !options.isWatch()) {
+                /*
+                  Discover the test files and their production files in the source roots instead of reading them
+                */
+                List<TestFile> discovered = new SourceCrawler(options.getSourceRoots()).discover();
+                System.out.println("Discovered " + discovered.size() + " test files");
+                testFiles = discovered.iterator();
+            }
 
-            //check if the test file has an associated production file
-            if(lineItem.length ==2){
-                testFile = new TestFile(lineItem[0], lineItem[1], "");
+            if (options.isWatch()) {
+                /*
+                  Analyze the test files of the source roots, then again whenever they change, until the run is stopped
+                */
+                resultsWriter.writeColumnName(analyzer.getColumnNames());
+                try (SourceWatcher watcher = new SourceWatcher(options.getSourceRoots(), analyzer, options.getDebounceMillis())) {
+                    watcher.run(resultsWriter);
+                }
+            } else if (options.getGitRange() != null) {
+                /*
+                  Only analyze the test files affected by the revision range and merge their rows into the baseline
+                */
+                GitChangeSet changes = GitChangeSet.between(new File(options.getGitRepository()), options.getGitRange());
+                IncrementalResults results = new IncrementalResults(changes, options.getBaselineFile());
+                analyze(analyzer, results.select(testFiles), results::add, options);
+                results.write(resultsWriter, analyzer.getColumnNames());
+                System.out.println("Analyzed " + results.getAnalyzedFileCount() + " test files affected by " + changes.size() + " changed files");
+            } else {
+                /*
+                  Stream the test files of the input file to detect smells and then write the output
+                */
+                resultsWriter.writeColumnName(analyzer.getColumnNames());
+                analyze(analyzer, testFiles, rows -> writeRows(resultsWriter, rows), options);
             }
-            else{
-                testFile = new TestFile(lineItem[0], lineItem[1], lineItem[2]);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (resultCache != null) {
+                resultCache.close();
             }
-
-            testFiles.add(testFile);
         }
+        System.out.println(testSmellDetector.getProductionFileCache().getStatistics());
+        if (resultCache != null) {
+            System.out.println(resultCache.getStatistics());
+        }
+        if (instrumentation.isEnabled()) {
+            System.out.print(instrumentation.getReport());
+            if (options.getInstrumentFile() != null) {
+                instrumentation.writeReport(options.getInstrumentFile());
+            }
+        }
+        System.out.println("end");
+    }
 
-        /*
-          Initialize the output file - Create the output file and add the column names
-         */
-        ResultsWriter resultsWriter = ResultsWriter.createResultsWriter();
-        List<String> columnNames;
-        List<String> columnValues;
-        columnNames = new ArrayList<>();
-        columnNames.add("App");
-        columnNames.add("TestClass");
-        columnNames.add("TestMethod");
-        columnNames.add("TestFilePath");
-        columnNames.add("ProductionFilePath");
-        columnNames.add("RelativeTestFilePath");
-        columnNames.add("RelativeProductionFilePath");
-        columnNames.addAll(testSmellDetector.getTestSmellNames());
-        resultsWriter.writeColumnName(columnNames);
+    /**
+     * Opens the result cache, if one is given
+     */
+    private static ResultCache openResultCache(TestSmellDetector testSmellDetector, RunOptions options) throws IOException {
+        if (options.getResultCacheFile() == null) {
+            return null;
+        }
+        // results with and without metrics have different columns
+        return new ResultCache(new File(options.getResultCacheFile()), options.getResultCacheBytes(),
+                options.getResultCacheMode(), testSmellDetector.getDetectorSetVersion() + (options.isMetrics() ? ";metrics" : ""));
+    }
 
-        /*
-          Iterate through all test files to detect smells and then write the output
-        */
-        DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-        for (TestFile file : testFiles) {
-            // detect smells at class level
-            System.out.println(dateFormat.format(new Date()) + " Processing at class level: " + file.getTestFilePath());
-            Map<String, String> classSmellResults = new LinkedHashMap<>();
-            for (String testSmellNames : testSmellDetector.getTestSmellNames()) {
-            	classSmellResults.put(testSmellNames, "");
+    /**
+     * Serves analysis requests with a warm detector until a client requests a shutdown
+     */
+    private static void serve(TestSmellDetector testSmellDetector, RunOptions options) throws IOException {
+        ResultCache resultCache = openResultCache(testSmellDetector, options);
+        try {
+            TestFileAnalyzer analyzer = new TestFileAnalyzer(testSmellDetector, resultCache, options.isMetrics());
+            try (AnalysisServer server = AnalysisServer.start(analyzer, options.getServerPort(), options.getServerThreads())) {
+                System.out.println("Listening on http://127.0.0.1:" + server.getPort() + "/");
+                server.warmUp(options.getWarmUpRounds());
+                System.out.println("Ready");
+                server.awaitShutdownRequest();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            file.clearSmells();
-            testSmellDetector.detectSmellsClassLevel(file);
-            columnValues = new ArrayList<>();
-            columnValues.add(file.getApp());
-            columnValues.add(file.getTestFileName());
-            columnValues.add("");
-            columnValues.add(file.getTestFilePath());
-            columnValues.add(file.getProductionFilePath());
-            columnValues.add(file.getRelativeTestFilePath());
-            columnValues.add(file.getRelativeProductionFilePath());
-            for (AbstractSmell smell : file.getTestSmells()) {
-                try {
-                	classSmellResults.put(smell.getSmellName(), String.valueOf(smell.getHasSmell()));
-                } catch (NullPointerException e){
-                	classSmellResults.put(smell.getSmellName(), "");
-                }
+        } finally {
+            if (resultCache != null) {
+                resultCache.close();
             }
-            for (String smellValue : classSmellResults.values()) {
-            	columnValues.add(smellValue);
+        }
+        if (resultCache != null) {
+            System.out.println(resultCache.getStatistics());
+        }
+    }
+
+    private static void analyze(TestFileAnalyzer analyzer, Iterator<TestFile> testFiles, AnalysisPipeline.RowSink sink, RunOptions options) throws IOException {
+        int parallelism = options.getParallelism();
+        if (options.isPipeline()) {
+            ThreadFactory readThreadFactory = null;
+            if (options.isVirtualThreads()) {
+                readThreadFactory = AnalysisPipeline.virtualThreadFactory();
+                if (readThreadFactory == null) {
+                    System.out.println("Virtual threads are not supported by this JVM, reading with " + options.getReadThreads() + " threads");
+                }
             }
-            resultsWriter.writeLine(columnValues);
-            
-            // detect smells at method level
-            System.out.println(dateFormat.format(new Date()) + " Processing at method level: " + file.getTestFilePath());
-            file.clearSmells();
-            testSmellDetector.detectSmellsMethodLevel(file);
-            Map<String, Map<String, String>> allMethodsResult = new LinkedHashMap<>(); // Map of test path + test method name to a map of smell name and its value
-            for (AbstractSmell smell : file.getTestSmells()) {
-            	for (SmellyElement smellyElement : smell.getSmellyElements()) {
-                    System.out.println(dateFormat.format(new Date()) + " Processing at method level: " + file.getTestFileNameWithoutExtension() + "." + smellyElement.getElementName());
-                    // Create (empty) results on demand for each method which has at least one smell
-                    Map<String, String> methodSmellResults;
-                    if (! allMethodsResult.containsKey(smellyElement.getElementName())) {
-                        methodSmellResults = new LinkedHashMap<>();
-                        for (String testSmellNames : testSmellDetector.getTestSmellNames()) {
-                        	methodSmellResults.put(testSmellNames, "");
-                        }
-                        allMethodsResult.put(smellyElement.getElementName(), methodSmellResults);
-                    } else {
-                    	methodSmellResults = allMethodsResult.get(smellyElement.getElementName());
-                    }
-                    try {
-                    	methodSmellResults.put(smell.getSmellName(), String.valueOf(smellyElement.getHasSmell()));
-                    } catch (NullPointerException e){
-                    	methodSmellResults.put(smell.getSmellName(), "");
-                    }
-            	}
+            int readThreads = readThreadFactory == null ? options.getReadThreads() : options.getConcurrentReads();
+            new AnalysisPipeline(analyzer, readThreadFactory, readThreads, options.getParseThreads(), options.getDetectThreads(),
+                    options.getQueueCapacity()).run(testFiles, sink);
+        } else if (parallelism == 1) {
+            while (testFiles.hasNext()) {
+                sink.accept(analyzer.analyze(testFiles.next()));
             }
+        } else {
+            analyzeInParallel(analyzer, testFiles, sink, parallelism);
+        }
+    }
 
-            for (Map.Entry<String, Map<String, String>> entry : allMethodsResult.entrySet()) {
-            	Map<String, String> methodSmellResults = new LinkedHashMap<>();
-                for (String testSmellNames : testSmellDetector.getTestSmellNames()) {
-                	methodSmellResults.put(testSmellNames, "");
-                }
-            	columnValues = new ArrayList<>();
-            	columnValues.add(file.getApp());
-            	columnValues.add(file.getTestFileName());
-            	columnValues.add(entry.getKey());
-            	columnValues.add(file.getTestFilePath());
-            	columnValues.add(file.getProductionFilePath());
-            	columnValues.add(file.getRelativeTestFilePath());
-            	columnValues.add(file.getRelativeProductionFilePath());
-            	for (AbstractSmell smell : file.getTestSmells()) {
-                   	methodSmellResults.put(smell.getSmellName(), String.valueOf(entry.getValue().get(smell.getSmellName())));
-                }
-                for (String smellValue : methodSmellResults.values()) {
-                	columnValues.add(smellValue);
+    /**
+     * Analyzes the test files on a work-stealing pool. The rows are written in the order of the test files; at most a
+     * few files per thread are analyzed ahead of the file that is written next, which bounds the buffered results.
+     */
+    static void analyzeInParallel(TestFileAnalyzer analyzer, Iterator<TestFile> testFiles, AnalysisPipeline.RowSink sink, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Deque<Future<List<List<String>>>> pending = new ArrayDeque<>();
+            while (testFiles.hasNext()) {
+                TestFile file = testFiles.next();
+                // unlike a task submitted to the pool, which wraps checked exceptions, a future task fails with the
+                // exception of the analysis
+                FutureTask<List<List<String>>> task = new FutureTask<>(() -> analyzer.analyze(file));
+                pool.execute(task);
+                pending.add(task);
+                if (pending.size() >= parallelism * 4) {
+                    sink.accept(await(pending.poll()));
                 }
-                resultsWriter.writeLine(columnValues);
             }
+            while (!pending.isEmpty()) {
+                sink.accept(await(pending.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
         }
-        System.out.println("end");
     }
 
+    private static List<List<String>> await(Future<List<List<String>>> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the analysis of a test file");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
 
+    private static void writeRows(ResultsSink resultsWriter, List<List<String>> rows) throws IOException {
+        for (List<String> columnValues : rows) {
+            resultsWriter.writeLine(columnValues);
+        }
+    }
 }
@@ -1,16 +1,63 @@
 package testsmell;
 
-import com.github.javaparser.ast.CompilationUnit;
-
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A smell detector. Detectors hold no state of the analyzed files: the state of an analysis is kept by the visitor
+ * created for it, so a single detector instance can serve any number of analyses, also concurrently.
+ */
 public abstract class AbstractSmell {
     public abstract String getSmellName();
 
-    public abstract boolean getHasSmell();
+    /**
+     * Creates the visitor that collects the smell while the test file AST is traversed by a {@link SmellTraversal}.
+     * Any analysis that does not involve the test file AST (e.g. of the production file) is done here.
+     * @throws FileNotFoundException if a file required by the smell is not available; the smell is then not applicable
+     * @throws IOException
+     */
+    public abstract SmellVisitor createVisitor(AnalysisSession session) throws IOException;
+
+    /**
+     * Provides the tokens without which this smell cannot occur in a test file: the smell can only occur if the source
+     * of the test file contains at least one token of every group. Test files that do not are not inspected for the
+     * smell (see {@link #createVisitorWithoutSmell}).
+     * @return the groups of tokens; empty if the smell can occur in any test file
+     */
+    public List<List<String>> getRequiredTokens() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Creates the visitor used in place of {@link #createVisitor} for a test file that lacks the required tokens. It
+     * must provide exactly the result the visitor of {@link #createVisitor} would provide for the file, but can do so
+     * without inspecting the nodes that could contain the smell.
+     */
+    public SmellVisitor createVisitorWithoutSmell(AnalysisSession session) throws IOException {
+        return createVisitor(session);
+    }
 
-    public abstract void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException;
+    /**
+     * Analyzes the test file of the session for this smell alone. To analyze several smells with a single traversal
+     * of the AST, traverse the visitors of all smells together (see {@link TestSmellDetector}).
+     */
+    public SmellResult analyze(AnalysisSession session) throws IOException {
+        SmellVisitor visitor;
+        try {
+            visitor = createVisitor(session);
+        } catch (FileNotFoundException e) {
+            return SmellResult.notApplicable(getSmellName());
+        }
+        SmellTraversal.traverse(session.getTestFileCompilationUnit(), Collections.singletonList(visitor));
+        return getResult(visitor);
+    }
 
-    public abstract List<SmellyElement> getSmellyElements();
+    /**
+     * Provides the result collected by a visitor of this smell once the traversal is complete
+     */
+    public SmellResult getResult(SmellVisitor visitor) {
+        return new SmellResult(getSmellName(), visitor.getSmellyElements());
+    }
 }
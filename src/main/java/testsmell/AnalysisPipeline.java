@@ -0,0 +1,420 @@
+package testsmell;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Analyzes test files in stages that run concurrently, each on its own threads and connected by bounded queues:
+ * <ol>
+ *     <li>read: takes the next test file, looks up its result in the result cache and reads its source (I/O bound)</li>
+ *     <li>parse: parses the test file and the production file (CPU bound)</li>
+ *     <li>detect: runs the detectors and converts the smells into rows (CPU bound)</li>
+ *     <li>write: hands the rows to the sink, in the order of the test files, on the thread that runs the pipeline</li>
+ * </ol>
+ * The number of test files between the read and the write stage is bounded, so a slow sink blocks the earlier stages
+ * instead of accumulating parsed files on the heap. The first failure of a stage stops the pipeline and is thrown by
+ * {@link #run(Iterator, RowSink)}.
+ * <p>
+ * Alternatively, the read stage starts a thread per test file from a given factory, e.g. virtual threads (see
+ * {@link #virtualThreadFactory()}), so that many reads with a high latency, e.g. from network storage, are in flight
+ * at once while parsing and detection stay on a bounded number of threads.
+ */
+public class AnalysisPipeline {
+
+    /**
+     * Receives the rows of each analyzed test file, in the order of the test files
+     */
+    public interface RowSink {
+        void accept(List<List<String>> rows) throws IOException;
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final long FAILURE_CHECK_MILLIS = 100;
+
+    /**
+     * Marks the end of the test files in the queue of a stage; compared by identity
+     */
+    private static final Item END = new Item(-1, null);
+
+    private final TestFileAnalyzer analyzer;
+    private final int readThreads;
+    private final int parseThreads;
+    private final int detectThreads;
+    private final int queueCapacity;
+    private final ThreadFactory readThreadFactory;
+
+    /**
+     * @param analyzer the analyzer the test files are analyzed with
+     * @param readThreads the number of threads reading test files
+     * @param parseThreads the number of threads parsing test and production files
+     * @param detectThreads the number of threads detecting smells
+     * @param queueCapacity the number of test files each queue between two stages holds
+     */
+    public AnalysisPipeline(TestFileAnalyzer analyzer, int readThreads, int parseThreads, int detectThreads, int queueCapacity) {
+        this(analyzer, null, readThreads, parseThreads, detectThreads, queueCapacity);
+    }
+
+    /**
+     * @param analyzer the analyzer the test files are analyzed with
+     * @param readThreadFactory creates a thread per test file that reads it; null to read with a fixed number of threads
+     * @param readThreads the number of test files read at the same time
+     * @param parseThreads the number of threads parsing test and production files
+     * @param detectThreads the number of threads detecting smells
+     * @param queueCapacity the number of test files each queue between two stages holds
+     */
+    public AnalysisPipeline(TestFileAnalyzer analyzer, ThreadFactory readThreadFactory, int readThreads, int parseThreads, int detectThreads, int queueCapacity) {
+        if (readThreads < 1 || parseThreads < 1 || detectThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("A pipeline needs at least one thread per stage and a queue capacity of at least one");
+        }
+        this.analyzer = analyzer;
+        this.readThreadFactory = readThreadFactory;
+        this.readThreads = readThreads;
+        this.parseThreads = parseThreads;
+        this.detectThreads = detectThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Looks up the factory of virtual threads of the running JVM. The classes are compiled for Java 8, so the factory
+     * is obtained reflectively. A class calling {@code Thread.ofVirtual()} directly in a multi-release jar would
+     * require JDK 21 for every build, and would not be used when the classes are run from a directory, as by the
+     * tests.
+     * @return the factory, or null if the JVM does not support virtual threads (before Java 21, or Java 19 and 20
+     * without preview features)
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "tsDetect-read-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A test file passed from stage to stage
+     */
+    private static final class Item {
+        final long sequence;
+        final TestFile file;
+        TestFileAnalyzer.Analysis analysis;
+        AnalysisSession session;
+
+        Item(long sequence, TestFile file) {
+            this.sequence = sequence;
+            this.file = file;
+        }
+    }
+
+    /**
+     * The state of a single run
+     */
+    private final class Run {
+        final Iterator<TestFile> testFiles;
+        final BlockingQueue<Item> parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Item> detectQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Item> writeQueue;
+        /**
+         * Test files taken but not written yet; also bounds the files the writer holds back to restore their order
+         */
+        final Semaphore inFlight;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        /**
+         * The threads started per test file, if any
+         */
+        final Set<Thread> fileReaders = ConcurrentHashMap.newKeySet();
+        long nextSequence;
+
+        Run(Iterator<TestFile> testFiles) {
+            this.testFiles = testFiles;
+            int maxInFlight = readThreads + parseThreads + detectThreads + 2 * queueCapacity;
+            // the write queue can take every file in flight, so the detect stage never waits for the sink
+            this.writeQueue = new ArrayBlockingQueue<>(maxInFlight + 1);
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        void start() {
+            AtomicInteger liveParsers = new AtomicInteger(parseThreads);
+            AtomicInteger liveDetectors = new AtomicInteger(detectThreads);
+            if (readThreadFactory == null) {
+                AtomicInteger liveReaders = new AtomicInteger(readThreads);
+                for (int i = 1; i <= readThreads; i++) {
+                    addThread("tsDetect-read-" + i, () -> {
+                        try {
+                            read();
+                        } finally {
+                            endReader(liveReaders);
+                        }
+                    });
+                }
+            } else {
+                // the dispatching thread counts as a reader until it has started the thread of the last test file
+                AtomicInteger liveReaders = new AtomicInteger(1);
+                addThread("tsDetect-read-dispatch", () -> {
+                    try {
+                        dispatch(liveReaders);
+                    } finally {
+                        endReader(liveReaders);
+                    }
+                });
+            }
+            for (int i = 1; i <= parseThreads; i++) {
+                addThread("tsDetect-parse-" + i, () -> process(parseQueue, detectQueue, liveParsers, this::parse));
+            }
+            for (int i = 1; i <= detectThreads; i++) {
+                addThread("tsDetect-detect-" + i, () -> process(detectQueue, writeQueue, liveDetectors, this::detect));
+            }
+            // all threads exist before the first starts, a failing thread interrupts the others
+            for (Thread thread : threads) {
+                thread.start();
+            }
+        }
+
+        private void addThread(String name, StageBody body) {
+            Thread thread = new Thread(guard(body), name);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+
+        private Runnable guard(StageBody body) {
+            return () -> {
+                try {
+                    body.run();
+                } catch (InterruptedException | InterruptedIOException e) {
+                    // the pipeline is stopping
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            };
+        }
+
+        private void endReader(AtomicInteger liveReaders) {
+            if (liveReaders.decrementAndGet() == 0) {
+                putQuietly(parseQueue, END);
+            }
+        }
+
+        /**
+         * Takes the next test file once it may be read, i.e. fewer than the maximum number of files are in flight
+         * @return the test file, or null if there are no more test files
+         */
+        private Item next() throws InterruptedException {
+            inFlight.acquire();
+            synchronized (testFiles) {
+                if (failure.get() != null || !testFiles.hasNext()) {
+                    inFlight.release();
+                    return null;
+                }
+                return new Item(nextSequence++, testFiles.next());
+            }
+        }
+
+        private void read() throws IOException, InterruptedException {
+            for (Item item = next(); item != null; item = next()) {
+                read(item);
+            }
+        }
+
+        /**
+         * Starts a thread per test file that reads the file
+         */
+        private void dispatch(AtomicInteger liveReaders) throws InterruptedException {
+            for (Item next = next(); next != null; next = next()) {
+                liveReaders.incrementAndGet();
+                Item item = next;
+                Thread reader = readThreadFactory.newThread(guard(() -> {
+                    try {
+                        read(item);
+                    } finally {
+                        fileReaders.remove(Thread.currentThread());
+                        endReader(liveReaders);
+                    }
+                }));
+                fileReaders.add(reader);
+                reader.start();
+            }
+        }
+
+        private void read(Item item) throws IOException, InterruptedException {
+            // with a result cache, this reads the files to compute their key
+            item.analysis = analyzer.begin(item.file);
+            if (!item.analysis.isComplete()) {
+                item.session = analyzer.getTestSmellDetector().openSession(item.file);
+                item.session.readTestFile();
+            }
+            parseQueue.put(item);
+        }
+
+        private void parse(Item item) throws IOException {
+            if (item.session != null) {
+                item.session.getTestFileCompilationUnit();
+                item.session.getProductionFileCompilationUnit();
+            }
+        }
+
+        private void detect(Item item) throws IOException {
+            if (item.session != null) {
+                try (AnalysisSession session = item.session) {
+                    analyzer.complete(item.analysis, session);
+                }
+                item.session = null;
+            }
+        }
+
+        /**
+         * Runs a stage on the items of its input queue until the end marker; the last thread of the stage to see the
+         * marker passes it on to the next stage
+         */
+        private void process(BlockingQueue<Item> input, BlockingQueue<Item> output, AtomicInteger liveThreads, Step step) throws IOException, InterruptedException {
+            try {
+                while (true) {
+                    Item item = input.take();
+                    if (item == END) {
+                        // leave the marker for the other threads of the stage
+                        input.put(END);
+                        return;
+                    }
+                    step.apply(item);
+                    output.put(item);
+                }
+            } finally {
+                if (liveThreads.decrementAndGet() == 0) {
+                    putQuietly(output, END);
+                }
+            }
+        }
+
+        private void putQuietly(BlockingQueue<Item> queue, Item item) {
+            // after a failure the queue may be full and nobody takes from it
+            if (failure.get() == null) {
+                try {
+                    queue.put(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void fail(Throwable t) {
+            if (failure.compareAndSet(null, t)) {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+                for (Thread thread : fileReaders) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Writes the rows of the analyzed test files in their order
+         */
+        void write(RowSink sink) throws IOException {
+            Map<Long, Item> heldBack = new HashMap<>();
+            long nextToWrite = 0;
+            while (true) {
+                Item item;
+                try {
+                    item = writeQueue.poll(FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the analysis of a test file");
+                }
+                throwFailure();
+                if (item == END) {
+                    return;
+                }
+                if (item == null) {
+                    continue;
+                }
+                heldBack.put(item.sequence, item);
+                for (Item next = heldBack.remove(nextToWrite); next != null; next = heldBack.remove(nextToWrite)) {
+                    sink.accept(next.analysis.getRows());
+                    nextToWrite++;
+                    inFlight.release();
+                }
+            }
+        }
+
+        void throwFailure() throws IOException {
+            Throwable cause = failure.get();
+            if (cause == null) {
+                return;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+
+        void stop() {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            // no thread is started per test file once the dispatching thread ended
+            for (Thread thread : fileReaders) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private interface StageBody {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private interface Step {
+        void apply(Item item) throws IOException;
+    }
+
+    /**
+     * Analyzes the test files and hands their rows to the sink, in the order of the test files
+     * @param testFiles the test files; only the read stage takes from the iterator, one thread at a time
+     * @param sink receives the rows on the calling thread
+     * @throws IOException the first failure of a stage or of the sink
+     */
+    public void run(Iterator<TestFile> testFiles, RowSink sink) throws IOException {
+        Run run = new Run(testFiles);
+        try {
+            run.start();
+            run.write(sink);
+        } catch (IOException | RuntimeException | Error e) {
+            // stop the stages before the failure leaves the pipeline
+            run.fail(e);
+            throw e;
+        } finally {
+            run.stop();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package testsmell;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The smells of a test class at class and at method level, as returned by the analysis of sources held in memory,
+ * see {@link TestSmellDetector#analyzeSource(String, String, String)}. Results are immutable.
+ */
+public final class AnalysisResult {
+
+    private final List<SmellResult> classLevelSmells;
+    private final List<SmellResult> methodLevelSmells;
+
+    AnalysisResult(List<SmellResult> classLevelSmells, List<SmellResult> methodLevelSmells) {
+        this.classLevelSmells = Collections.unmodifiableList(classLevelSmells);
+        this.methodLevelSmells = Collections.unmodifiableList(methodLevelSmells);
+    }
+
+    /**
+     * Returns the results of the class level detectors, in the order of {@link TestSmellDetector#getTestSmellNamesClassLevel()}
+     */
+    public List<SmellResult> getClassLevelSmells() {
+        return classLevelSmells;
+    }
+
+    /**
+     * Returns the results of the method level detectors, whose elements are the test methods, in the order of
+     * {@link TestSmellDetector#getTestSmellNamesMethodLevel()}
+     */
+    public List<SmellResult> getMethodLevelSmells() {
+        return methodLevelSmells;
+    }
+
+    /**
+     * Returns the class level result of a smell
+     * @return the result, or null if there is no class level detector of the smell
+     */
+    public SmellResult getClassLevelSmell(String smellName) {
+        for (SmellResult smell : classLevelSmells) {
+            if (smell.getSmellName().equals(smellName)) {
+                return smell;
+            }
+        }
+        return null;
+    }
+}
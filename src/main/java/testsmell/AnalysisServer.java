@@ -0,0 +1,328 @@
+package testsmell;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Serves analysis requests over HTTP on the loopback interface, so that a single JVM with warm detectors and caches
+ * analyzes the test files of many runs, e.g. one per module of a build.
+ * <ul>
+ *     <li>{@code POST /analyze}: the body is a manifest ({@code app,testFilePath[,productionFilePath]} per line), or
+ *     with {@code ?input=roots} a source root directory per line (see {@link SourceCrawler}). The rows are streamed
+ *     back as CSV with a header line, or with {@code ?format=jsonl} as JSON Lines, as soon as each test file is
+ *     analyzed. The id of the request is returned in the {@code X-Request-Id} header.</li>
+ *     <li>{@code DELETE /analyze/<id>}: cancels a running request; its response ends after the test file being
+ *     analyzed. A request is also cancelled when its client disconnects.</li>
+ *     <li>{@code GET /status}: reports that the server is ready and the number of running requests, or fails with
+ *     503 until the warm-up is done; requests are served during the warm-up as well.</li>
+ *     <li>{@code POST /shutdown}: stops the server once the running requests are cancelled.</li>
+ * </ul>
+ * Requests are analyzed concurrently, each on a thread of a bounded pool; the analyzer and its caches are shared. The
+ * other endpoints are served by threads of their own, so that a request can be cancelled while the pool is busy.
+ */
+public class AnalysisServer implements Closeable {
+
+    private static final int WARM_UP_CLASSES = 50;
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private final TestFileAnalyzer analyzer;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExecutorService analysisExecutor;
+    private final Map<String, Request> requests = new ConcurrentHashMap<>();
+    private final AtomicLong lastRequestId = new AtomicLong();
+    private final CountDownLatch shutdownRequested = new CountDownLatch(1);
+    private volatile boolean warm;
+
+    /**
+     * A running analysis request
+     */
+    private static final class Request {
+        volatile boolean cancelled;
+    }
+
+    /**
+     * Binds the server to a port of the loopback interface and starts serving requests
+     * @param analyzer the analyzer the requests are served with
+     * @param port the port, or 0 for a free port, see {@link #getPort()}
+     * @param threads the number of requests analyzed at the same time; further requests wait
+     * @throws IOException if the port cannot be bound
+     */
+    public static AnalysisServer start(TestFileAnalyzer analyzer, int port, int threads) throws IOException {
+        AnalysisServer server = new AnalysisServer(analyzer, port, threads);
+        server.server.start();
+        return server;
+    }
+
+    private AnalysisServer(TestFileAnalyzer analyzer, int port, int threads) throws IOException {
+        this.analyzer = analyzer;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newCachedThreadPool(daemonThreadFactory("tsDetect-server-"));
+        this.analysisExecutor = Executors.newFixedThreadPool(threads, daemonThreadFactory("tsDetect-analysis-"));
+        server.setExecutor(executor);
+        server.createContext("/analyze", this::handleAnalyze);
+        server.createContext("/status", this::handleStatus);
+        server.createContext("/shutdown", this::handleShutdown);
+    }
+
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Analyzes a generated corpus a few times, so that the first requests do not pay for loading and compiling the
+     * parser and the detectors. The result cache is not used.
+     * @param rounds the number of times the corpus is analyzed; 0 skips the warm-up
+     * @throws IOException
+     */
+    public void warmUp(int rounds) throws IOException {
+        if (rounds == 0) {
+            warm = true;
+            return;
+        }
+        Path directory = Files.createTempDirectory("tsDetect-warm-up");
+        try {
+            CorpusGenerator generator = new CorpusGenerator(directory);
+            generator.setClasses(WARM_UP_CLASSES);
+            generator.generate();
+            TestFileAnalyzer warmUpAnalyzer = new TestFileAnalyzer(analyzer.getTestSmellDetector());
+            for (int i = 0; i < rounds; i++) {
+                try (ManifestReader manifest = new ManifestReader(generator.getManifestFile().toString())) {
+                    while (manifest.hasNext()) {
+                        warmUpAnalyzer.analyze(manifest.next());
+                    }
+                }
+            }
+            warm = true;
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(x -> x.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Waits until a client requests the server to shut down
+     * @throws InterruptedException
+     */
+    public void awaitShutdownRequest() throws InterruptedException {
+        shutdownRequested.await();
+    }
+
+    /**
+     * Cancels the running requests and stops the server
+     */
+    @Override
+    public void close() {
+        for (Request request : requests.values()) {
+            request.cancelled = true;
+        }
+        server.stop(1);
+        analysisExecutor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void handleAnalyze(HttpExchange exchange) throws IOException {
+        boolean queued = false;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (exchange.getRequestMethod().equals("DELETE") && path.startsWith("/analyze/")) {
+                Request request = requests.get(path.substring("/analyze/".length()));
+                if (request == null) {
+                    respond(exchange, 404, "No running request " + path.substring("/analyze/".length()));
+                } else {
+                    request.cancelled = true;
+                    respond(exchange, 200, "Cancelled");
+                }
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST") || !path.equals("/analyze")) {
+                respond(exchange, 405, "Expected POST /analyze or DELETE /analyze/<id>");
+                return;
+            }
+            // the exchange is completed by the analysis thread
+            analysisExecutor.execute(() -> {
+                try {
+                    analyze(exchange);
+                } catch (IOException | RuntimeException e) {
+                    // the response is cut off, the client learns no more than that
+                    System.out.println("Analysis request failed: " + e);
+                } finally {
+                    exchange.close();
+                }
+            });
+            queued = true;
+        } finally {
+            if (!queued) {
+                exchange.close();
+            }
+        }
+    }
+
+    private void analyze(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        ResultsWriter.Format format;
+        try {
+            format = ResultsWriter.Format.valueOf(parameters.getOrDefault("format", "csv").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "Parameter format expects csv or jsonl");
+            return;
+        }
+        String body = readBody(exchange.getRequestBody());
+        List<TestFile> testFiles = new ArrayList<>();
+        try {
+            String input = parameters.getOrDefault("input", "manifest");
+            if (input.equals("manifest")) {
+                new ManifestReader(new StringReader(body)).forEachRemaining(testFiles::add);
+            } else if (input.equals("roots")) {
+                List<Path> roots = new ArrayList<>();
+                for (String line : body.split("\r?\n")) {
+                    if (!line.trim().isEmpty()) {
+                        roots.add(Paths.get(line.trim()));
+                    }
+                }
+                testFiles.addAll(new SourceCrawler(roots).discover());
+            } else {
+                respond(exchange, 400, "Parameter input expects manifest or roots");
+                return;
+            }
+        } catch (UncheckedIOException e) {
+            respond(exchange, 400, e.getCause().getMessage());
+            return;
+        }
+
+        String requestId = String.valueOf(lastRequestId.incrementAndGet());
+        Request request = new Request();
+        requests.put(requestId, request);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", format == ResultsWriter.Format.JSONL ? "application/x-ndjson" : "text/csv");
+            exchange.getResponseHeaders().set(REQUEST_ID_HEADER, requestId);
+            // a length of 0 streams the response in chunks
+            exchange.sendResponseHeaders(200, 0);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+            List<String> columnNames = analyzer.getColumnNames();
+            JsonLinesEncoder jsonLinesEncoder = null;
+            if (format == ResultsWriter.Format.JSONL) {
+                jsonLinesEncoder = new JsonLinesEncoder(columnNames);
+            } else {
+                writer.append(String.join(",", columnNames)).append('\n');
+            }
+            for (TestFile testFile : testFiles) {
+                if (request.cancelled) {
+                    break;
+                }
+                for (List<String> columnValues : analyzer.analyze(testFile)) {
+                    if (jsonLinesEncoder != null) {
+                        jsonLinesEncoder.write(writer, columnValues);
+                    } else {
+                        writer.append(String.join(",", columnValues)).append('\n');
+                    }
+                }
+                // the rows of each test file are sent as soon as they are known; fails if the client disconnected
+                writer.flush();
+            }
+            writer.flush();
+        } finally {
+            requests.remove(requestId);
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            if (warm) {
+                respond(exchange, 200, "ready, " + requests.size() + " running requests");
+            } else {
+                respond(exchange, 503, "warming up, " + requests.size() + " running requests");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Expected POST /shutdown");
+                return;
+            }
+            respond(exchange, 200, "Shutting down");
+        } finally {
+            exchange.close();
+        }
+        // the server is stopped by the thread waiting for the request, not by a thread of the server
+        shutdownRequested.countDown();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static String readBody(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator == -1 ? parameter : parameter.substring(0, separator);
+            String value = separator == -1 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,260 @@
+package testsmell;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holds the parsed ASTs of a test file and its production file for the duration of an analysis.
+ * Each file is parsed at most once, no matter how many detection passes (class level, method level) are run against
+ * the session. Closing the session releases the ASTs; a closed session cannot be used any more.
+ * A session can also be created for sources held in memory, e.g. the unsaved buffer of an editor; such a session never
+ * reads a file.
+ */
+public class AnalysisSession implements AutoCloseable {
+
+    private final TestFile testFile;
+    private final ProductionFileCache productionFileCache;
+    private final Instrumentation instrumentation;
+    private CompilationUnit testFileCompilationUnit;
+    private CompilationUnit productionFileCompilationUnit;
+    private ProductionMethodIndex productionMethodIndex;
+    private byte[] testFileSource;
+    private byte[] productionFileSource;
+    private boolean inMemory;
+    private long testFileTokens;
+    private boolean testFileParsed;
+    private boolean testFileScanned;
+    private boolean productionFileParsed;
+    private boolean closed;
+
+    public AnalysisSession(TestFile testFile) {
+        this(testFile, null);
+    }
+
+    /**
+     * @param testFile the test file to analyze
+     * @param productionFileCache the cache the production file AST is obtained from; may be null
+     */
+    public AnalysisSession(TestFile testFile, ProductionFileCache productionFileCache) {
+        this(testFile, productionFileCache, Instrumentation.DISABLED);
+    }
+
+    /**
+     * @param testFile the test file to analyze
+     * @param productionFileCache the cache the production file AST is obtained from; may be null
+     * @param instrumentation records the cost of reading and parsing the files
+     */
+    public AnalysisSession(TestFile testFile, ProductionFileCache productionFileCache, Instrumentation instrumentation) {
+        this.testFile = testFile;
+        this.productionFileCache = productionFileCache;
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Creates a session for sources held in memory. The paths of the test file are not read, the test file only
+     * provides the names of the test class.
+     * @param testFile the test file the sources belong to
+     * @param testSource the source of the test file
+     * @param productionSource the source of the production file, or null if there is none
+     * @param instrumentation records the cost of parsing the sources
+     */
+    public static AnalysisSession fromSource(TestFile testFile, String testSource, String productionSource, Instrumentation instrumentation) {
+        AnalysisSession session = new AnalysisSession(testFile, null, instrumentation);
+        session.inMemory = true;
+        session.testFileSource = testSource.getBytes(StandardCharsets.UTF_8);
+        session.productionFileSource = productionSource == null ? null : productionSource.getBytes(StandardCharsets.UTF_8);
+        return session;
+    }
+
+    /**
+     * Creates a session for ASTs that were parsed already. The paths of the test file are not read, the test file only
+     * provides the names of the test class.
+     * @param testFile the test file the ASTs belong to
+     * @param testFileCompilationUnit the AST of the test file
+     * @param productionFileCompilationUnit the AST of the production file, or null if there is none
+     * @param instrumentation records the cost of the detection
+     */
+    public static AnalysisSession fromCompilationUnits(TestFile testFile, CompilationUnit testFileCompilationUnit,
+                                                       CompilationUnit productionFileCompilationUnit, Instrumentation instrumentation) {
+        AnalysisSession session = new AnalysisSession(testFile, null, instrumentation);
+        session.inMemory = true;
+        session.testFileCompilationUnit = testFileCompilationUnit;
+        session.testFileParsed = true;
+        session.productionFileCompilationUnit = productionFileCompilationUnit;
+        session.productionFileParsed = true;
+        return session;
+    }
+
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    public TestFile getTestFile() {
+        return testFile;
+    }
+
+    /**
+     * Returns the AST of the test file, parsing it on first access
+     * @return the test file AST, or null if the test file has no path
+     * @throws IOException
+     * @throws IllegalStateException if the session is closed
+     */
+    public CompilationUnit getTestFileCompilationUnit() throws IOException {
+        checkOpen();
+        if (!testFileParsed) {
+            if (inMemory) {
+                testFileCompilationUnit = parse(testFileSource, instrumentation);
+            } else if (!StringUtils.isEmpty(testFile.getTestFilePath())) {
+                // the source is kept until it has been scanned for tokens
+                if (testFileSource == null) {
+                    testFileSource = read(testFile.getTestFilePath(), instrumentation);
+                }
+                testFileCompilationUnit = parse(testFileSource, instrumentation);
+            }
+            testFileParsed = true;
+        }
+        return testFileCompilationUnit;
+    }
+
+    /**
+     * Reads the source of the test file ahead of parsing it, e.g. on a thread dedicated to I/O. Does nothing if the
+     * test file has no path or was parsed already.
+     * @throws IOException
+     * @throws IllegalStateException if the session is closed
+     */
+    public void readTestFile() throws IOException {
+        checkOpen();
+        if (!inMemory && !testFileParsed && testFileSource == null && !StringUtils.isEmpty(testFile.getTestFilePath())) {
+            testFileSource = read(testFile.getTestFilePath(), instrumentation);
+        }
+    }
+
+    /**
+     * Scans the source of the test file for the tokens of the given scanner, on first access
+     * @return the mask of the tokens that occur in the test file, see {@link TokenScanner#scan(byte[])}; all bits are
+     * set if the test file has no path or its AST was given instead of its source
+     * @throws IOException
+     * @throws IllegalStateException if the session is closed
+     */
+    public long getTestFileTokens(TokenScanner scanner) throws IOException {
+        checkOpen();
+        if (!testFileScanned) {
+            getTestFileCompilationUnit();
+            testFileTokens = testFileSource == null ? -1L : scanner.scan(testFileSource);
+            testFileSource = null;
+            testFileScanned = true;
+        }
+        return testFileTokens;
+    }
+
+    /**
+     * Returns the AST of the production file, parsing it on first access
+     * @return the production file AST, or null if the test file has no associated production file
+     * @throws IOException
+     * @throws IllegalStateException if the session is closed
+     */
+    public CompilationUnit getProductionFileCompilationUnit() throws IOException {
+        checkOpen();
+        if (!productionFileParsed) {
+            if (inMemory) {
+                productionFileCompilationUnit = productionFileSource == null ? null : parse(productionFileSource, instrumentation);
+                productionFileSource = null;
+            } else if (productionFileCache != null && testFile.getHasProductionFile()) {
+                productionFileCompilationUnit = productionFileCache.getCompilationUnit(testFile.getProductionFilePath(), instrumentation);
+            } else {
+                productionFileCompilationUnit = parse(testFile.getProductionFilePath());
+            }
+            productionFileParsed = true;
+        }
+        return productionFileCompilationUnit;
+    }
+
+    /**
+     * Returns the index of the public and protected methods of the production file, building it on first access
+     * @return the method index, or null if the test file has no associated production file
+     * @throws IOException
+     * @throws IllegalStateException if the session is closed
+     */
+    public ProductionMethodIndex getProductionMethodIndex() throws IOException {
+        checkOpen();
+        if (productionMethodIndex == null) {
+            CompilationUnit compilationUnit = getProductionFileCompilationUnit();
+            if (compilationUnit == null) {
+                return null;
+            }
+            if (productionFileCache != null) {
+                productionMethodIndex = productionFileCache.getProductionMethodIndex(testFile.getProductionFilePath(), compilationUnit);
+            } else {
+                productionMethodIndex = ProductionMethodIndex.build(compilationUnit);
+            }
+        }
+        return productionMethodIndex;
+    }
+
+    /**
+     * The ASTs of a closed session are released, and the files must not be parsed again
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The analysis session of " + testFile.getTestFilePath() + " is closed");
+        }
+    }
+
+    private CompilationUnit parse(String filePath) throws IOException {
+        if (StringUtils.isEmpty(filePath)) {
+            return null;
+        }
+        return parse(filePath, instrumentation);
+    }
+
+    /**
+     * Reads and parses a source file, recording the two steps as separate phases
+     */
+    static CompilationUnit parse(String filePath, Instrumentation instrumentation) throws IOException {
+        return parse(read(filePath, instrumentation), instrumentation);
+    }
+
+    private static byte[] read(String filePath, Instrumentation instrumentation) throws IOException {
+        long startTime = instrumentation.startTime();
+        long startBytes = instrumentation.startBytes();
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        try (InputStream inputStream = new FileInputStream(filePath)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                source.write(buffer, 0, read);
+            }
+        }
+        instrumentation.recordPhase(Instrumentation.Phase.READ, startTime, startBytes);
+        return source.toByteArray();
+    }
+
+    private static CompilationUnit parse(byte[] source, Instrumentation instrumentation) {
+        long startTime = instrumentation.startTime();
+        long startBytes = instrumentation.startBytes();
+        CompilationUnit compilationUnit = JavaParser.parse(new ByteArrayInputStream(source));
+        instrumentation.recordPhase(Instrumentation.Phase.PARSE, startTime, startBytes);
+        return compilationUnit;
+    }
+
+    /**
+     * Releases the ASTs held by this session
+     */
+    @Override
+    public void close() {
+        closed = true;
+        testFileCompilationUnit = null;
+        testFileSource = null;
+        productionFileSource = null;
+        productionFileCompilationUnit = null;
+        productionMethodIndex = null;
+    }
+}
@@ -0,0 +1,557 @@
+package testsmell;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates a reproducible corpus of synthetic test classes and their production classes, together with a manifest in
+ * the format read by {@code Main} and an oracle of the smells tsDetect is expected to report.
+ * <p>
+ * Every test method starts out clean and smells are injected with a configurable probability per smell. The oracle is
+ * derived from the generated code with the rules of the detectors, so it accounts for smells that imply each other
+ * (e.g. an empty test is also an unknown test) or that an injection cannot trigger on its own (e.g. Assertion Roulette
+ * needs more than one assertion). Each class is generated from its own seed, so a corpus can be regenerated class by
+ * class, and files are written as they are generated, so corpora of millions of files need no more memory than one.
+ * <p>
+ * Usage: {@code CorpusGenerator <outputDirectory> [--classes=N] [--methods=N] [--assertions=N] [--fixture-fields=N]
+ * [--production-methods=N] [--seed=N] [--density=P] [--density-<smell>=P]}, where {@code <smell>} is the lower case
+ * name of an {@link InjectedSmell} with dashes, e.g. {@code --density-eager-test=0.3}.
+ */
+public class CorpusGenerator {
+
+    /**
+     * The smells that can be injected, with the names the detectors report them by
+     */
+    public enum InjectedSmell {
+        ASSERTION_ROULETTE("Assertion Roulette"),
+        CONDITIONAL_TEST_LOGIC("Conditional Test Logic"),
+        CONSTRUCTOR_INITIALIZATION("Constructor Initialization"),
+        DEFAULT_TEST("Default Test"),
+        DUPLICATE_ASSERT("Duplicate Assert"),
+        EAGER_TEST("Eager Test"),
+        EMPTY_TEST("EmptyTest"),
+        EXCEPTION_CATCHING_THROWING("Exception Catching Throwing"),
+        GENERAL_FIXTURE("General Fixture"),
+        IGNORED_TEST("IgnoredTest"),
+        LAZY_TEST("Lazy Test"),
+        MAGIC_NUMBER_TEST("Magic Number Test"),
+        MYSTERY_GUEST("Mystery Guest"),
+        PRINT_STATEMENT("Print Statement"),
+        REDUNDANT_ASSERTION("Redundant Assertion"),
+        RESOURCE_OPTIMISM("Resource Optimism"),
+        SENSITIVE_EQUALITY("Sensitive Equality"),
+        SLEEPY_TEST("Sleepy Test"),
+        UNKNOWN_TEST("Unknown Test"),
+        VERBOSE_TEST("Verbose Test");
+
+        private final String smellName;
+
+        InjectedSmell(String smellName) {
+            this.smellName = smellName;
+        }
+
+        public String getSmellName() {
+            return smellName;
+        }
+
+        /**
+         * The name of the smell in the --density-&lt;smell&gt; option
+         */
+        public String getOptionName() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    public static final String APP = "synthetic";
+    public static final String MANIFEST_FILE = "manifest.csv";
+    public static final String ORACLE_FILE = "oracle.csv";
+
+    /**
+     * The number of statements from which the Verbose Test detector reports a test method
+     */
+    private static final int VERBOSE_STATEMENTS = 123;
+    private static final int CLASSES_PER_DIRECTORY = 1000;
+
+    private final Path outputDirectory;
+    private int classes = 100;
+    private int methods = 10;
+    private int assertions = 2;
+    private int fixtureFields = 2;
+    private int productionMethods = 20;
+    private long seed = 1;
+    private final Map<InjectedSmell, Double> densities = new EnumMap<>(InjectedSmell.class);
+
+    public CorpusGenerator(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+        for (InjectedSmell smell : InjectedSmell.values()) {
+            densities.put(smell, 0.05);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        CorpusGenerator generator;
+        try {
+            generator = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (generator == null) {
+            System.out.println("Please provide the directory the corpus is generated into");
+            return;
+        }
+        long smellyElements = generator.generate();
+        System.out.println("Generated " + generator.classes + " test classes with " + smellyElements + " expected smells into " + generator.outputDirectory);
+    }
+
+    /**
+     * Parses the command line arguments
+     * @return the configured generator, or null if no output directory is given
+     * @throws IllegalArgumentException if an option is unknown or has an invalid value
+     */
+    public static CorpusGenerator parse(String[] args) {
+        List<String> options = new ArrayList<>();
+        String outputDirectory = null;
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                options.add(arg);
+            } else if (outputDirectory == null) {
+                outputDirectory = arg;
+            }
+        }
+        if (outputDirectory == null) {
+            return null;
+        }
+        CorpusGenerator generator = new CorpusGenerator(Paths.get(outputDirectory));
+        for (String arg : options) {
+            int separator = arg.indexOf('=');
+            String name = separator == -1 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator == -1 ? "" : arg.substring(separator + 1);
+            switch (name) {
+                case "classes":
+                    generator.setClasses(parseNonNegativeInt(name, value));
+                    break;
+                case "methods":
+                    generator.setMethods(parseNonNegativeInt(name, value));
+                    break;
+                case "assertions":
+                    generator.setAssertions(parseNonNegativeInt(name, value));
+                    break;
+                case "fixture-fields":
+                    generator.setFixtureFields(parseNonNegativeInt(name, value));
+                    break;
+                case "production-methods":
+                    generator.setProductionMethods(parseNonNegativeInt(name, value));
+                    break;
+                case "seed":
+                    try {
+                        generator.setSeed(Long.parseLong(value));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Option --" + name + " expects a number, got: " + value);
+                    }
+                    break;
+                case "density":
+                    double density = parseProbability(name, value);
+                    for (InjectedSmell smell : InjectedSmell.values()) {
+                        generator.setDensity(smell, density);
+                    }
+                    break;
+                default:
+                    InjectedSmell smell = null;
+                    for (InjectedSmell candidate : InjectedSmell.values()) {
+                        if (name.equals("density-" + candidate.getOptionName())) {
+                            smell = candidate;
+                        }
+                    }
+                    if (smell == null) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    generator.setDensity(smell, parseProbability(name, value));
+            }
+        }
+        return generator;
+    }
+
+    private static int parseNonNegativeInt(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects a non-negative number, got: " + value);
+    }
+
+    private static double parseProbability(String name, String value) {
+        try {
+            double parsed = Double.parseDouble(value);
+            if (parsed >= 0 && parsed <= 1) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects a probability between 0 and 1, got: " + value);
+    }
+
+    /**
+     * The number of test classes, each with its own production class
+     */
+    public void setClasses(int classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * The number of test methods per test class
+     */
+    public void setMethods(int methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * The number of assertions per test method, before any assertion is injected
+     */
+    public void setAssertions(int assertions) {
+        this.assertions = assertions;
+    }
+
+    /**
+     * The number of fields initialized by the setup method of each test class; 0 generates no setup method
+     */
+    public void setFixtureFields(int fixtureFields) {
+        this.fixtureFields = fixtureFields;
+    }
+
+    /**
+     * The minimum number of methods of each production class; a class has more if its tests need more
+     */
+    public void setProductionMethods(int productionMethods) {
+        this.productionMethods = productionMethods;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * The probability with which the smell is injected into a test method, or a test class for class level smells
+     */
+    public void setDensity(InjectedSmell smell, double density) {
+        densities.put(smell, density);
+    }
+
+    public Path getManifestFile() {
+        return outputDirectory.resolve(MANIFEST_FILE);
+    }
+
+    public Path getOracleFile() {
+        return outputDirectory.resolve(ORACLE_FILE);
+    }
+
+    /**
+     * Generates the corpus, the manifest and the oracle. The oracle lists one row per expected smelly element, with the
+     * columns App, TestFilePath, Smell and Element (the name of the test method, or of the test class for class level
+     * smells).
+     * @return the number of expected smelly elements
+     * @throws IOException
+     */
+    public long generate() throws IOException {
+        Files.createDirectories(outputDirectory);
+        long smellyElements = 0;
+        try (BufferedWriter manifest = Files.newBufferedWriter(getManifestFile(), StandardCharsets.UTF_8);
+             BufferedWriter oracle = Files.newBufferedWriter(getOracleFile(), StandardCharsets.UTF_8)) {
+            oracle.write("App,TestFilePath,Smell,Element");
+            oracle.newLine();
+            for (int i = 0; i < classes; i++) {
+                GeneratedClass generatedClass = generateClass(i);
+                Path directory = outputDirectory.resolve(Paths.get("src", "synthetic", "g" + (i / CLASSES_PER_DIRECTORY), "c" + i));
+                Files.createDirectories(directory);
+                Path testFile = directory.resolve(generatedClass.testClassName + ".java").toAbsolutePath();
+                Path productionFile = directory.resolve(generatedClass.productionClassName + ".java").toAbsolutePath();
+                Files.write(testFile, generatedClass.testSource().getBytes(StandardCharsets.UTF_8));
+                Files.write(productionFile, generatedClass.productionSource().getBytes(StandardCharsets.UTF_8));
+
+                manifest.write(APP + "," + testFile + "," + productionFile);
+                manifest.newLine();
+                for (String[] expected : generatedClass.expectedSmells()) {
+                    oracle.write(APP + "," + testFile + "," + expected[0] + "," + expected[1]);
+                    oracle.newLine();
+                    smellyElements++;
+                }
+            }
+        }
+        return smellyElements;
+    }
+
+    /**
+     * Generates the test class with the given index; the result only depends on the seed and the index
+     */
+    GeneratedClass generateClass(int index) {
+        // scramble the seed, the first values of Randoms with close seeds are close as well
+        long classSeed = (seed * 1_000_003L + index) * 0x9E3779B97F4A7C15L;
+        Random random = new Random(classSeed ^ (classSeed >>> 31));
+        GeneratedClass generatedClass = new GeneratedClass(index, inject(random, InjectedSmell.DEFAULT_TEST),
+                inject(random, InjectedSmell.CONSTRUCTOR_INITIALIZATION), fixtureFields);
+        for (int i = 0; i < methods; i++) {
+            generatedClass.methods.add(generateMethod(random, generatedClass, i));
+        }
+        generatedClass.productionMethods = Math.max(productionMethods, generatedClass.productionMethods);
+        return generatedClass;
+    }
+
+    private GeneratedMethod generateMethod(Random random, GeneratedClass generatedClass, int index) {
+        GeneratedMethod method = new GeneratedMethod("testMethod" + index);
+        method.ignored = inject(random, InjectedSmell.IGNORED_TEST);
+        if (inject(random, InjectedSmell.EMPTY_TEST)) {
+            return method;
+        }
+
+        method.statements.add(generatedClass.productionClassName + " subject = new " + generatedClass.productionClassName + "();");
+        int usedFields = inject(random, InjectedSmell.GENERAL_FIXTURE) ? Math.max(0, fixtureFields - 1) : fixtureFields;
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < usedFields; i++) {
+            input.append(i == 0 ? "" : " + ").append("fixture").append(i);
+        }
+        method.statements.add("int input = " + (usedFields == 0 ? "1" : input) + ";");
+        method.usedFixtureFields = usedFields;
+
+        if (inject(random, InjectedSmell.LAZY_TEST)) {
+            method.callsSharedMethod = true;
+            method.productionCalls++;
+            method.statements.add("int actual = subject.shared(input);");
+        } else {
+            method.productionCalls++;
+            method.statements.add("int actual = subject.method" + generatedClass.productionMethods++ + "(input);");
+        }
+        if (inject(random, InjectedSmell.EAGER_TEST)) {
+            method.productionCalls++;
+            method.statements.add("actual = Math.max(actual, subject.method" + generatedClass.productionMethods++ + "(input));");
+        }
+        if (inject(random, InjectedSmell.CONDITIONAL_TEST_LOGIC)) {
+            method.conditional = true;
+            method.statements.add("if (actual < input) { actual = input; }");
+        }
+        if (inject(random, InjectedSmell.PRINT_STATEMENT)) {
+            method.print = true;
+            method.statements.add("System.out.println(actual);");
+        }
+        if (inject(random, InjectedSmell.SLEEPY_TEST)) {
+            method.sleepy = true;
+            method.throwsException = true;
+            method.statements.add("Thread.sleep(1);");
+        }
+        if (inject(random, InjectedSmell.EXCEPTION_CATCHING_THROWING)) {
+            method.throwsException = true;
+        }
+        if (inject(random, InjectedSmell.MYSTERY_GUEST)) {
+            method.mysteryGuest = true;
+            method.statements.add("File fixtureFile = new File(\"fixture.txt\");");
+            method.statements.add("fixtureFile.exists();");
+        }
+        if (inject(random, InjectedSmell.RESOURCE_OPTIMISM)) {
+            method.mysteryGuest = true;
+            method.resourceOptimism = true;
+            method.statements.add("File resourceFile = new File(\"resource.txt\");");
+        }
+
+        boolean unknown = inject(random, InjectedSmell.UNKNOWN_TEST);
+        boolean roulette = inject(random, InjectedSmell.ASSERTION_ROULETTE);
+        List<String> assertionStatements = new ArrayList<>();
+        for (int i = 0; !unknown && i < assertions; i++) {
+            assertionStatements.add(roulette ? "assertTrue(actual >= input - " + i + ");" : "assertTrue(\"check " + i + "\", actual >= input - " + i + ");");
+        }
+        if (inject(random, InjectedSmell.MAGIC_NUMBER_TEST)) {
+            method.magicNumber = true;
+            assertionStatements.add(roulette ? "assertEquals(42, actual * 0 + 42);" : "assertEquals(\"magic\", 42, actual * 0 + 42);");
+        }
+        if (inject(random, InjectedSmell.REDUNDANT_ASSERTION)) {
+            method.redundantAssertion = true;
+            assertionStatements.add(roulette ? "assertEquals(actual, actual);" : "assertEquals(\"redundant\", actual, actual);");
+        }
+        if (inject(random, InjectedSmell.SENSITIVE_EQUALITY)) {
+            method.sensitiveEquality = true;
+            assertionStatements.add(roulette ? "assertEquals(String.valueOf(actual), Integer.valueOf(actual).toString());"
+                    : "assertEquals(\"sensitive\", String.valueOf(actual), Integer.valueOf(actual).toString());");
+        }
+        if (inject(random, InjectedSmell.DUPLICATE_ASSERT)) {
+            method.duplicateAssert = true;
+            String duplicated = assertionStatements.isEmpty() ? (roulette ? "assertTrue(actual >= input);" : "assertTrue(\"duplicate\", actual >= input);")
+                    : assertionStatements.get(assertionStatements.size() - 1);
+            if (assertionStatements.isEmpty()) {
+                assertionStatements.add(duplicated);
+            }
+            assertionStatements.add(duplicated);
+        }
+        method.assertions = assertionStatements.size();
+        method.assertionsWithoutMessage = roulette ? assertionStatements.size() : 0;
+        method.statements.addAll(assertionStatements);
+
+        if (inject(random, InjectedSmell.VERBOSE_TEST)) {
+            while (method.statements.size() < VERBOSE_STATEMENTS) {
+                method.statements.add("input += 0;");
+            }
+        }
+        return method;
+    }
+
+    private boolean inject(Random random, InjectedSmell smell) {
+        // always draw, so that the density of one smell does not change where the others are injected
+        return random.nextDouble() < densities.get(smell);
+    }
+
+    static class GeneratedClass {
+        private final String packageName;
+        private final String testClassName;
+        private final String productionClassName;
+        private final boolean constructor;
+        private final int fixtureFields;
+        private final List<GeneratedMethod> methods = new ArrayList<>();
+        private int productionMethods;
+
+        GeneratedClass(int index, boolean defaultTest, boolean constructor, int fixtureFields) {
+            this.packageName = APP + ".c" + index;
+            this.testClassName = defaultTest ? "ExampleUnitTest" : "Class" + index + "Test";
+            this.productionClassName = "Class" + index;
+            this.constructor = constructor;
+            this.fixtureFields = fixtureFields;
+        }
+
+        String testSource() {
+            StringBuilder source = new StringBuilder();
+            source.append("package ").append(packageName).append(";\n\n");
+            source.append("import java.io.File;\n\n");
+            source.append("import org.junit.Before;\n");
+            source.append("import org.junit.Ignore;\n");
+            source.append("import org.junit.Test;\n\n");
+            source.append("import static org.junit.Assert.*;\n\n");
+            source.append("public class ").append(testClassName).append(" {\n");
+            for (int i = 0; i < fixtureFields; i++) {
+                source.append("    private int fixture").append(i).append(";\n");
+            }
+            if (constructor) {
+                source.append("\n    public ").append(testClassName).append("() {\n");
+                source.append("    }\n");
+            }
+            if (fixtureFields > 0) {
+                source.append("\n    @Before\n");
+                source.append("    public void setUp() {\n");
+                for (int i = 0; i < fixtureFields; i++) {
+                    source.append("        fixture").append(i).append(" = ").append(i + 1).append(";\n");
+                }
+                source.append("    }\n");
+            }
+            for (GeneratedMethod method : methods) {
+                source.append("\n");
+                if (method.ignored) {
+                    source.append("    @Ignore\n");
+                }
+                source.append("    @Test\n");
+                source.append("    public void ").append(method.name).append("()").append(method.throwsException ? " throws Exception" : "").append(" {\n");
+                for (String statement : method.statements) {
+                    source.append("        ").append(statement).append("\n");
+                }
+                source.append("    }\n");
+            }
+            source.append("}\n");
+            return source.toString();
+        }
+
+        String productionSource() {
+            StringBuilder source = new StringBuilder();
+            source.append("package ").append(packageName).append(";\n\n");
+            source.append("public class ").append(productionClassName).append(" {\n");
+            source.append("\n    public int shared(int value) {\n");
+            source.append("        return value;\n");
+            source.append("    }\n");
+            for (int i = 0; i < productionMethods; i++) {
+                source.append("\n    public int method").append(i).append("(int value) {\n");
+                source.append("        return value + ").append(i).append(";\n");
+                source.append("    }\n");
+            }
+            source.append("}\n");
+            return source.toString();
+        }
+
+        /**
+         * Applies the rules of the detectors to the generated code
+         * @return the smell name and element name of every element tsDetect is expected to report as smelly
+         */
+        List<String[]> expectedSmells() {
+            List<String[]> expected = new ArrayList<>();
+            if (constructor) {
+                expected.add(new String[]{InjectedSmell.CONSTRUCTOR_INITIALIZATION.getSmellName(), testClassName});
+            }
+            if (testClassName.equals("ExampleUnitTest")) {
+                expected.add(new String[]{InjectedSmell.DEFAULT_TEST.getSmellName(), testClassName});
+            }
+            // ignored methods are not analyzed by any other detector
+            long sharedMethodCallers = methods.stream().filter(x -> !x.ignored && x.callsSharedMethod).count();
+            for (GeneratedMethod method : methods) {
+                if (method.ignored) {
+                    expected.add(new String[]{InjectedSmell.IGNORED_TEST.getSmellName(), method.name});
+                    continue;
+                }
+                boolean[] smells = new boolean[InjectedSmell.values().length];
+                smells[InjectedSmell.ASSERTION_ROULETTE.ordinal()] = method.assertions != 1 && method.assertionsWithoutMessage > 0;
+                smells[InjectedSmell.CONDITIONAL_TEST_LOGIC.ordinal()] = method.conditional;
+                smells[InjectedSmell.DUPLICATE_ASSERT.ordinal()] = method.duplicateAssert;
+                smells[InjectedSmell.EAGER_TEST.ordinal()] = method.productionCalls > 1;
+                smells[InjectedSmell.EMPTY_TEST.ordinal()] = method.statements.isEmpty();
+                smells[InjectedSmell.EXCEPTION_CATCHING_THROWING.ordinal()] = method.throwsException;
+                smells[InjectedSmell.GENERAL_FIXTURE.ordinal()] = method.usedFixtureFields < fixtureFields;
+                smells[InjectedSmell.LAZY_TEST.ordinal()] = method.callsSharedMethod && sharedMethodCallers > 1;
+                smells[InjectedSmell.MAGIC_NUMBER_TEST.ordinal()] = method.magicNumber;
+                smells[InjectedSmell.MYSTERY_GUEST.ordinal()] = method.mysteryGuest;
+                smells[InjectedSmell.PRINT_STATEMENT.ordinal()] = method.print;
+                smells[InjectedSmell.REDUNDANT_ASSERTION.ordinal()] = method.redundantAssertion;
+                smells[InjectedSmell.RESOURCE_OPTIMISM.ordinal()] = method.resourceOptimism;
+                smells[InjectedSmell.SENSITIVE_EQUALITY.ordinal()] = method.sensitiveEquality;
+                smells[InjectedSmell.SLEEPY_TEST.ordinal()] = method.sleepy;
+                smells[InjectedSmell.UNKNOWN_TEST.ordinal()] = method.assertions == 0;
+                smells[InjectedSmell.VERBOSE_TEST.ordinal()] = method.statements.size() >= VERBOSE_STATEMENTS;
+                for (InjectedSmell smell : InjectedSmell.values()) {
+                    if (smells[smell.ordinal()]) {
+                        expected.add(new String[]{smell.getSmellName(), method.name});
+                    }
+                }
+            }
+            return expected;
+        }
+    }
+
+    private static class GeneratedMethod {
+        private final String name;
+        private final List<String> statements = new ArrayList<>();
+        private boolean ignored;
+        private boolean throwsException;
+        private int usedFixtureFields;
+        private int productionCalls;
+        private boolean callsSharedMethod;
+        private int assertions;
+        private int assertionsWithoutMessage;
+        private boolean conditional;
+        private boolean print;
+        private boolean sleepy;
+        private boolean mysteryGuest;
+        private boolean resourceOptimism;
+        private boolean magicNumber;
+        private boolean redundantAssertion;
+        private boolean sensitiveEquality;
+        private boolean duplicateAssert;
+
+        GeneratedMethod(String name) {
+            this.name = name;
+        }
+    }
+}
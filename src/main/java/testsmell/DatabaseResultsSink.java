@@ -0,0 +1,339 @@
+package testsmell;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the results into a SQL database through JDBC, e.g. an embedded SQLite or H2 database file. The SQLite driver
+ * is bundled; the JDBC driver of another database has to be on the class path. The tables are created if they do not
+ * exist. The rows of a test file replace its rows of earlier runs and earlier rows of the same run (e.g. in watch mode),
+ * identified by the test file path, so that the database holds the latest results of every test file however often a
+ * repository is analyzed.
+ * <p>
+ * The schema is normalized: {@code apps}, {@code files} (a test file with its production file), {@code methods} (the
+ * test methods of a file), {@code smells} (the verdict for a smell of a file, or of a method if {@code method_id} is not
+ * null) and {@code metrics} (the metrics of a method). Smells that were not analyzed and metrics that were not
+ * recorded have no row. Rows are inserted with prepared statement batches, in transactions of many rows; the indexes
+ * are created when the sink is closed, after the bulk load, or before the first rows are replaced, which look up the
+ * earlier rows by the indexes.
+ */
+public class DatabaseResultsSink implements ResultsSink {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int TRANSACTION_SIZE = 100_000;
+    private static final int TEST_METHOD_COLUMN = 2;
+
+    private static final List<String> CREATE_TABLES = Arrays.asList(
+            "CREATE TABLE IF NOT EXISTS apps (id INTEGER PRIMARY KEY, name VARCHAR(1024) NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS files (id INTEGER PRIMARY KEY, app_id INTEGER NOT NULL, test_class VARCHAR(1024), " +
+                    "test_file_path VARCHAR(4096), production_file_path VARCHAR(4096), relative_test_file_path VARCHAR(4096), " +
+                    "relative_production_file_path VARCHAR(4096))",
+            "CREATE TABLE IF NOT EXISTS methods (id INTEGER PRIMARY KEY, file_id INTEGER NOT NULL, name VARCHAR(1024) NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS smells (file_id INTEGER NOT NULL, method_id INTEGER, smell VARCHAR(255) NOT NULL, has_smell INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS metrics (method_id INTEGER NOT NULL, metric VARCHAR(255) NOT NULL, metric_value INTEGER NOT NULL)");
+
+    private static final List<String> CREATE_INDEXES = Arrays.asList(
+            "CREATE INDEX IF NOT EXISTS files_app_id ON files (app_id)",
+            "CREATE INDEX IF NOT EXISTS files_test_file_path ON files (test_file_path)",
+            "CREATE INDEX IF NOT EXISTS methods_file_id ON methods (file_id)",
+            "CREATE INDEX IF NOT EXISTS smells_file_id ON smells (file_id, method_id)",
+            "CREATE INDEX IF NOT EXISTS smells_smell ON smells (smell, has_smell)",
+            "CREATE INDEX IF NOT EXISTS metrics_method_id ON metrics (method_id)");
+
+    private final Connection connection;
+    private final Instrumentation instrumentation;
+    private final PreparedStatement insertApp;
+    private final PreparedStatement insertFile;
+    private final PreparedStatement insertMethod;
+    private final PreparedStatement insertSmell;
+    private final PreparedStatement insertMetric;
+    /**
+     * Delete the rows of the earlier files with a test file path, children first; the parameters are the path and the
+     * id of the file replacing them
+     */
+    private final List<PreparedStatement> deleteFiles;
+    private final Map<String, Long> appIds = new HashMap<>();
+    /**
+     * Whether the database had files before this run, which may be replaced
+     */
+    private final boolean hadFiles;
+    private final Set<String> writtenTestFiles = new HashSet<>();
+    private long lastAppId;
+    private long lastFileId;
+    private long lastMethodId;
+    private long fileId = -1;
+    private List<String> columnNames;
+    private boolean[] isMetric;
+    private int batchedRows;
+    private int uncommittedRows;
+    private boolean indexed;
+    private boolean closed;
+
+    /**
+     * Connects to the database and creates the tables that do not exist
+     * @param url the JDBC URL of the database, e.g. {@code jdbc:sqlite:results.db}
+     * @param instrumentation records the cost of writing the rows
+     * @throws IOException if the database cannot be opened, e.g. because there is no driver for the URL
+     */
+    public static DatabaseResultsSink open(String url, Instrumentation instrumentation) throws IOException {
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw new IOException("Cannot open the database " + url + "; the JDBC driver of the database must be on the class path", e);
+        }
+        try {
+            return new DatabaseResultsSink(connection, instrumentation);
+        } catch (IOException e) {
+            try {
+                connection.close();
+            } catch (SQLException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param connection the database connection; the sink takes ownership of it and closes it
+     * @param instrumentation records the cost of writing the rows
+     * @throws IOException if the tables cannot be created
+     */
+    public DatabaseResultsSink(Connection connection, Instrumentation instrumentation) throws IOException {
+        this.connection = connection;
+        this.instrumentation = instrumentation;
+        try {
+            try (Statement statement = connection.createStatement()) {
+                for (String createTable : CREATE_TABLES) {
+                    statement.execute(createTable);
+                }
+                // continue the ids of earlier runs
+                try (ResultSet apps = statement.executeQuery("SELECT id, name FROM apps")) {
+                    while (apps.next()) {
+                        appIds.put(apps.getString(2), apps.getLong(1));
+                        lastAppId = Math.max(lastAppId, apps.getLong(1));
+                    }
+                }
+                lastFileId = maxId(statement, "files");
+                lastMethodId = maxId(statement, "methods");
+            }
+            hadFiles = lastFileId > 0;
+            connection.setAutoCommit(false);
+            insertApp = connection.prepareStatement("INSERT INTO apps (id, name) VALUES (?, ?)");
+            insertFile = connection.prepareStatement("INSERT INTO files (id, app_id, test_class, test_file_path, production_file_path, " +
+                    "relative_test_file_path, relative_production_file_path) VALUES (?, ?, ?, ?, ?, ?, ?)");
+            insertMethod = connection.prepareStatement("INSERT INTO methods (id, file_id, name) VALUES (?, ?, ?)");
+            insertSmell = connection.prepareStatement("INSERT INTO smells (file_id, method_id, smell, has_smell) VALUES (?, ?, ?, ?)");
+            insertMetric = connection.prepareStatement("INSERT INTO metrics (method_id, metric, metric_value) VALUES (?, ?, ?)");
+            String replacedFiles = "SELECT id FROM files WHERE test_file_path = ? AND id < ?";
+            deleteFiles = Arrays.asList(
+                    connection.prepareStatement("DELETE FROM metrics WHERE method_id IN (SELECT id FROM methods WHERE file_id IN (" + replacedFiles + "))"),
+                    connection.prepareStatement("DELETE FROM smells WHERE file_id IN (" + replacedFiles + ")"),
+                    connection.prepareStatement("DELETE FROM methods WHERE file_id IN (" + replacedFiles + ")"),
+                    connection.prepareStatement("DELETE FROM files WHERE test_file_path = ? AND id < ?"));
+        } catch (SQLException e) {
+            throw new IOException("Cannot create the tables of the results", e);
+        }
+    }
+
+    private static long maxId(Statement statement, String table) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM " + table)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public synchronized void writeColumnName(List<String> columnNames) {
+        Set<String> metricNames = new HashSet<>();
+        for (Metric metric : Metric.values()) {
+            metricNames.add(metric.getName());
+        }
+        this.columnNames = columnNames;
+        this.isMetric = new boolean[columnNames.size()];
+        for (int i = TestFileAnalyzer.FILE_COLUMNS; i < columnNames.size(); i++) {
+            isMetric[i] = metricNames.contains(columnNames.get(i));
+        }
+    }
+
+    /**
+     * Adds the rows for a row of results: a file for the class level row, a method for the other rows, and their
+     * smells and metrics
+     */
+    @Override
+    public synchronized void writeLine(List<String> columnValues) throws IOException {
+        if (closed) {
+            throw new IOException("The results sink is closed");
+        }
+        if (columnNames == null) {
+            throw new IOException("The column names must be written before the rows");
+        }
+        long startTime = instrumentation.startTime();
+        long startBytes = instrumentation.startBytes();
+        try {
+            Long methodId = null;
+            if (columnValues.get(TEST_METHOD_COLUMN).isEmpty()) {
+                fileId = ++lastFileId;
+                insertFile.setLong(1, fileId);
+                insertFile.setLong(2, getAppId(columnValues.get(0)));
+                insertFile.setString(3, columnValues.get(1));
+                for (int i = 3; i < TestFileAnalyzer.FILE_COLUMNS; i++) {
+                    insertFile.setString(i + 1, columnValues.get(i));
+                }
+                insertFile.addBatch();
+                String testFilePath = columnValues.get(3);
+                if (!writtenTestFiles.add(testFilePath) || hadFiles) {
+                    createIndexes();
+                    for (PreparedStatement deleteFile : deleteFiles) {
+                        deleteFile.setString(1, testFilePath);
+                        deleteFile.setLong(2, fileId);
+                        deleteFile.addBatch();
+                    }
+                    batchedRows++;
+                }
+            } else {
+                if (fileId == -1) {
+                    throw new IOException("The row of a test method precedes the row of its test class: " + columnValues);
+                }
+                methodId = ++lastMethodId;
+                insertMethod.setLong(1, methodId);
+                insertMethod.setLong(2, fileId);
+                insertMethod.setString(3, columnValues.get(TEST_METHOD_COLUMN));
+                insertMethod.addBatch();
+            }
+            batchedRows++;
+
+            for (int i = TestFileAnalyzer.FILE_COLUMNS; i < columnValues.size(); i++) {
+                String value = columnValues.get(i);
+                if (value.isEmpty()) {
+                    continue;
+                }
+                if (isMetric[i]) {
+                    if (methodId != null) {
+                        insertMetric.setLong(1, methodId);
+                        insertMetric.setString(2, columnNames.get(i));
+                        insertMetric.setLong(3, Long.parseLong(value));
+                        insertMetric.addBatch();
+                        batchedRows++;
+                    }
+                } else {
+                    insertSmell.setLong(1, fileId);
+                    if (methodId == null) {
+                        insertSmell.setNull(2, Types.INTEGER);
+                    } else {
+                        insertSmell.setLong(2, methodId);
+                    }
+                    insertSmell.setString(3, columnNames.get(i));
+                    insertSmell.setInt(4, Boolean.parseBoolean(value) ? 1 : 0);
+                    insertSmell.addBatch();
+                    batchedRows++;
+                }
+            }
+            if (batchedRows >= BATCH_SIZE) {
+                executeBatches();
+            }
+            if (uncommittedRows >= TRANSACTION_SIZE) {
+                connection.commit();
+                uncommittedRows = 0;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot insert the results of " + columnValues.get(3), e);
+        }
+        instrumentation.recordPhase(Instrumentation.Phase.WRITE, startTime, startBytes);
+    }
+
+    private void createIndexes() throws SQLException {
+        if (indexed) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String createIndex : CREATE_INDEXES) {
+                statement.execute(createIndex);
+            }
+        }
+        indexed = true;
+    }
+
+    private long getAppId(String app) throws SQLException {
+        Long appId = appIds.get(app);
+        if (appId == null) {
+            appId = ++lastAppId;
+            insertApp.setLong(1, appId);
+            insertApp.setString(2, app);
+            insertApp.addBatch();
+            batchedRows++;
+            appIds.put(app, appId);
+        }
+        return appId;
+    }
+
+    private void executeBatches() throws SQLException {
+        // parents first, in case the database enforces foreign keys added by the user
+        insertApp.executeBatch();
+        insertFile.executeBatch();
+        insertMethod.executeBatch();
+        insertSmell.executeBatch();
+        insertMetric.executeBatch();
+        // after the inserts, so that a file written twice in a batch keeps only its last rows
+        for (PreparedStatement deleteFile : deleteFiles) {
+            deleteFile.executeBatch();
+        }
+        uncommittedRows += batchedRows;
+        batchedRows = 0;
+    }
+
+    /**
+     * Inserts and commits the pending rows
+     * @throws IOException
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            executeBatches();
+            connection.commit();
+            uncommittedRows = 0;
+        } catch (SQLException e) {
+            throw new IOException("Cannot insert the results", e);
+        }
+    }
+
+    /**
+     * Inserts the pending rows, creates the indexes and closes the connection
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            executeBatches();
+            connection.commit();
+            createIndexes();
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Cannot complete the results in the database", e);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // the results are committed already
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package testsmell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The files changed between two revisions of a local git repository, as listed by {@code git diff --name-only}.
+ * The repository is read with the git command line client; no remote is contacted.
+ */
+public class GitChangeSet {
+
+    private final Set<String> changedPaths;
+    private final Set<String> changedFileNames;
+
+    GitChangeSet(File repositoryRoot, List<String> relativePaths) {
+        changedPaths = new HashSet<>();
+        changedFileNames = new HashSet<>();
+        for (String relativePath : relativePaths) {
+            File file = new File(repositoryRoot, relativePath);
+            changedPaths.add(file.getAbsolutePath());
+            changedFileNames.add(file.getName());
+        }
+    }
+
+    /**
+     * Lists the files changed in a revision range of a repository
+     * @param repository a directory of the repository
+     * @param range the revisions to compare, in any form accepted by {@code git diff}, e.g. {@code base..head}
+     * @return the changed files
+     * @throws IOException if git cannot be run or fails
+     */
+    public static GitChangeSet between(File repository, String range) throws IOException {
+        if (range.isEmpty() || range.startsWith("-")) {
+            throw new IllegalArgumentException("Invalid revision range: " + range);
+        }
+        String root = new String(git(repository, "rev-parse", "--show-toplevel"), StandardCharsets.UTF_8).trim();
+        List<String> relativePaths = new ArrayList<>();
+        for (String path : new String(git(repository, "diff", "--name-only", "-z", range, "--"), StandardCharsets.UTF_8).split("\0")) {
+            if (!path.isEmpty()) {
+                relativePaths.add(path);
+            }
+        }
+        return new GitChangeSet(new File(root), relativePaths);
+    }
+
+    private static byte[] git(File repository, String... arguments) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList("git", "-C", repository.getPath()));
+        Collections.addAll(command, arguments);
+        // the error messages of git go to the console, so that only the output has to be drained
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        process.getOutputStream().close();
+        byte[] output = readFully(process.getInputStream());
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException(String.join(" ", command) + " failed with exit code " + exitCode);
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for git");
+        }
+        return output;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = inputStream) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public int size() {
+        return changedPaths.size();
+    }
+
+    /**
+     * Returns true if the given file was changed
+     */
+    public boolean contains(String filePath) {
+        if (filePath == null || filePath.isEmpty()) {
+            return false;
+        }
+        File file = new File(filePath);
+        // compare by name first, so that only the few candidates are resolved against the file system
+        if (!changedFileNames.contains(file.getName())) {
+            return false;
+        }
+        if (changedPaths.contains(file.getAbsolutePath())) {
+            return true;
+        }
+        try {
+            return changedPaths.contains(file.getCanonicalPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the test file or its production file was changed
+     */
+    public boolean affects(TestFile testFile) {
+        return contains(testFile.getTestFilePath()) || contains(testFile.getProductionFilePath());
+    }
+}
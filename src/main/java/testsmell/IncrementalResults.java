@@ -0,0 +1,138 @@
+package testsmell;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Results of an incremental run, which only analyzes the test files affected by a change and takes the results of all
+ * other test files from the output of an earlier run (the baseline).
+ * The rows of the analyzed files replace their rows in the baseline; the rows of changed test files that no longer
+ * exist are dropped. Only the rows of the analyzed files are held in memory; the baseline is streamed.
+ * <p>
+ * The values of the CSV output are not quoted, so a baseline row whose values contain a comma, e.g. a path with a comma,
+ * cannot be split into its columns; such rows are skipped with a message.
+ */
+public class IncrementalResults {
+
+    private static final int TEST_FILE_PATH_COLUMN = 3;
+
+    private final GitChangeSet changes;
+    private final String baselineFile;
+    private final Map<String, List<List<String>>> analyzedFiles = new LinkedHashMap<>();
+
+    /**
+     * @param changes the changed files
+     * @param baselineFile the output of an earlier run over the same manifest; null to only output the analyzed files
+     */
+    public IncrementalResults(GitChangeSet changes, String baselineFile) {
+        this.changes = changes;
+        this.baselineFile = baselineFile;
+    }
+
+    /**
+     * Selects the test files that need to be analyzed: those that exist and that were changed or whose production file
+     * was changed
+     */
+    public Iterator<TestFile> select(Iterator<TestFile> testFiles) {
+        return new Iterator<TestFile>() {
+            private TestFile next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && testFiles.hasNext()) {
+                    TestFile testFile = testFiles.next();
+                    if (changes.affects(testFile) && new File(testFile.getTestFilePath()).isFile()) {
+                        next = testFile;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public TestFile next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TestFile testFile = next;
+                next = null;
+                return testFile;
+            }
+        };
+    }
+
+    /**
+     * Adds the rows of an analyzed test file
+     * @param rows the rows returned by {@link TestFileAnalyzer#analyze(TestFile)}
+     */
+    public synchronized void add(List<List<String>> rows) {
+        if (!rows.isEmpty()) {
+            analyzedFiles.put(rows.get(0).get(TEST_FILE_PATH_COLUMN), rows);
+        }
+    }
+
+    public synchronized int getAnalyzedFileCount() {
+        return analyzedFiles.size();
+    }
+
+    /**
+     * Writes the merged results: the baseline in its order, with the rows of the analyzed files in place of their rows
+     * in the baseline, followed by the rows of analyzed files that are new to the baseline
+     * @param columnNames the column names of the results; the baseline must have the same columns
+     * @throws IOException if the baseline cannot be read or has other columns
+     */
+    public synchronized void write(ResultsSink resultsWriter, List<String> columnNames) throws IOException {
+        resultsWriter.writeColumnName(columnNames);
+        Set<String> written = new HashSet<>();
+        if (baselineFile != null) {
+            // same encoding as the results writer
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(baselineFile), Charset.defaultCharset()))) {
+                String header = reader.readLine();
+                if (header == null || !Arrays.asList(header.split(",", -1)).equals(columnNames)) {
+                    throw new IOException("The baseline " + baselineFile + " does not have the columns of this run; it was produced with other detectors");
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    List<String> columnValues = Arrays.asList(line.split(",", -1));
+                    if (columnValues.size() != columnNames.size()) {
+                        if (!line.isEmpty()) {
+                            System.out.println("Skipping a row of the baseline with " + columnValues.size() + " instead of " + columnNames.size() + " columns: " + line);
+                        }
+                        continue;
+                    }
+                    String testFilePath = columnValues.get(TEST_FILE_PATH_COLUMN);
+                    List<List<String>> rows = analyzedFiles.get(testFilePath);
+                    if (rows != null) {
+                        if (written.add(testFilePath)) {
+                            writeRows(resultsWriter, rows);
+                        }
+                    } else if (!changes.contains(testFilePath) || new File(testFilePath).isFile()) {
+                        resultsWriter.writeLine(columnValues);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, List<List<String>>> entry : analyzedFiles.entrySet()) {
+            if (!written.contains(entry.getKey())) {
+                writeRows(resultsWriter, entry.getValue());
+            }
+        }
+    }
+
+    private static void writeRows(ResultsSink resultsWriter, List<List<String>> rows) throws IOException {
+        for (List<String> columnValues : rows) {
+            resultsWriter.writeLine(columnValues);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package testsmell;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the cost of the phases of a run (reading, parsing, detecting and writing) and of every detector: the number of
+ * invocations, the cumulative wall time and the bytes allocated by the measuring thread.
+ * <p>
+ * Measurements are taken as {@code long t = startTime(); long b = startBytes(); ...; record...(t, b)}. When the
+ * instrumentation is disabled these calls return immediately and nothing is allocated, so instrumented code can stay in
+ * place. Statistics can be recorded from any number of threads.
+ */
+public class Instrumentation {
+
+    public enum Phase {
+        READ, PARSE, DETECT, WRITE
+    }
+
+    public static final Instrumentation DISABLED = new Instrumentation(false);
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = allocationCounter();
+
+    private final boolean enabled;
+    private final Map<Phase, Statistic> phases = new LinkedHashMap<>();
+    private final Map<String, Statistic> detectors = new ConcurrentHashMap<>();
+
+    public Instrumentation() {
+        this(true);
+    }
+
+    private Instrumentation(boolean enabled) {
+        this.enabled = enabled;
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Statistic());
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (counter.isThreadAllocatedMemorySupported()) {
+                    counter.setThreadAllocatedMemoryEnabled(true);
+                    return counter;
+                }
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            // allocations are not reported
+        }
+        return null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the start time of a measurement, or 0 if the instrumentation is disabled
+     */
+    public long startTime() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or 0 if the instrumentation is disabled
+     */
+    public long startBytes() {
+        return enabled ? allocatedBytes() : 0;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or 0 if the JVM does not count allocations
+     */
+    public static long allocatedBytes() {
+        return THREAD_MX_BEAN == null ? 0 : THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Records an invocation of a phase that started at the given time and allocation count
+     */
+    public void recordPhase(Phase phase, long startTime, long startBytes) {
+        if (enabled) {
+            phases.get(phase).add(1, System.nanoTime() - startTime, allocatedBytes() - startBytes);
+        }
+    }
+
+    /**
+     * Records an invocation of a detector that started at the given time and allocation count
+     */
+    public void recordDetector(String smellName, long startTime, long startBytes) {
+        if (enabled) {
+            recordDetector(smellName, 1, System.nanoTime() - startTime, allocatedBytes() - startBytes);
+        }
+    }
+
+    /**
+     * Adds measured costs to a detector
+     * @param invocations the number of invocations to add; 0 when adding to an invocation that was already counted
+     */
+    public void recordDetector(String smellName, int invocations, long nanos, long bytes) {
+        if (enabled) {
+            detectors.computeIfAbsent(smellName, name -> new Statistic()).add(invocations, nanos, bytes);
+        }
+    }
+
+    private List<String[]> rows() {
+        List<String[]> rows = new ArrayList<>();
+        for (Map.Entry<Phase, Statistic> entry : phases.entrySet()) {
+            rows.add(entry.getValue().toRow("phase", entry.getKey().name().toLowerCase()));
+        }
+        detectors.entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<String, Statistic> entry) -> entry.getValue().nanos.sum()).reversed())
+                .forEach(entry -> rows.add(entry.getValue().toRow("detector", entry.getKey())));
+        return rows;
+    }
+
+    /**
+     * Provides a human readable summary of the recorded statistics, intended to be reported at the end of a run
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-9s %-28s %10s %12s %12s %14s%n", "Kind", "Name", "Count", "Total ms", "Avg us", "Allocated MB"));
+        for (String[] row : rows()) {
+            long count = Long.parseLong(row[2]);
+            long nanos = Long.parseLong(row[3]);
+            long bytes = Long.parseLong(row[4]);
+            report.append(String.format("%-9s %-28s %10d %12.1f %12.1f %14.1f%n", row[0], row[1], count, nanos / 1e6,
+                    count == 0 ? 0.0 : nanos / 1e3 / count, bytes / (1024.0 * 1024.0)));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes the recorded statistics as CSV with the columns kind, name, count, nanos and allocatedBytes
+     */
+    public void writeReport(String file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, false))) {
+            writer.println("Kind,Name,Count,Nanos,AllocatedBytes");
+            for (String[] row : rows()) {
+                writer.println(String.join(",", row));
+            }
+        }
+    }
+
+    private static class Statistic {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        void add(int invocations, long elapsedNanos, long allocatedBytes) {
+            count.add(invocations);
+            nanos.add(elapsedNanos);
+            bytes.add(allocatedBytes);
+        }
+
+        String[] toRow(String kind, String name) {
+            return new String[]{kind, name, String.valueOf(count.sum()), String.valueOf(nanos.sum()), String.valueOf(bytes.sum())};
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package testsmell;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encodes the rows of {@link TestFileAnalyzer} as JSON Lines: one JSON object per line, for the test class and for
+ * each test method. Each line is encoded into a reused buffer and written to the output; no JSON objects are built.
+ * <p>
+ * The file columns become string members named after the columns in lower camel case (e.g. {@code testFilePath}).
+ * The smells are collected in a {@code smells} object with true, false or null for a smell that was not analyzed,
+ * and the columns of {@link Metric}s in a {@code metrics} object with a number for every recorded metric. The
+ * {@code type} member is {@code class} for the class level row and {@code method} for the rows of the test methods.
+ */
+public class JsonLinesEncoder {
+
+    private static final int TEST_METHOD_COLUMN = 2;
+
+    /**
+     * The escaped names of the members, including their quotes and colon
+     */
+    private final String[] keys;
+    private final boolean[] isMetric;
+    private final StringBuilder line = new StringBuilder(512);
+
+    /**
+     * @param columnNames the column names of the rows, see {@link TestFileAnalyzer#getColumnNames()}
+     */
+    public JsonLinesEncoder(List<String> columnNames) {
+        Set<String> metricNames = new HashSet<>();
+        for (Metric metric : Metric.values()) {
+            metricNames.add(metric.getName());
+        }
+        keys = new String[columnNames.size()];
+        isMetric = new boolean[columnNames.size()];
+        for (int i = 0; i < columnNames.size(); i++) {
+            String name = columnNames.get(i);
+            if (i < TestFileAnalyzer.FILE_COLUMNS && !name.isEmpty()) {
+                name = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+            }
+            StringBuilder key = new StringBuilder();
+            appendString(key, name);
+            keys[i] = key.append(':').toString();
+            isMetric[i] = i >= TestFileAnalyzer.FILE_COLUMNS && metricNames.contains(name);
+        }
+    }
+
+    /**
+     * Writes a row as a line of JSON. An encoder is used by one thread at a time.
+     * @return the number of characters written
+     * @throws IOException
+     */
+    public int write(Writer writer, List<String> columnValues) throws IOException {
+        line.setLength(0);
+        line.append("{\"type\":").append(columnValues.get(TEST_METHOD_COLUMN).isEmpty() ? "\"class\"" : "\"method\"");
+        int fileColumns = Math.min(TestFileAnalyzer.FILE_COLUMNS, columnValues.size());
+        for (int i = 0; i < fileColumns; i++) {
+            line.append(',').append(keys[i]);
+            appendString(line, columnValues.get(i));
+        }
+
+        line.append(",\"smells\":{");
+        boolean first = true;
+        for (int i = fileColumns; i < columnValues.size(); i++) {
+            if (!isMetric[i]) {
+                if (!first) {
+                    line.append(',');
+                }
+                first = false;
+                line.append(keys[i]);
+                String value = columnValues.get(i);
+                line.append(value.equals("true") || value.equals("false") ? value : "null");
+            }
+        }
+        line.append('}');
+
+        first = true;
+        for (int i = fileColumns; i < columnValues.size(); i++) {
+            String value = columnValues.get(i);
+            // metrics that were not recorded are left out
+            if (isMetric[i] && !value.isEmpty()) {
+                line.append(first ? ",\"metrics\":{" : ",").append(keys[i]);
+                if (isInteger(value)) {
+                    line.append(value);
+                } else {
+                    appendString(line, value);
+                }
+                first = false;
+            }
+        }
+        if (!first) {
+            line.append('}');
+        }
+        line.append('}').append('\n');
+        writer.append(line);
+        return line.length();
+    }
+
+    private static boolean isInteger(String value) {
+        int start = value.startsWith("-") ? 1 : 0;
+        if (value.length() == start || value.length() - start > 10) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a JSON string literal
+     */
+    static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,89 @@
+package testsmell;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the input manifest one line at a time. Each line has the form {@code app,testFilePath[,productionFilePath]};
+ * only the current line is held in memory, so the manifest can be arbitrarily long.
+ * Blank lines are skipped. I/O errors are thrown as {@link UncheckedIOException} by {@link #hasNext()} and
+ * {@link #next()}.
+ */
+public class ManifestReader implements Iterator<TestFile>, Closeable {
+
+    private final BufferedReader reader;
+    private TestFile nextTestFile;
+    private long lineNumber;
+
+    public ManifestReader(String manifestFile) throws IOException {
+        this(new FileReader(manifestFile));
+    }
+
+    public ManifestReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextTestFile == null) {
+            try {
+                nextTestFile = readTestFile();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return nextTestFile != null;
+    }
+
+    @Override
+    public TestFile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TestFile testFile = nextTestFile;
+        nextTestFile = null;
+        return testFile;
+    }
+
+    /**
+     * Reads the next test file of the manifest
+     * @return the test file, or null at the end of the manifest
+     * @throws IOException if the manifest cannot be read or a line is malformed
+     */
+    private TestFile readTestFile() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.trim().isEmpty());
+
+        // use comma as separator; a missing or empty third field means there is no associated production file
+        int firstComma = line.indexOf(',');
+        int secondComma = firstComma == -1 ? -1 : line.indexOf(',', firstComma + 1);
+        int thirdComma = secondComma == -1 ? -1 : line.indexOf(',', secondComma + 1);
+        if (firstComma == -1) {
+            throw new IOException("Line " + lineNumber + " of the manifest has no test file: " + line);
+        }
+        String app = line.substring(0, firstComma);
+        String testFilePath = secondComma == -1 ? line.substring(firstComma + 1) : line.substring(firstComma + 1, secondComma);
+        String productionFilePath = secondComma == -1 ? "" : thirdComma == -1 ? line.substring(secondComma + 1) : line.substring(secondComma + 1, thirdComma);
+        if (testFilePath.isEmpty()) {
+            throw new IOException("Line " + lineNumber + " of the manifest has no test file: " + line);
+        }
+        return new TestFile(app, testFilePath, productionFilePath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
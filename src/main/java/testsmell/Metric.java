@@ -0,0 +1,37 @@
+package testsmell;
+
+/**
+ * The metrics detectors record for the elements they analyze, e.g. the number of assertions of a test method.
+ * Every metric has a fixed slot in {@link SmellyElement}, so recording one does not box, format or hash anything.
+ */
+public enum Metric {
+    ASSERT_COUNT("AssertCount"),
+    CONDITION_COUNT("ConditionCount"),
+    IF_COUNT("IfCount"),
+    SWITCH_COUNT("SwitchCount"),
+    FOREACH_COUNT("ForeachCount"),
+    FOR_COUNT("ForCount"),
+    WHILE_COUNT("WhileCount"),
+    EXCEPTION_COUNT("ExceptionCount"),
+    MAGIC_NUMBER_COUNT("MagicNumberCount"),
+    MYSTERY_COUNT("MysteryCount"),
+    PRINT_COUNT("PrintCount"),
+    REDUNDANT_COUNT("RedundantCount"),
+    RESOURCE_OPTIMISM_COUNT("ResourceOptimismCount"),
+    SENSITIVE_COUNT("SensitiveCount"),
+    THREAD_SLEEP_COUNT("ThreadSleepCount"),
+    VERBOSE_COUNT("VerboseCount");
+
+    private final String name;
+
+    Metric(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The name of the metric, as used for its data item and its output column
+     */
+    public String getName() {
+        return name;
+    }
+}
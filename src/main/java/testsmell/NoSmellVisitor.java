@@ -0,0 +1,38 @@
+package testsmell;
+
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+/**
+ * Reports every valid test method as free of a smell, with a count of 0, without inspecting the method bodies.
+ * It collects the same elements as a detector that counts occurrences of a smell per test method would collect for a
+ * test file without any occurrence, including for test methods declared within test methods.
+ */
+public class NoSmellVisitor extends SmellVisitor {
+
+    private final Metric countMetric;
+    private TestMethod testMethod;
+
+    /**
+     * @param countMetric the metric of the test methods that holds the count of occurrences
+     */
+    public NoSmellVisitor(Metric countMetric) {
+        this.countMetric = countMetric;
+    }
+
+    @Override
+    public boolean visit(MethodDeclaration n) {
+        if (Util.isValidTestMethod(n)) {
+            testMethod = new TestMethod(n.getNameAsString());
+            testMethod.setHasSmell(false);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void leave(MethodDeclaration n) {
+        testMethod.setHasSmell(false);
+        testMethod.setMetric(countMetric, 0);
+        smellyElementList.add(testMethod);
+    }
+}
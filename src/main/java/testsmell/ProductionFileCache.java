@@ -0,0 +1,175 @@
+package testsmell;
+
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the ASTs of production files so that a production file shared by several test files is only read and parsed
+ * once. Entries are keyed by path and validated against the modification time and size of the file, so a file that
+ * changed on disk is parsed again.
+ * The cache is bounded by an estimate of the memory retained by the cached ASTs; the least recently used entries are
+ * evicted first. The cache can be shared between threads.
+ */
+public class ProductionFileCache {
+
+    /**
+     * Rough ratio between the size of a source file and the memory retained by its AST
+     */
+    private static final int ESTIMATED_AST_BYTES_PER_SOURCE_BYTE = 10;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries;
+    private long currentBytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxBytes the estimated memory the cached ASTs may retain; 0 disables caching
+     */
+    public ProductionFileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the AST of the given production file, parsing the file if it is not cached or changed since it was cached
+     * @param filePath the path of the production file
+     * @return the AST of the file
+     * @throws IOException
+     */
+    public CompilationUnit getCompilationUnit(String filePath) throws IOException {
+        return getCompilationUnit(filePath, Instrumentation.DISABLED);
+    }
+
+    /**
+     * Returns the AST of the given production file, parsing the file if it is not cached or changed since it was cached
+     * @param filePath the path of the production file
+     * @param instrumentation records the cost of reading and parsing the file on a cache miss
+     * @return the AST of the file
+     * @throws IOException
+     */
+    public CompilationUnit getCompilationUnit(String filePath, Instrumentation instrumentation) throws IOException {
+        File file = new File(filePath);
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        synchronized (this) {
+            Entry entry = entries.get(filePath);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                hitCount++;
+                return entry.compilationUnit;
+            }
+            missCount++;
+        }
+
+        // parse outside of the lock, so that threads parsing different files do not wait on each other
+        CompilationUnit compilationUnit = AnalysisSession.parse(filePath, instrumentation);
+
+        long weight = length * ESTIMATED_AST_BYTES_PER_SOURCE_BYTE;
+        if (weight <= maxBytes) {
+            synchronized (this) {
+                Entry previous = entries.put(filePath, new Entry(compilationUnit, lastModified, length, weight));
+                if (previous != null) {
+                    currentBytes -= previous.weight;
+                }
+                currentBytes += weight;
+                evict();
+            }
+        }
+        return compilationUnit;
+    }
+
+    /**
+     * Returns the method index of a production file AST obtained from this cache. The index is built once per cached
+     * AST and shared by all test files that use the production file.
+     * @param filePath the path of the production file
+     * @param compilationUnit the AST returned by {@link #getCompilationUnit(String)} for the file
+     * @return the method index of the AST
+     */
+    public ProductionMethodIndex getProductionMethodIndex(String filePath, CompilationUnit compilationUnit) {
+        synchronized (this) {
+            Entry entry = entries.get(filePath);
+            if (entry != null && entry.compilationUnit == compilationUnit && entry.methodIndex != null) {
+                return entry.methodIndex;
+            }
+        }
+
+        // build outside of the lock; if two threads race, both indexes are equivalent
+        ProductionMethodIndex methodIndex = ProductionMethodIndex.build(compilationUnit);
+
+        synchronized (this) {
+            Entry entry = entries.get(filePath);
+            if (entry != null && entry.compilationUnit == compilationUnit) {
+                entry.methodIndex = methodIndex;
+            }
+        }
+        return methodIndex;
+    }
+
+    /**
+     * Removes the AST of a production file, e.g. because the file changed. A changed file is detected by its
+     * modification time and size as well, which may not change on a quick edit.
+     */
+    public synchronized void invalidate(String filePath) {
+        Entry entry = entries.remove(filePath);
+        if (entry != null) {
+            currentBytes -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().getValue().weight;
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Provides a one line summary of the cache usage, intended to be reported at the end of a run
+     */
+    public synchronized String getStatistics() {
+        long lookups = hitCount + missCount;
+        return String.format("Production file cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d entries, ~%d MB",
+                hitCount, missCount, lookups == 0 ? 0.0 : 100.0 * hitCount / lookups, evictionCount, entries.size(),
+                currentBytes / (1024 * 1024));
+    }
+
+    private static class Entry {
+        private final CompilationUnit compilationUnit;
+        private final long lastModified;
+        private final long length;
+        private final long weight;
+        private ProductionMethodIndex methodIndex;
+
+        Entry(CompilationUnit compilationUnit, long lastModified, long length, long weight) {
+            this.compilationUnit = compilationUnit;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package testsmell;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The public and protected methods of a production file, indexed by name and number of parameters, so that detectors
+ * can check in constant time whether a method call of a test matches a production method.
+ * The index is immutable once built and is shared by all detectors that analyze the same production file.
+ */
+public final class ProductionMethodIndex {
+
+    private final String productionClassName;
+    private final Map<String, BitSet> aritiesByName;
+    private final int size;
+
+    private ProductionMethodIndex(String productionClassName, Map<String, BitSet> aritiesByName, int size) {
+        this.productionClassName = productionClassName;
+        this.aritiesByName = aritiesByName;
+        this.size = size;
+    }
+
+    /**
+     * Indexes the public and protected methods of the classes and enums of the production file.
+     * Methods declared inside method bodies (e.g. of local classes) are not indexed.
+     */
+    public static ProductionMethodIndex build(CompilationUnit productionFileCompilationUnit) {
+        Collector collector = new Collector();
+        SmellTraversal.traverse(productionFileCompilationUnit, Collections.singletonList(collector));
+        return new ProductionMethodIndex(collector.productionClassName, collector.aritiesByName, collector.size);
+    }
+
+    /**
+     * Returns the name of the production class, i.e. of the last class or enum declared in the production file
+     * @return the class name, or null if the production file declares no class
+     */
+    public String getProductionClassName() {
+        return productionClassName;
+    }
+
+    /**
+     * Returns true if the production file has a public or protected method with the given name and number of parameters
+     */
+    public boolean contains(String methodName, int parameterCount) {
+        BitSet arities = aritiesByName.get(methodName);
+        return arities != null && arities.get(parameterCount);
+    }
+
+    /**
+     * The number of indexed methods; overloads with the same number of parameters count once
+     */
+    public int size() {
+        return size;
+    }
+
+    private static class Collector extends SmellVisitor {
+        private String productionClassName;
+        private final Map<String, BitSet> aritiesByName = new HashMap<>();
+        private int size;
+
+        @Override
+        public boolean visit(ClassOrInterfaceDeclaration n) {
+            productionClassName = n.getNameAsString();
+            return true;
+        }
+
+        @Override
+        public boolean visit(EnumDeclaration n) {
+            productionClassName = n.getNameAsString();
+            return true;
+        }
+
+        @Override
+        public boolean visit(MethodDeclaration n) {
+            if (n.getModifiers().contains(Modifier.PUBLIC) || n.getModifiers().contains(Modifier.PROTECTED)) {
+                BitSet arities = aritiesByName.computeIfAbsent(n.getNameAsString(), name -> new BitSet());
+                int parameterCount = n.getParameters().size();
+                if (!arities.get(parameterCount)) {
+                    arities.set(parameterCount);
+                    size++;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package testsmell;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persists the results of analyzed test files so that unchanged files are not parsed and analyzed again by later runs.
+ * Results are keyed by the SHA-256 of the test file name and contents, of the production file contents and of the version
+ * of the detector set, so a result is found again no matter which directory the files are in, and is never reused once a
+ * file or a detector changed. The name is part of the key since detectors compare it with the test class, see
+ * {@link testsmell.smell.ConstructorInitialization}.
+ * <p>
+ * The cache is a single append-only file of checksummed records; a record that was cut off by a crash is discarded when
+ * the cache is opened. The entries are kept in the order they were last used: when the file exceeds its maximum size,
+ * as a result is stored or when the cache is closed, the file is rewritten without the least recently used entries and
+ * the records of replaced results, so that a long running process does not grow the file beyond its maximum size. The
+ * cache can be shared between threads.
+ */
+public class ResultCache implements Closeable {
+
+    public enum Mode {
+        /**
+         * Results found in the cache are returned without analyzing the file
+         */
+        USE,
+        /**
+         * Files are always analyzed; results found in the cache are compared with the new results and replaced
+         */
+        VERIFY,
+        /**
+         * Existing entries are discarded when the cache is opened
+         */
+        REBUILD
+    }
+
+    private static final int MAGIC = 0x74735243; // "tsRC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int KEY_BYTES = 32;
+    /**
+     * Record length, key and CRC of the payload
+     */
+    private static final int RECORD_HEADER_BYTES = 4 + KEY_BYTES + 4;
+
+    private final File file;
+    private final long maxBytes;
+    private final Mode mode;
+    private final byte[] detectorSetVersion;
+    /**
+     * Replaced when the file is compacted
+     */
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    /**
+     * The entries in the order they were last used, the least recently used first
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hitCount;
+    private long missCount;
+    private long mismatchCount;
+    private boolean closed;
+
+    /**
+     * Opens the cache, creating the cache file if it does not exist
+     * @param file the cache file
+     * @param maxBytes the size the cache file is reduced to when the cache is closed
+     * @param mode how cached results are used
+     * @param detectorSetVersion identifies the detectors and their version; results of other detector sets are not used
+     * @throws IOException
+     */
+    public ResultCache(File file, long maxBytes, Mode mode, String detectorSetVersion) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.mode = mode;
+        this.detectorSetVersion = sha256(detectorSetVersion.getBytes(StandardCharsets.UTF_8));
+        if (mode == Mode.REBUILD) {
+            Files.deleteIfExists(file.toPath());
+        }
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        load();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Computes the key of a test file from the name and contents of the test file and the contents of its production file
+     * @throws IOException if a file cannot be read
+     */
+    public Key computeKey(TestFile testFile) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(detectorSetVersion);
+        digest.update(sha256(testFile.getTestFileName().getBytes(StandardCharsets.UTF_8)));
+        digest.update(sha256(testFile.getTestFilePath()));
+        if (testFile.getHasProductionFile()) {
+            digest.update((byte) 1);
+            digest.update(sha256(testFile.getProductionFilePath()));
+        } else {
+            digest.update((byte) 0);
+        }
+        return new Key(digest.digest());
+    }
+
+    /**
+     * Returns the cached result of a test file
+     * @return the rows stored by {@link #put(Key, List)}, or null if the cache has no result for the key
+     * @throws IOException
+     */
+    public synchronized List<List<String>> get(Key key) throws IOException {
+        // the record is read while holding the lock, since compacting the file moves the records
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        long position = entry.offset + RECORD_HEADER_BYTES;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("The result cache " + file + " is truncated");
+            }
+        }
+        return decode(buffer.array());
+    }
+
+    /**
+     * Stores the result of a test file, replacing any result stored for the same key
+     * @param rows the result; the rows may have any number of columns
+     * @throws IOException
+     */
+    public void put(Key key, List<List<String>> rows) throws IOException {
+        byte[] payload = encode(rows);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(KEY_BYTES + 4 + payload.length);
+        record.put(key.bytes);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("The result cache is closed");
+            }
+            long offset = channel.size();
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            entries.put(key, new Entry(offset, payload.length));
+            if (channel.size() > maxBytes) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Records that a cached result differs from the result of analyzing the file again, in {@link Mode#VERIFY}
+     */
+    public synchronized void recordMismatch() {
+        mismatchCount++;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getMismatchCount() {
+        return mismatchCount;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Provides a one line summary of the cache usage, intended to be reported at the end of a run
+     */
+    public synchronized String getStatistics() {
+        long lookups = hitCount + missCount;
+        return String.format("Result cache: %d hits, %d misses (%.1f%% hit rate), %d mismatches, %d entries",
+                hitCount, missCount, lookups == 0 ? 0.0 : 100.0 * hitCount / lookups, mismatchCount, entries.size());
+    }
+
+    /**
+     * Reads the index of the cache file, discarding a cut off or corrupt tail and all entries of another format
+     */
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES || !readHeader()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            channel.write(header, 0);
+            return;
+        }
+        long position = HEADER_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            in.skipBytes(HEADER_BYTES);
+            while (position + 4 <= size) {
+                int recordLength = in.readInt();
+                if (recordLength < KEY_BYTES + 4 || position + 4 + recordLength > size) {
+                    break;
+                }
+                byte[] key = new byte[KEY_BYTES];
+                in.readFully(key);
+                int checksum = in.readInt();
+                byte[] payload = new byte[recordLength - KEY_BYTES - 4];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                entries.put(new Key(key), new Entry(position, payload.length));
+                position += 4 + recordLength;
+            }
+        }
+        if (position < size) {
+            // a record was cut off, e.g. by a crash while it was appended
+            channel.truncate(position);
+        }
+    }
+
+    private boolean readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return false;
+            }
+        }
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION;
+    }
+
+    /**
+     * Rewrites the cache file without the least recently used entries if it exceeds its maximum size, then closes it
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel.size() > maxBytes) {
+                compact();
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Keeps the most recently used entries that fit into three quarters of the maximum size, so that the file is not
+     * compacted again right away by the next results or the next run. Unless the cache is closed, the compacted file is
+     * opened in place of the cache file.
+     */
+    private void compact() throws IOException {
+        long budget = maxBytes / 4 * 3 - HEADER_BYTES;
+        List<Map.Entry<Key, Entry>> kept = new ArrayList<>();
+        List<Map.Entry<Key, Entry>> mostRecentFirst = new ArrayList<>(entries.entrySet());
+        for (int i = mostRecentFirst.size() - 1; i >= 0; i--) {
+            long recordBytes = RECORD_HEADER_BYTES + mostRecentFirst.get(i).getValue().length;
+            if (recordBytes > budget) {
+                break;
+            }
+            budget -= recordBytes;
+            kept.add(mostRecentFirst.get(i));
+        }
+
+        File compacted = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile target = new RandomAccessFile(compacted, "rw")) {
+            target.setLength(0);
+            FileChannel targetChannel = target.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            targetChannel.write(header);
+            // least recently used first, so that the order of the file is the order of use
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                Entry entry = kept.get(i).getValue();
+                long position = entry.offset;
+                long remaining = RECORD_HEADER_BYTES + entry.length;
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, targetChannel);
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+            targetChannel.force(false);
+        }
+        randomAccessFile.close();
+        boolean moved = false;
+        try {
+            Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!closed) {
+                reopen(moved ? kept : null);
+            }
+        }
+    }
+
+    /**
+     * Opens the cache file after it was compacted
+     * @param kept the entries kept in the file, the most recently used first; null if the file was not compacted
+     */
+    private void reopen(List<Map.Entry<Key, Entry>> kept) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        entries.clear();
+        if (kept != null) {
+            long offset = HEADER_BYTES;
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                Entry entry = kept.get(i).getValue();
+                entries.put(kept.get(i).getKey(), new Entry(offset, entry.length));
+                offset += RECORD_HEADER_BYTES + entry.length;
+            }
+        } else {
+            load();
+        }
+    }
+
+    private static byte[] encode(List<List<String>> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(rows.size());
+            for (List<String> row : rows) {
+                out.writeInt(row.size());
+                for (String value : row) {
+                    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(encoded.length);
+                    out.write(encoded);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<List<String>> decode(byte[] payload) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            int rowCount = in.getInt();
+            List<List<String>> rows = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                int columnCount = in.getInt();
+                List<String> row = new ArrayList<>(columnCount);
+                for (int j = 0; j < columnCount; j++) {
+                    byte[] encoded = new byte[in.getInt()];
+                    in.get(encoded);
+                    row.add(new String(encoded, StandardCharsets.UTF_8));
+                }
+                rows.add(row);
+            }
+            return rows;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt entry in the result cache", e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        return newDigest().digest(bytes);
+    }
+
+    private static byte[] sha256(String filePath) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream inputStream = new FileInputStream(filePath)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Identifies the result of a test file by the contents of the analyzed files and the version of the detector set
+     */
+    public static final class Key {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(bytes, ((Key) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
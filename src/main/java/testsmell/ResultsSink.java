@@ -0,0 +1,30 @@
+package testsmell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the rows of a run, see {@link TestFileAnalyzer#analyze(TestFile)}: first the column names, then the rows of
+ * every test file, the class level row first. Closing the sink completes the output.
+ */
+public interface ResultsSink extends Closeable {
+
+    /**
+     * Receives the column names of the rows, before any row
+     * @throws IOException
+     */
+    void writeColumnName(List<String> columnNames) throws IOException;
+
+    /**
+     * Receives a row
+     * @throws IOException
+     */
+    void writeLine(List<String> columnValues) throws IOException;
+
+    /**
+     * Completes the output of the rows received so far, e.g. for a reader that follows the output
+     * @throws IOException
+     */
+    void flush() throws IOException;
+}
@@ -1,27 +1,119 @@
 package testsmell;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class is utilized to write output to a CSV file
+ * This class is utilized to write output to a CSV or JSON Lines file.
+ * The file is kept open for the whole run and written through a buffer, which is flushed once it holds a given amount
+ * of output or a given time has passed since the last flush. Optionally, rows are handed to a dedicated writer thread,
+ * so that the callers never wait for the disk.
+ * Closing the writer flushes all rows and syncs the file; if the JVM exits before the writer is closed, a shutdown hook
+ * does the same.
  */
-public class ResultsWriter {
+public class ResultsWriter implements ResultsSink {
 
-    private String outputFile;
-    private FileWriter writer;
+    /**
+     * The format of the output file
+     */
+    public enum Format {
+        /**
+         * Comma separated values with a header line; values are not quoted
+         */
+        CSV("csv"),
+        /**
+         * A JSON object per row, see {@link JsonLinesEncoder}
+         */
+        JSONL("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    public static final int DEFAULT_FLUSH_THRESHOLD = 64 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int ASYNC_QUEUE_CAPACITY = 4096;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Marks the end of the rows in the queue of the writer thread; compared by identity
+     */
+    private static final List<String> END_OF_OUTPUT = new ArrayList<>();
+
+    /**
+     * Requests the writer thread to flush the rows before it in the queue; compared by identity
+     */
+    private static final List<String> FLUSH_OUTPUT = new ArrayList<>();
+
+    private final Format format;
+    private final String outputFile;
+    private final FileOutputStream outputStream;
+    private final Writer writer;
+    private final int flushThreshold;
+    private final long flushIntervalNanos;
+    private final Instrumentation instrumentation;
+    private volatile JsonLinesEncoder jsonLinesEncoder;
+    private int unflushedChars;
+    private long lastFlushNanos;
+    private final BlockingQueue<List<String>> queue;
+    private final Thread writerThread;
+    private volatile IOException writerFailure;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
 
     /**
      * Creates the file into which output it to be written into. Results from each file will be stored in a new file
      * @throws IOException
      */
-    private ResultsWriter() throws IOException {
-        String time =  String.valueOf(Calendar.getInstance().getTimeInMillis());
-        outputFile = MessageFormat.format("{0}_{1}_{2}.{3}", "Output","TestSmellDetection",time, "csv");
-        writer = new FileWriter(outputFile,false);
+    private ResultsWriter(Format format, int flushThreshold, long flushIntervalMillis, boolean async, Instrumentation instrumentation) throws IOException {
+        this(MessageFormat.format("{0}_{1}_{2}.{3}", "Output", "TestSmellDetection", String.valueOf(Calendar.getInstance().getTimeInMillis()), format.extension),
+                format, flushThreshold, flushIntervalMillis, async, instrumentation);
+    }
+
+    /**
+     * Creates a writer for a given output file, e.g. in a temporary directory
+     * @throws IOException
+     */
+    ResultsWriter(String outputFile, Format format, int flushThreshold, long flushIntervalMillis, boolean async, Instrumentation instrumentation) throws IOException {
+        this.format = format;
+        this.outputFile = outputFile;
+        outputStream = new FileOutputStream(outputFile, false);
+        // CSV keeps the encoding of the FileWriter used before; JSON is always UTF-8
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, format == Format.JSONL ? StandardCharsets.UTF_8 : Charset.defaultCharset()),
+                Math.max(flushThreshold, 1024));
+        this.flushThreshold = flushThreshold;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.lastFlushNanos = System.nanoTime();
+        this.instrumentation = instrumentation;
+
+        if (async) {
+            queue = new ArrayBlockingQueue<>(ASYNC_QUEUE_CAPACITY);
+            writerThread = new Thread(this::runWriterThread, "tsDetect-results-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            queue = null;
+            writerThread = null;
+        }
+
+        shutdownHook = new Thread(this::closeOnShutdown, "tsDetect-results-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     /**
@@ -30,16 +122,69 @@ public class ResultsWriter {
      * @throws IOException
      */
     public static ResultsWriter createResultsWriter() throws IOException {
-        return new ResultsWriter();
+        return new ResultsWriter(Format.CSV, DEFAULT_FLUSH_THRESHOLD, DEFAULT_FLUSH_INTERVAL_MILLIS, false, Instrumentation.DISABLED);
+    }
+
+    /**
+     * Factory method that provides a new instance of the ResultsWriter
+     * @param flushThreshold the amount of buffered output, in characters, after which the output is flushed
+     * @param flushIntervalMillis the time after which buffered output is flushed
+     * @param async true to write the rows on a dedicated writer thread
+     * @return new ResultsWriter instance
+     * @throws IOException
+     */
+    public static ResultsWriter createResultsWriter(int flushThreshold, long flushIntervalMillis, boolean async) throws IOException {
+        return new ResultsWriter(Format.CSV, flushThreshold, flushIntervalMillis, async, Instrumentation.DISABLED);
+    }
+
+    /**
+     * Factory method that provides a new instance of the ResultsWriter
+     * @param flushThreshold the amount of buffered output, in characters, after which the output is flushed
+     * @param flushIntervalMillis the time after which buffered output is flushed
+     * @param async true to write the rows on a dedicated writer thread
+     * @param instrumentation records the cost of writing the rows, on the thread that writes them
+     * @return new ResultsWriter instance
+     * @throws IOException
+     */
+    public static ResultsWriter createResultsWriter(int flushThreshold, long flushIntervalMillis, boolean async, Instrumentation instrumentation) throws IOException {
+        return new ResultsWriter(Format.CSV, flushThreshold, flushIntervalMillis, async, instrumentation);
+    }
+
+    /**
+     * Factory method that provides a new instance of the ResultsWriter
+     * @param format the format of the output file
+     * @param flushThreshold the amount of buffered output, in characters, after which the output is flushed
+     * @param flushIntervalMillis the time after which buffered output is flushed
+     * @param async true to write the rows on a dedicated writer thread
+     * @param instrumentation records the cost of writing the rows, on the thread that writes them
+     * @return new ResultsWriter instance
+     * @throws IOException
+     */
+    public static ResultsWriter createResultsWriter(Format format, int flushThreshold, long flushIntervalMillis, boolean async, Instrumentation instrumentation) throws IOException {
+        return new ResultsWriter(format, flushThreshold, flushIntervalMillis, async, instrumentation);
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    public Format getFormat() {
+        return format;
     }
 
     /**
-     * Writes column names into the CSV file
+     * Writes column names into the CSV file. A JSON Lines file has no header; the column names determine the members
+     * of the objects written for the rows.
      * @param columnNames the column names
      * @throws IOException
      */
+    @Override
     public void writeColumnName(List<String> columnNames) throws IOException {
-        writeOutput(columnNames);
+        if (format == Format.JSONL) {
+            jsonLinesEncoder = new JsonLinesEncoder(columnNames);
+        } else {
+            writeOutput(columnNames);
+        }
     }
 
     /**
@@ -47,28 +192,172 @@ public class ResultsWriter {
      * @param columnValues the column values
      * @throws IOException
      */
+    @Override
     public void writeLine(List<String> columnValues) throws IOException {
         writeOutput(columnValues);
     }
 
     /**
-     * Appends the input values into the CSV file
-     * @param dataValues the data that needs to be written into the file
+     * Flushes the rows written so far to the file, without waiting for the flush threshold or interval. With a writer
+     * thread, the rows are flushed once the thread has written them.
      * @throws IOException
      */
-    private void writeOutput(List<String> dataValues)throws IOException {
-        writer = new FileWriter(outputFile,true);
+    @Override
+    public void flush() throws IOException {
+        if (queue == null) {
+            synchronized (this) {
+                if (!closed) {
+                    flush(System.nanoTime());
+                }
+            }
+            return;
+        }
+        if (!closed) {
+            writeOutput(FLUSH_OUTPUT);
+        }
+    }
 
-        for (int i=0; i<dataValues.size(); i++) {
-            writer.append(String.valueOf(dataValues.get(i)));
+    /**
+     * Appends the input values into the CSV file, or hands them to the writer thread
+     * @param dataValues the data that needs to be written into the file
+     * @throws IOException
+     */
+    private void writeOutput(List<String> dataValues) throws IOException {
+        if (queue == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("The results writer is closed");
+                }
+                write(dataValues);
+            }
+            return;
+        }
+        if (closed) {
+            // the writer thread is gone; the row would never be written
+            throw new IOException("The results writer is closed");
+        }
+        checkWriterThread();
+        try {
+            queue.put(dataValues);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queuing a row for the results writer");
+        }
+    }
 
-            if(i!=dataValues.size()-1)
-                writer.append(",");
-            else
-                writer.append(System.lineSeparator());
+    private void write(List<String> dataValues) throws IOException {
+        long startTime = instrumentation.startTime();
+        long startBytes = instrumentation.startBytes();
+        if (format == Format.JSONL) {
+            if (jsonLinesEncoder == null) {
+                throw new IOException("The column names must be written before the rows");
+            }
+            unflushedChars += jsonLinesEncoder.write(writer, dataValues);
+        } else {
+            for (int i=0; i<dataValues.size(); i++) {
+                String value = String.valueOf(dataValues.get(i));
+                writer.append(value);
+                unflushedChars += value.length() + 1;
 
+                if(i!=dataValues.size()-1)
+                    writer.append(",");
+                else
+                    writer.append(System.lineSeparator());
+            }
         }
+        long now = System.nanoTime();
+        if (unflushedChars >= flushThreshold || now - lastFlushNanos >= flushIntervalNanos) {
+            flush(now);
+        }
+        instrumentation.recordPhase(Instrumentation.Phase.WRITE, startTime, startBytes);
+    }
+
+    private void flush(long now) throws IOException {
         writer.flush();
-        writer.close();
+        unflushedChars = 0;
+        lastFlushNanos = now;
+    }
+
+    private void runWriterThread() {
+        try {
+            while (true) {
+                // without pending output there is nothing to flush, so wait for the next row
+                List<String> dataValues = unflushedChars == 0 ? queue.take()
+                        : queue.poll(Math.max(flushIntervalNanos - (System.nanoTime() - lastFlushNanos), 0), TimeUnit.NANOSECONDS);
+                if (dataValues == END_OF_OUTPUT) {
+                    return;
+                }
+                if (writerFailure != null) {
+                    // keep draining the queue so that callers are not blocked; the failure is reported to them
+                    continue;
+                }
+                try {
+                    if (dataValues == FLUSH_OUTPUT) {
+                        flush(System.nanoTime());
+                    } else if (dataValues != null) {
+                        write(dataValues);
+                    } else if (unflushedChars > 0) {
+                        flush(System.nanoTime());
+                    }
+                } catch (IOException e) {
+                    writerFailure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkWriterThread() throws IOException {
+        IOException failure = writerFailure;
+        if (failure != null) {
+            throw new IOException("The results writer failed", failure);
+        }
+    }
+
+    /**
+     * Writes all pending rows, then syncs and closes the file
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        closeWriter(Long.MAX_VALUE);
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is shutting down already
+        }
+    }
+
+    private synchronized void closeWriter(long timeoutMillis) throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (writerThread != null) {
+                try {
+                    if (queue.offer(END_OF_OUTPUT, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                        writerThread.join(timeoutMillis == Long.MAX_VALUE ? 0 : timeoutMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the results writer");
+                }
+                checkWriterThread();
+            }
+            writer.flush();
+            outputStream.getFD().sync();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void closeOnShutdown() {
+        try {
+            closeWriter(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            System.err.println("Could not write all results to " + outputFile + ": " + e.getMessage());
+        }
     }
 }
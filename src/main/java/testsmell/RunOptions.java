@@ -0,0 +1,496 @@
+package testsmell;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options of a tsDetect run.
+ * The first positional argument is the input file; options are given as --name=value.
+ */
+public class RunOptions {
+
+    public static final long DEFAULT_PRODUCTION_CACHE_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_RESULT_CACHE_BYTES = 1024L * 1024 * 1024;
+    public static final int DEFAULT_CONCURRENT_READS = 1024;
+    public static final int DEFAULT_WARM_UP_ROUNDS = 3;
+    private static final int MAX_PARALLELISM = 32767;
+
+    private String inputFile;
+    private long productionCacheBytes = DEFAULT_PRODUCTION_CACHE_BYTES;
+    private int parallelism = 1;
+    private int flushThreshold = ResultsWriter.DEFAULT_FLUSH_THRESHOLD;
+    private long flushIntervalMillis = ResultsWriter.DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private boolean asyncWriter;
+    private boolean instrument;
+    private String instrumentFile;
+    private String resultCacheFile;
+    private long resultCacheBytes = DEFAULT_RESULT_CACHE_BYTES;
+    private ResultCache.Mode resultCacheMode = ResultCache.Mode.USE;
+    private String gitRepository = ".";
+    private String gitRange;
+    private String baselineFile;
+    private List<Path> sourceRoots;
+    private boolean prescan = true;
+    private boolean metrics;
+    private ResultsWriter.Format format = ResultsWriter.Format.CSV;
+    private String databaseUrl;
+    private boolean pipeline;
+    private int readThreads = 2;
+    private int parseThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int detectThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int queueCapacity = AnalysisPipeline.DEFAULT_QUEUE_CAPACITY;
+    private boolean virtualThreads;
+    private int concurrentReads = DEFAULT_CONCURRENT_READS;
+    private int serverPort = -1;
+    private int serverThreads = Runtime.getRuntime().availableProcessors();
+    private int warmUpRounds = DEFAULT_WARM_UP_ROUNDS;
+    private boolean watch;
+    private long debounceMillis = SourceWatcher.DEFAULT_DEBOUNCE_MILLIS;
+
+    private RunOptions() {
+    }
+
+    /**
+     * Parses the command line arguments
+     * @param args the arguments passed to Main
+     * @return the parsed options
+     * @throws IllegalArgumentException if an option is unknown or has an invalid value
+     */
+    public static RunOptions parse(String[] args) {
+        RunOptions options = new RunOptions();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            String name = separator == -1 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator == -1 ? "" : arg.substring(separator + 1);
+            switch (name) {
+                case "production-cache-mb":
+                    options.productionCacheBytes = parseNonNegativeLong(name, value) * 1024 * 1024;
+                    break;
+                case "parallelism":
+                    options.parallelism = parseThreads(name, value);
+                    break;
+                case "pipeline":
+                    options.pipeline = parseBoolean(name, value);
+                    break;
+                case "read-threads":
+                    options.readThreads = parseThreads(name, value);
+                    options.pipeline = true;
+                    break;
+                case "parse-threads":
+                    options.parseThreads = parseThreads(name, value);
+                    options.pipeline = true;
+                    break;
+                case "detect-threads":
+                    options.detectThreads = parseThreads(name, value);
+                    options.pipeline = true;
+                    break;
+                case "virtual-threads":
+                    options.virtualThreads = parseBoolean(name, value);
+                    options.pipeline |= options.virtualThreads;
+                    break;
+                case "concurrent-reads":
+                    options.concurrentReads = (int) Math.max(1, Math.min(parseNonNegativeLong(name, value), Integer.MAX_VALUE / 2));
+                    options.virtualThreads = true;
+                    options.pipeline = true;
+                    break;
+                case "server":
+                    long port = parseNonNegativeLong(name, value);
+                    if (port > 65535) {
+                        throw new IllegalArgumentException("Option --" + name + " expects a port, got: " + value);
+                    }
+                    options.serverPort = (int) port;
+                    break;
+                case "server-threads":
+                    options.serverThreads = parseThreads(name, value);
+                    break;
+                case "warm-up":
+                    options.warmUpRounds = (int) Math.min(parseNonNegativeLong(name, value), Integer.MAX_VALUE);
+                    break;
+                case "watch":
+                    options.watch = parseBoolean(name, value);
+                    break;
+                case "debounce-ms":
+                    options.debounceMillis = parseNonNegativeLong(name, value);
+                    break;
+                case "queue-capacity":
+                    options.queueCapacity = (int) Math.max(1, Math.min(parseNonNegativeLong(name, value), MAX_PARALLELISM));
+                    options.pipeline = true;
+                    break;
+                case "flush-kb":
+                    options.flushThreshold = (int) Math.min(parseNonNegativeLong(name, value) * 1024, Integer.MAX_VALUE);
+                    break;
+                case "flush-interval-ms":
+                    options.flushIntervalMillis = parseNonNegativeLong(name, value);
+                    break;
+                case "async-writer":
+                    options.asyncWriter = parseBoolean(name, value);
+                    break;
+                case "instrument":
+                    options.instrument = parseBoolean(name, value);
+                    break;
+                case "instrument-file":
+                    if (value.isEmpty()) {
+                        throw new IllegalArgumentException("Option --" + name + " expects a file name");
+                    }
+                    options.instrumentFile = value;
+                    break;
+                case "result-cache":
+                    if (value.isEmpty()) {
+                        throw new IllegalArgumentException("Option --" + name + " expects a file name");
+                    }
+                    options.resultCacheFile = value;
+                    break;
+                case "result-cache-mb":
+                    options.resultCacheBytes = parseNonNegativeLong(name, value) * 1024 * 1024;
+                    break;
+                case "result-cache-mode":
+                    try {
+                        options.resultCacheMode = ResultCache.Mode.valueOf(value.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Option --" + name + " expects use, verify or rebuild, got: " + value);
+                    }
+                    break;
+                case "git-repo":
+                    options.gitRepository = requireValue(name, value);
+                    break;
+                case "git-range":
+                    if (value.startsWith("-")) {
+                        throw new IllegalArgumentException("Option --" + name + " expects a revision range, got: " + value);
+                    }
+                    options.gitRange = requireValue(name, value);
+                    break;
+                case "baseline":
+                    options.baselineFile = requireValue(name, value);
+                    break;
+                case "format":
+                    try {
+                        options.format = ResultsWriter.Format.valueOf(value.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Option --" + name + " expects csv or jsonl, got: " + value);
+                    }
+                    break;
+                case "database":
+                    options.databaseUrl = requireValue(name, value);
+                    break;
+                case "metrics":
+                    options.metrics = parseBoolean(name, value);
+                    break;
+                case "prescan":
+                    options.prescan = parseBoolean(name, value);
+                    break;
+                case "source-roots":
+                    options.sourceRoots = new ArrayList<>();
+                    for (String root : requireValue(name, value).split(File.pathSeparator)) {
+                        if (!root.isEmpty()) {
+                            options.sourceRoots.add(Paths.get(root));
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.format == ResultsWriter.Format.JSONL && options.baselineFile != null) {
+            throw new IllegalArgumentException("Option --baseline expects the output of a run with --format=csv");
+        }
+        if (options.pipeline && options.parallelism != 1) {
+            throw new IllegalArgumentException("Option --parallelism cannot be combined with the options of the pipeline");
+        }
+        if (options.watch && (options.sourceRoots == null || options.gitRange != null)) {
+            throw new IllegalArgumentException("Option --watch expects --source-roots and cannot be combined with --git-range");
+        }
+        if (!positional.isEmpty()) {
+            options.inputFile = positional.get(0);
+        }
+        return options;
+    }
+
+    private static long parseNonNegativeLong(String name, String value) {
+        try {
+            long parsed = Long.parseLong(value);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects a non-negative number, got: " + value);
+    }
+
+    /**
+     * Parses a thread count, where 0 stands for the number of available processors
+     */
+    private static int parseThreads(String name, String value) {
+        long threads = parseNonNegativeLong(name, value);
+        return threads == 0 ? Runtime.getRuntime().availableProcessors() : (int) Math.min(threads, MAX_PARALLELISM);
+    }
+
+    private static String requireValue(String name, String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Option --" + name + " expects a value");
+        }
+        return value;
+    }
+
+    private static boolean parseBoolean(String name, String value) {
+        if (value.isEmpty() || value.equals("true")) {
+            return true;
+        }
+        if (value.equals("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects true or false, got: " + value);
+    }
+
+    /**
+     * The file containing the paths to the collection of test files
+     */
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * The estimated memory, in bytes, the production file AST cache may use; 0 disables the cache
+     */
+    public long getProductionCacheBytes() {
+        return productionCacheBytes;
+    }
+
+    /**
+     * The number of test files analyzed concurrently; 1 analyzes the files sequentially.
+     * Given as --parallelism=N, where 0 stands for the number of available processors.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * The amount of buffered output, in characters, after which the results are flushed to disk; --flush-kb=N
+     */
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    /**
+     * The time after which buffered results are flushed to disk; --flush-interval-ms=N
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * Whether the results are written on a dedicated writer thread; --async-writer
+     */
+    public boolean isAsyncWriter() {
+        return asyncWriter;
+    }
+
+    /**
+     * Whether the cost of every phase and detector is measured and reported at the end of the run; --instrument, or
+     * implied by --instrument-file
+     */
+    public boolean isInstrument() {
+        return instrument || instrumentFile != null;
+    }
+
+    /**
+     * The CSV file the measurements are written to; --instrument-file=path
+     * @return the file, or null if the measurements are only reported on the console
+     */
+    public String getInstrumentFile() {
+        return instrumentFile;
+    }
+
+    /**
+     * The file the results of earlier runs are cached in; --result-cache=path
+     * @return the file, or null if results are not cached
+     */
+    public String getResultCacheFile() {
+        return resultCacheFile;
+    }
+
+    /**
+     * The size, in bytes, the result cache file is reduced to at the end of a run; --result-cache-mb=N
+     */
+    public long getResultCacheBytes() {
+        return resultCacheBytes;
+    }
+
+    /**
+     * How cached results are used; --result-cache-mode=use|verify|rebuild
+     */
+    public ResultCache.Mode getResultCacheMode() {
+        return resultCacheMode;
+    }
+
+    /**
+     * The git repository the revision range refers to; --git-repo=path, the current directory by default
+     */
+    public String getGitRepository() {
+        return gitRepository;
+    }
+
+    /**
+     * The revisions between which the changed files are analyzed, e.g. base..head; --git-range=range
+     * @return the range, or null to analyze all test files
+     */
+    public String getGitRange() {
+        return gitRange;
+    }
+
+    /**
+     * The output of an earlier run the results of an incremental run are merged into; --baseline=file
+     * @return the file, or null to only output the analyzed test files
+     */
+    public String getBaselineFile() {
+        return baselineFile;
+    }
+
+    /**
+     * The directories the test files are discovered in, in place of an input file; --source-roots=dir[:dir...], with
+     * the directories separated by the platform path separator
+     * @return the directories, or null if the test files are listed in an input file
+     */
+    public List<Path> getSourceRoots() {
+        return sourceRoots;
+    }
+
+    /**
+     * Whether test files are scanned for the tokens of the smells before they are inspected; --prescan=false disables
+     * the scan, which does not change the results
+     */
+    public boolean isPrescan() {
+        return prescan;
+    }
+
+    /**
+     * Whether the output has a column per metric the detectors record, e.g. the number of assertions; --metrics, or
+     * implied by --format=jsonl and --database
+     */
+    public boolean isMetrics() {
+        return metrics || format == ResultsWriter.Format.JSONL || databaseUrl != null;
+    }
+
+    /**
+     * The format of the output file; --format=csv|jsonl
+     */
+    public ResultsWriter.Format getFormat() {
+        return format;
+    }
+
+    /**
+     * The JDBC URL of the database the results are written to instead of a file, e.g. jdbc:sqlite:results.db;
+     * --database=url. The SQLite driver is bundled; the JDBC driver of another database has to be on the class path.
+     * @return the URL, or null to write the results to a file
+     */
+    public String getDatabaseUrl() {
+        return databaseUrl;
+    }
+
+    /**
+     * Whether the test files are analyzed by a pipeline of stages with their own threads; --pipeline, or implied by
+     * the options of the stages
+     */
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * The number of threads reading the test files in the pipeline; --read-threads=N, 2 by default
+     */
+    public int getReadThreads() {
+        return readThreads;
+    }
+
+    /**
+     * The number of threads parsing the test and production files in the pipeline; --parse-threads=N, half of the
+     * available processors by default
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * The number of threads detecting the smells in the pipeline; --detect-threads=N, half of the available processors
+     * by default
+     */
+    public int getDetectThreads() {
+        return detectThreads;
+    }
+
+    /**
+     * The number of test files each queue between two stages of the pipeline holds; --queue-capacity=N
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Whether the pipeline reads each test file on a virtual thread of its own, for storage with a high latency;
+     * --virtual-threads. Requires a JVM with virtual threads, otherwise the files are read by --read-threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * The number of test files read at the same time on virtual threads; --concurrent-reads=N
+     */
+    public int getConcurrentReads() {
+        return concurrentReads;
+    }
+
+    /**
+     * The port of the loopback interface analysis requests are served on, see {@link AnalysisServer}; --server=port,
+     * where 0 picks a free port
+     * @return the port, or -1 to analyze the input file and exit
+     */
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    /**
+     * Whether the run serves analysis requests instead of analyzing an input file; --server=port
+     */
+    public boolean isServer() {
+        return serverPort != -1;
+    }
+
+    /**
+     * The number of requests the server analyzes at the same time; --server-threads=N, the number of available
+     * processors by default
+     */
+    public int getServerThreads() {
+        return serverThreads;
+    }
+
+    /**
+     * The number of times the server analyzes a generated corpus before it reports to be ready; --warm-up=N
+     */
+    public int getWarmUpRounds() {
+        return warmUpRounds;
+    }
+
+    /**
+     * Whether the source roots are watched and changed test files are analyzed again until the run is stopped, see
+     * {@link SourceWatcher}; --watch, together with --source-roots
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * The time without changes after which the changes to watched files are analyzed; --debounce-ms=N
+     */
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+}
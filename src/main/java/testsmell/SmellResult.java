@@ -0,0 +1,63 @@
+package testsmell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of analyzing a test file for a single smell. Results are immutable, so they can be handed between threads.
+ */
+public final class SmellResult {
+
+    private final String smellName;
+    private final boolean applicable;
+    private final boolean hasSmell;
+    private final List<SmellyElement> smellyElements;
+
+    /**
+     * @param smellName the name of the smell
+     * @param smellyElements the analyzed elements (i.e. test methods or test classes)
+     */
+    public SmellResult(String smellName, List<SmellyElement> smellyElements) {
+        this(smellName, true, Collections.unmodifiableList(new ArrayList<>(smellyElements)));
+    }
+
+    private SmellResult(String smellName, boolean applicable, List<SmellyElement> smellyElements) {
+        this.smellName = smellName;
+        this.applicable = applicable;
+        this.smellyElements = smellyElements;
+        this.hasSmell = smellyElements.stream().anyMatch(SmellyElement::getHasSmell);
+    }
+
+    /**
+     * Provides the result of a smell that could not be analyzed, e.g. because the test file has no production file
+     */
+    public static SmellResult notApplicable(String smellName) {
+        return new SmellResult(smellName, false, Collections.emptyList());
+    }
+
+    public String getSmellName() {
+        return smellName;
+    }
+
+    /**
+     * Returns false if the smell could not be analyzed for the test file
+     */
+    public boolean isApplicable() {
+        return applicable;
+    }
+
+    /**
+     * Returns true if any of the elements has a smell
+     */
+    public boolean getHasSmell() {
+        return hasSmell;
+    }
+
+    /**
+     * Returns the set of analyzed elements (i.e. test methods)
+     */
+    public List<SmellyElement> getSmellyElements() {
+        return smellyElements;
+    }
+}
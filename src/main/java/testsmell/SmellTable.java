@@ -0,0 +1,143 @@
+package testsmell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The smells of the elements of a test file as a dense table, with a row per element and a column per smell. A cell
+ * is true, false or unknown (e.g. the smell is not applicable to the element); the cells of a row are stored as two
+ * bit sets, one for the known cells and one for the smelly cells. Optionally, the table has a column per
+ * {@link Metric}, whose cells are ints. Smell and element names are only attached when the table is converted to
+ * output rows.
+ * A table is filled by a single thread.
+ */
+public class SmellTable {
+
+    private static final String TRUE = String.valueOf(true);
+    private static final String FALSE = String.valueOf(false);
+    private static final String UNKNOWN = "";
+
+    private final int smellCount;
+    private final int metricCount;
+    private final int words;
+    private final List<String> elementNames = new ArrayList<>();
+    private final Map<String, Integer> elementRows = new HashMap<>();
+    private long[] known;
+    private long[] smelly;
+    private long[] knownMetrics;
+    private int[] metricValues;
+
+    /**
+     * @param smellCount the number of smell columns
+     */
+    public SmellTable(int smellCount) {
+        this(smellCount, false);
+    }
+
+    /**
+     * @param smellCount the number of smell columns
+     * @param withMetrics whether the table has a column per {@link Metric}, after the smell columns
+     */
+    public SmellTable(int smellCount, boolean withMetrics) {
+        this.smellCount = smellCount;
+        this.metricCount = withMetrics ? Metric.values().length : 0;
+        this.words = Math.max(1, (smellCount + Long.SIZE - 1) / Long.SIZE);
+        this.known = new long[words * 4];
+        this.smelly = new long[words * 4];
+        this.knownMetrics = new long[withMetrics ? 4 : 0];
+        this.metricValues = new int[metricCount * 4];
+    }
+
+    /**
+     * Adds a row with all cells unknown
+     * @param elementName the name of the element the row is reported for
+     * @return the index of the row
+     */
+    public int addRow(String elementName) {
+        int row = elementNames.size();
+        if ((row + 1) * words > known.length) {
+            known = Arrays.copyOf(known, known.length * 2);
+            smelly = Arrays.copyOf(smelly, smelly.length * 2);
+        }
+        if (metricCount > 0 && row + 1 > knownMetrics.length) {
+            knownMetrics = Arrays.copyOf(knownMetrics, knownMetrics.length * 2);
+            metricValues = Arrays.copyOf(metricValues, metricValues.length * 2);
+        }
+        elementNames.add(elementName);
+        return row;
+    }
+
+    /**
+     * Returns the row of an element, adding one when the element is first seen. Rows are kept in the order elements
+     * are first seen.
+     */
+    public int getRow(String elementName) {
+        Integer row = elementRows.get(elementName);
+        if (row == null) {
+            row = addRow(elementName);
+            elementRows.put(elementName, row);
+        }
+        return row;
+    }
+
+    /**
+     * Sets a cell to true or false, replacing its earlier value
+     */
+    public void set(int row, int smell, boolean hasSmell) {
+        int word = row * words + smell / Long.SIZE;
+        long bit = 1L << smell;
+        known[word] |= bit;
+        if (hasSmell) {
+            smelly[word] |= bit;
+        } else {
+            smelly[word] &= ~bit;
+        }
+    }
+
+    /**
+     * Copies the recorded metrics of an element into a row; does nothing if the table has no metric columns
+     */
+    public void setMetrics(int row, SmellyElement element) {
+        if (metricCount == 0) {
+            return;
+        }
+        for (Metric metric : Metric.values()) {
+            if (element.hasMetric(metric)) {
+                knownMetrics[row] |= 1L << metric.ordinal();
+                metricValues[row * metricCount + metric.ordinal()] = element.getMetric(metric);
+            }
+        }
+    }
+
+    public int getRowCount() {
+        return elementNames.size();
+    }
+
+    public String getElementName(int row) {
+        return elementNames.get(row);
+    }
+
+    public boolean isKnown(int row, int smell) {
+        return (known[row * words + smell / Long.SIZE] & 1L << smell) != 0;
+    }
+
+    public boolean hasSmell(int row, int smell) {
+        return (smelly[row * words + smell / Long.SIZE] & 1L << smell) != 0;
+    }
+
+    /**
+     * Appends the cells of a row to an output row: "true", "false", or an empty string for an unknown cell, followed by
+     * the metrics as decimal numbers, or empty strings for metrics that were not recorded
+     */
+    public void appendValues(int row, List<String> columnValues) {
+        for (int smell = 0; smell < smellCount; smell++) {
+            columnValues.add(!isKnown(row, smell) ? UNKNOWN : hasSmell(row, smell) ? TRUE : FALSE);
+        }
+        for (int metric = 0; metric < metricCount; metric++) {
+            columnValues.add((knownMetrics[row] & 1L << metric) == 0 ? UNKNOWN : String.valueOf(metricValues[row * metricCount + metric]));
+        }
+    }
+}
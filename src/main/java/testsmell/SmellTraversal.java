@@ -0,0 +1,404 @@
+package testsmell;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.ForeachStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * Walks an AST once and dispatches every node to the {@link SmellVisitor}s interested in its type.
+ * Each visitor observes exactly the nodes, in exactly the order, that a {@code VoidVisitorAdapter} with the same
+ * overrides would observe, so detectors keep their verdicts while the cost of the traversal no longer grows with the
+ * number of detectors. Subtrees that every visitor has declined to enter are not traversed at all.
+ */
+public class SmellTraversal extends VoidVisitorAdapter<Void> {
+
+    private static final int MAX_VISITORS = Long.SIZE;
+
+    private enum NodeKind {
+        CLASS_OR_INTERFACE(ClassOrInterfaceDeclaration.class),
+        ENUM(EnumDeclaration.class),
+        CONSTRUCTOR(ConstructorDeclaration.class),
+        METHOD(MethodDeclaration.class),
+        FIELD(FieldDeclaration.class),
+        VARIABLE_DECLARATOR(VariableDeclarator.class),
+        VARIABLE_DECLARATION(VariableDeclarationExpr.class),
+        METHOD_CALL(MethodCallExpr.class),
+        NAME(NameExpr.class),
+        OBJECT_CREATION(ObjectCreationExpr.class),
+        CONDITIONAL(ConditionalExpr.class),
+        IF(IfStmt.class),
+        SWITCH(SwitchStmt.class),
+        FOR(ForStmt.class),
+        FOREACH(ForeachStmt.class),
+        WHILE(WhileStmt.class),
+        THROW(ThrowStmt.class),
+        CATCH(CatchClause.class);
+
+        private final Class<? extends Node> type;
+
+        NodeKind(Class<? extends Node> type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * The node kinds a visitor class overrides a callback for, as a bit mask indexed by {@link NodeKind#ordinal()}
+     */
+    private static final ClassValue<Long> INTERESTS = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> visitorClass) {
+            long interests = 0;
+            for (NodeKind kind : NodeKind.values()) {
+                try {
+                    if (visitorClass.getMethod("visit", kind.type).getDeclaringClass() != SmellVisitor.class ||
+                            visitorClass.getMethod("leave", kind.type).getDeclaringClass() != SmellVisitor.class) {
+                        interests |= 1L << kind.ordinal();
+                    }
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return interests;
+        }
+    };
+
+    private final SmellVisitor[] visitors;
+    private final int[][] listeners;
+    private final long allVisitors;
+    private final long[] elapsedNanos;
+    private final long[] allocatedBytes;
+    private final int offset;
+    private long muted;
+
+    private SmellTraversal(List<? extends SmellVisitor> visitors, long[] elapsedNanos, long[] allocatedBytes, int offset) {
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.offset = offset;
+        this.visitors = visitors.toArray(new SmellVisitor[0]);
+        this.allVisitors = this.visitors.length == MAX_VISITORS ? -1L : (1L << this.visitors.length) - 1;
+        this.listeners = new int[NodeKind.values().length][];
+        for (NodeKind kind : NodeKind.values()) {
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < this.visitors.length; i++) {
+                if ((INTERESTS.get(this.visitors[i].getClass()) & (1L << kind.ordinal())) != 0) {
+                    indexes.add(i);
+                }
+            }
+            listeners[kind.ordinal()] = indexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Traverses the compilation unit once, dispatching its nodes to all visitors, and then notifies every visitor that
+     * the traversal is complete
+     * @param compilationUnit the AST to traverse
+     * @param visitors the visitors, in the order they are notified of each node
+     */
+    public static void traverse(CompilationUnit compilationUnit, List<? extends SmellVisitor> visitors) {
+        traverse(compilationUnit, visitors, null, null);
+    }
+
+    /**
+     * Traverses the compilation unit like {@link #traverse(CompilationUnit, List)}, adding the time spent in and the
+     * bytes allocated by the callbacks of each visitor to the element of the arrays with the index of the visitor.
+     * Measuring every callback slows the traversal down, so the arrays should only be given when profiling.
+     * @param elapsedNanos the time spent per visitor; null to not measure the visitors
+     * @param allocatedBytes the bytes allocated per visitor; null to not measure the visitors
+     */
+    public static void traverse(CompilationUnit compilationUnit, List<? extends SmellVisitor> visitors, long[] elapsedNanos, long[] allocatedBytes) {
+        boolean measured = elapsedNanos != null && allocatedBytes != null;
+        for (int from = 0; from < visitors.size(); from += MAX_VISITORS) {
+            List<? extends SmellVisitor> batch = visitors.subList(from, Math.min(visitors.size(), from + MAX_VISITORS));
+            SmellTraversal traversal = measured ? new SmellTraversal(batch, elapsedNanos, allocatedBytes, from) : new SmellTraversal(batch, null, null, 0);
+            traversal.visit(compilationUnit, null);
+            for (int i = 0; i < batch.size(); i++) {
+                if (measured) {
+                    long startTime = System.nanoTime();
+                    long startBytes = Instrumentation.allocatedBytes();
+                    batch.get(i).afterTraversal();
+                    traversal.addCost(i, startTime, startBytes);
+                } else {
+                    batch.get(i).afterTraversal();
+                }
+            }
+        }
+    }
+
+    private void addCost(int i, long startTime, long startBytes) {
+        elapsedNanos[offset + i] += System.nanoTime() - startTime;
+        allocatedBytes[offset + i] += Instrumentation.allocatedBytes() - startBytes;
+    }
+
+    private <N extends Node> boolean test(int i, N n, BiPredicate<SmellVisitor, N> callback) {
+        if (elapsedNanos == null) {
+            return callback.test(visitors[i], n);
+        }
+        long startTime = System.nanoTime();
+        long startBytes = Instrumentation.allocatedBytes();
+        boolean result = callback.test(visitors[i], n);
+        addCost(i, startTime, startBytes);
+        return result;
+    }
+
+    private <N extends Node> void accept(int i, N n, BiConsumer<SmellVisitor, N> callback) {
+        if (elapsedNanos == null) {
+            callback.accept(visitors[i], n);
+            return;
+        }
+        long startTime = System.nanoTime();
+        long startBytes = Instrumentation.allocatedBytes();
+        callback.accept(visitors[i], n);
+        addCost(i, startTime, startBytes);
+    }
+
+    private <N extends Node> long enter(NodeKind kind, N n, BiPredicate<SmellVisitor, N> callback) {
+        long entered = 0;
+        for (int i : listeners[kind.ordinal()]) {
+            long bit = 1L << i;
+            if ((muted & bit) == 0) {
+                if (test(i, n, callback)) {
+                    entered |= bit;
+                } else {
+                    muted |= bit;
+                }
+            }
+        }
+        return entered;
+    }
+
+    private <N extends Node> void leave(NodeKind kind, N n, long entered, BiConsumer<SmellVisitor, N> callback) {
+        if (entered == 0) {
+            return;
+        }
+        for (int i : listeners[kind.ordinal()]) {
+            if ((entered & (1L << i)) != 0) {
+                accept(i, n, callback);
+            }
+        }
+    }
+
+    private boolean anyVisitorActive() {
+        return muted != allVisitors;
+    }
+
+    @Override
+    public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.CLASS_OR_INTERFACE, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.CLASS_OR_INTERFACE, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(EnumDeclaration n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.ENUM, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.ENUM, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(ConstructorDeclaration n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.CONSTRUCTOR, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.CONSTRUCTOR, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(MethodDeclaration n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.METHOD, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.METHOD, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(FieldDeclaration n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.FIELD, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.FIELD, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(VariableDeclarator n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.VARIABLE_DECLARATOR, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.VARIABLE_DECLARATOR, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(VariableDeclarationExpr n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.VARIABLE_DECLARATION, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.VARIABLE_DECLARATION, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(MethodCallExpr n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.METHOD_CALL, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.METHOD_CALL, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(NameExpr n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.NAME, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.NAME, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(ObjectCreationExpr n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.OBJECT_CREATION, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.OBJECT_CREATION, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(ConditionalExpr n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.CONDITIONAL, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.CONDITIONAL, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(IfStmt n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.IF, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.IF, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(SwitchStmt n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.SWITCH, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.SWITCH, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(ForStmt n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.FOR, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.FOR, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(ForeachStmt n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.FOREACH, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.FOREACH, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(WhileStmt n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.WHILE, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.WHILE, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(ThrowStmt n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.THROW, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.THROW, n, entered, SmellVisitor::leave);
+    }
+
+    @Override
+    public void visit(CatchClause n, Void arg) {
+        long mutedBefore = muted;
+        long entered = enter(NodeKind.CATCH, n, SmellVisitor::visit);
+        if (anyVisitorActive()) {
+            super.visit(n, arg);
+        }
+        muted = mutedBefore;
+        leave(NodeKind.CATCH, n, entered, SmellVisitor::leave);
+    }
+}
@@ -0,0 +1,179 @@
+package testsmell;
+
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.ForeachStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Callbacks of a smell detector for a single traversal of the test file AST, see {@link SmellTraversal}.
+ * <p>
+ * For every node type of interest there is a pair of callbacks. {@code visit} is called before the children of the
+ * node are traversed; returning false skips the children of the node for this visitor (the equivalent of not calling
+ * {@code super.visit} in a {@code VoidVisitorAdapter}). {@code leave} is called after the children have been traversed,
+ * and only if {@code visit} returned true.
+ * Visitors only override the callbacks they need; the traversal does not dispatch node types a visitor does not override.
+ * <p>
+ * A visitor is created for a single analysis and keeps all of its state; the analyzed elements are collected in
+ * {@link #smellyElementList}.
+ */
+public abstract class SmellVisitor {
+
+    protected final List<SmellyElement> smellyElementList = new ArrayList<>();
+
+    /**
+     * Returns the set of analyzed elements (i.e. test methods)
+     */
+    public List<SmellyElement> getSmellyElements() {
+        return smellyElementList;
+    }
+
+    public boolean visit(ClassOrInterfaceDeclaration n) {
+        return true;
+    }
+
+    public void leave(ClassOrInterfaceDeclaration n) {
+    }
+
+    public boolean visit(EnumDeclaration n) {
+        return true;
+    }
+
+    public void leave(EnumDeclaration n) {
+    }
+
+    public boolean visit(ConstructorDeclaration n) {
+        return true;
+    }
+
+    public void leave(ConstructorDeclaration n) {
+    }
+
+    public boolean visit(MethodDeclaration n) {
+        return true;
+    }
+
+    public void leave(MethodDeclaration n) {
+    }
+
+    public boolean visit(FieldDeclaration n) {
+        return true;
+    }
+
+    public void leave(FieldDeclaration n) {
+    }
+
+    public boolean visit(VariableDeclarator n) {
+        return true;
+    }
+
+    public void leave(VariableDeclarator n) {
+    }
+
+    public boolean visit(VariableDeclarationExpr n) {
+        return true;
+    }
+
+    public void leave(VariableDeclarationExpr n) {
+    }
+
+    public boolean visit(MethodCallExpr n) {
+        return true;
+    }
+
+    public void leave(MethodCallExpr n) {
+    }
+
+    public boolean visit(NameExpr n) {
+        return true;
+    }
+
+    public void leave(NameExpr n) {
+    }
+
+    public boolean visit(ObjectCreationExpr n) {
+        return true;
+    }
+
+    public void leave(ObjectCreationExpr n) {
+    }
+
+    public boolean visit(ConditionalExpr n) {
+        return true;
+    }
+
+    public void leave(ConditionalExpr n) {
+    }
+
+    public boolean visit(IfStmt n) {
+        return true;
+    }
+
+    public void leave(IfStmt n) {
+    }
+
+    public boolean visit(SwitchStmt n) {
+        return true;
+    }
+
+    public void leave(SwitchStmt n) {
+    }
+
+    public boolean visit(ForStmt n) {
+        return true;
+    }
+
+    public void leave(ForStmt n) {
+    }
+
+    public boolean visit(ForeachStmt n) {
+        return true;
+    }
+
+    public void leave(ForeachStmt n) {
+    }
+
+    public boolean visit(WhileStmt n) {
+        return true;
+    }
+
+    public void leave(WhileStmt n) {
+    }
+
+    public boolean visit(ThrowStmt n) {
+        return true;
+    }
+
+    public void leave(ThrowStmt n) {
+    }
+
+    public boolean visit(CatchClause n) {
+        return true;
+    }
+
+    public void leave(CatchClause n) {
+    }
+
+    /**
+     * Called once the whole AST has been traversed
+     */
+    public void afterTraversal() {
+    }
+}
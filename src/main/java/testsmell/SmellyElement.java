@@ -3,9 +3,52 @@ package testsmell;
 import java.util.Map;
 
 public abstract class SmellyElement {
+
+    private static final int METRIC_COUNT = Metric.values().length;
+
+    private long recordedMetrics;
+    private int[] metricValues;
+
     public abstract String getElementName();
 
     public abstract boolean getHasSmell();
 
+    /**
+     * Returns the data items of the element, including its metrics formatted as decimal numbers
+     */
     public abstract Map<String, String> getData();
+
+    /**
+     * Records a metric of the element, replacing an earlier value
+     */
+    public void setMetric(Metric metric, int value) {
+        if (metricValues == null) {
+            metricValues = new int[METRIC_COUNT];
+        }
+        metricValues[metric.ordinal()] = value;
+        recordedMetrics |= 1L << metric.ordinal();
+    }
+
+    public boolean hasMetric(Metric metric) {
+        return (recordedMetrics & 1L << metric.ordinal()) != 0;
+    }
+
+    /**
+     * Returns the value of a metric of the element
+     * @return the value, or 0 if the metric was not recorded
+     */
+    public int getMetric(Metric metric) {
+        return hasMetric(metric) ? metricValues[metric.ordinal()] : 0;
+    }
+
+    /**
+     * Adds the recorded metrics to the given data items
+     */
+    protected void addMetricData(Map<String, String> data) {
+        for (Metric metric : Metric.values()) {
+            if (hasMetric(metric)) {
+                data.put(metric.getName(), String.valueOf(metricValues[metric.ordinal()]));
+            }
+        }
+    }
 }
@@ -0,0 +1,199 @@
+package testsmell;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Discovers the test files under one or more source roots and pairs each of them with its production file, in place of
+ * a manifest. The roots are walked on a work-stealing pool, one task per directory.
+ * <p>
+ * A file is a test file if its text contains a method that {@link Util#isTestMethod} would accept, i.e. a public method
+ * that is annotated with {@code @Test} or whose name starts with "test"; the detectors do not analyze other methods.
+ * This is checked with a lexical scan, so the files are not parsed. The production file of a test class {@code FooTest}, {@code FooTests} or
+ * {@code TestFoo} is the class {@code Foo} of the same package, or else the only class {@code Foo} of the same root.
+ * Each root is an app, named after its directory.
+ */
+public class SourceCrawler {
+
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+    /**
+     * {@code @Test}, with arguments and further annotations, followed by modifiers that include public
+     */
+    private static final Pattern PUBLIC_TEST_ANNOTATED_METHOD = Pattern.compile(
+            "@Test\\b(?:\\s*\\([^)]*\\))?(?:\\s*@[\\w.]+(?:\\s*\\([^)]*\\))?)*\\s+(?:(?:static|final|synchronized|abstract)\\s+)*public\\b");
+    private static final Pattern PUBLIC_TEST_METHOD = Pattern.compile(
+            "\\bpublic\\s+(?:(?:static|final|synchronized|abstract)\\s+)*[\\w.$<>\\[\\]?, ]*[\\w>\\]]\\s+(?i:test)\\w*\\s*\\(");
+
+    private final List<Path> roots;
+
+    /**
+     * @param roots the directories to search for source files
+     */
+    public SourceCrawler(List<Path> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * Walks the source roots and pairs the test files with their production files
+     * @return the test files, ordered by app and path; the production file path is empty if none was found
+     * @throws IOException if a directory or source file cannot be read
+     */
+    public List<TestFile> discover() throws IOException {
+        List<TestFile> testFiles = new ArrayList<>();
+        for (Path root : roots) {
+            Path directory = root.toAbsolutePath().normalize();
+            if (!Files.isDirectory(directory)) {
+                throw new IOException("Not a directory: " + root);
+            }
+            Queue<SourceFile> sourceFiles = new ConcurrentLinkedQueue<>();
+            try {
+                ForkJoinPool.commonPool().invoke(new DirectoryTask(directory, sourceFiles));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            testFiles.addAll(pair(directory.getFileName() == null ? directory.toString() : directory.getFileName().toString(), sourceFiles));
+        }
+        return testFiles;
+    }
+
+    private static List<TestFile> pair(String app, Collection<SourceFile> sourceFiles) {
+        Map<String, List<SourceFile>> classesByName = new HashMap<>();
+        for (SourceFile sourceFile : sourceFiles) {
+            classesByName.computeIfAbsent(sourceFile.className, name -> new ArrayList<>()).add(sourceFile);
+        }
+        List<SourceFile> testClasses = new ArrayList<>();
+        for (SourceFile sourceFile : sourceFiles) {
+            if (sourceFile.isTest) {
+                testClasses.add(sourceFile);
+            }
+        }
+        testClasses.sort(Comparator.comparing(sourceFile -> sourceFile.path));
+
+        List<TestFile> testFiles = new ArrayList<>(testClasses.size());
+        for (SourceFile testClass : testClasses) {
+            SourceFile productionClass = null;
+            for (String name : productionClassNames(testClass.className)) {
+                productionClass = findProductionClass(testClass, classesByName.get(name));
+                if (productionClass != null) {
+                    break;
+                }
+            }
+            testFiles.add(new TestFile(app, testClass.path, productionClass == null ? "" : productionClass.path));
+        }
+        return testFiles;
+    }
+
+    /**
+     * Returns the names the production class of a test class may have, most specific first
+     */
+    static List<String> productionClassNames(String testClassName) {
+        List<String> names = new ArrayList<>(2);
+        if (testClassName.endsWith("Tests") && testClassName.length() > "Tests".length()) {
+            names.add(testClassName.substring(0, testClassName.length() - "Tests".length()));
+        } else if (testClassName.endsWith("Test") && testClassName.length() > "Test".length()) {
+            names.add(testClassName.substring(0, testClassName.length() - "Test".length()));
+        }
+        if (testClassName.startsWith("Test") && testClassName.length() > "Test".length()) {
+            names.add(testClassName.substring("Test".length()));
+        }
+        return names;
+    }
+
+    private static SourceFile findProductionClass(SourceFile testClass, List<SourceFile> candidates) {
+        if (candidates == null) {
+            return null;
+        }
+        SourceFile onlyCandidate = null;
+        int count = 0;
+        for (SourceFile candidate : candidates) {
+            if (candidate.packageName.equals(testClass.packageName)) {
+                return candidate;
+            }
+            onlyCandidate = candidate;
+            count++;
+        }
+        return count == 1 ? onlyCandidate : null;
+    }
+
+    private static SourceFile scan(Path file) throws IOException {
+        // ISO-8859-1 maps every byte to a character, so files in any ASCII compatible encoding can be scanned
+        String source = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        String fileName = file.getFileName().toString();
+        Matcher packageMatcher = PACKAGE.matcher(source);
+        return new SourceFile(file.toString(),
+                fileName.substring(0, fileName.length() - ".java".length()),
+                packageMatcher.find() ? packageMatcher.group(1) : "",
+                PUBLIC_TEST_ANNOTATED_METHOD.matcher(source).find() || PUBLIC_TEST_METHOD.matcher(source).find());
+    }
+
+    private static class SourceFile {
+        private final String path;
+        private final String className;
+        private final String packageName;
+        private final boolean isTest;
+
+        private SourceFile(String path, String className, String packageName, boolean isTest) {
+            this.path = path;
+            this.className = className;
+            this.packageName = packageName;
+            this.isTest = isTest;
+        }
+    }
+
+    /**
+     * Scans the source files of a directory and forks a task for every subdirectory. Hidden directories and symbolic
+     * links to directories are not followed.
+     */
+    private static class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final Queue<SourceFile> sourceFiles;
+
+        private DirectoryTask(Path directory, Queue<SourceFile> sourceFiles) {
+            this.directory = directory;
+            this.sourceFiles = sourceFiles;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        if (!name.startsWith(".")) {
+                            DirectoryTask task = new DirectoryTask(entry, sourceFiles);
+                            task.fork();
+                            subdirectories.add(task);
+                        }
+                    } else if (name.endsWith(".java") && name.length() > ".java".length() && Files.isRegularFile(entry)) {
+                        sourceFiles.add(scan(entry));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+    }
+}
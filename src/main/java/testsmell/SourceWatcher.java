@@ -0,0 +1,272 @@
+package testsmell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches source roots and analyzes test files again as they change, for continuous feedback while tests are edited.
+ * The test files are discovered and paired with their production files by a {@link SourceCrawler}. A change to a test
+ * file analyzes the test file again, a change to a production file analyzes the test files paired with it; a source
+ * file that is created or deleted discovers the test files again. The parsed production files stay in the production
+ * file cache and the last rows of every test file are kept, so only rows that changed are written.
+ * <p>
+ * The changes of a burst, e.g. an editor saving several files or writing a file in several steps, are collected until
+ * no change was seen for the debounce time, and then analyzed together.
+ */
+public class SourceWatcher implements Closeable {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+    /**
+     * Bounds the time changes are collected for, so that constant changes do not defer the analysis forever
+     */
+    private static final int MAX_DEBOUNCE_PERIODS = 10;
+
+    private final List<Path> roots;
+    private final TestFileAnalyzer analyzer;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /**
+     * The source files under the roots, to tell a created or deleted file from a changed file
+     */
+    private final Set<String> sourceFiles = new HashSet<>();
+    private final Map<String, List<List<String>>> lastRows = new HashMap<>();
+    private Map<String, TestFile> testFiles = new LinkedHashMap<>();
+    private Map<String, List<String>> testFilesByProductionFile = new HashMap<>();
+    private boolean rediscover;
+
+    /**
+     * @param roots the directories the source files are in
+     * @param analyzer the analyzer the test files are analyzed with
+     * @param debounceMillis the time without changes after which the collected changes are analyzed
+     * @throws IOException if the file system cannot be watched
+     */
+    public SourceWatcher(List<Path> roots, TestFileAnalyzer analyzer, long debounceMillis) throws IOException {
+        this.roots = roots;
+        this.analyzer = analyzer;
+        this.debounceMillis = debounceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Analyzes all test files, then analyzes changed test files until the watcher is closed. The rows are written to
+     * the sink, which is flushed after every batch of changes.
+     * @throws IOException if the source roots cannot be watched or the rows cannot be written
+     */
+    public void run(ResultsSink sink) throws IOException {
+        try {
+            // the roots are watched before they are walked, so no change after the discovery is missed
+            for (Path root : roots) {
+                register(root.toAbsolutePath().normalize());
+            }
+            index(new SourceCrawler(roots).discover());
+            analyze(sink, testFiles.keySet());
+            System.out.println("Watching " + testFiles.size() + " test files in " + directories.size() + " directories");
+            while (true) {
+                Set<Path> changes = awaitChanges();
+                long startTime = System.nanoTime();
+                int analyzed = update(sink, changes);
+                if (analyzed > 0) {
+                    System.out.println("Analyzed " + analyzed + " test files in "
+                            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // the watcher was closed
+        }
+    }
+
+    /**
+     * Stops watching; {@link #run(ResultsSink)} returns once it notices
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Watches a directory and its subdirectories, except hidden directories and symbolic links, like
+     * {@link SourceCrawler}
+     */
+    private void register(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                if (!dir.equals(directory) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (isSourceFile(file) && attributes.isRegularFile()) {
+                    sourceFiles.add(file.toString());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isSourceFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".java") && name.length() > ".java".length();
+    }
+
+    private void index(List<TestFile> discovered) {
+        Map<String, TestFile> testFiles = new LinkedHashMap<>();
+        Map<String, List<String>> testFilesByProductionFile = new HashMap<>();
+        for (TestFile testFile : discovered) {
+            testFiles.put(testFile.getTestFilePath(), testFile);
+            if (testFile.getHasProductionFile()) {
+                testFilesByProductionFile.computeIfAbsent(testFile.getProductionFilePath(), x -> new ArrayList<>()).add(testFile.getTestFilePath());
+            }
+        }
+        this.testFiles = testFiles;
+        this.testFilesByProductionFile = testFilesByProductionFile;
+    }
+
+    /**
+     * Waits for a change and collects the changes that follow it within the debounce time
+     * @return the changed paths
+     */
+    private Set<Path> awaitChanges() throws IOException {
+        Set<Path> changes = new LinkedHashSet<>();
+        try {
+            WatchKey key = watchService.take();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis * MAX_DEBOUNCE_PERIODS);
+            while (key != null) {
+                collect(key, changes);
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    break;
+                }
+                key = watchService.poll(Math.min(debounceMillis, remainingMillis), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while watching the source roots");
+        }
+        return changes;
+    }
+
+    private void collect(WatchKey key, Set<Path> changes) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // changes were lost
+                rediscover = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (!path.getFileName().toString().startsWith(".")) {
+                    // the files of the directory may have been created before it is watched
+                    register(path);
+                    rediscover = true;
+                }
+            } else if (isSourceFile(path)) {
+                changes.add(path);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Analyzes the test files affected by the changes again
+     * @return the number of analyzed test files
+     */
+    private int update(ResultsSink sink, Set<Path> changes) throws IOException {
+        Set<String> affected = new LinkedHashSet<>();
+        ProductionFileCache productionFileCache = analyzer.getTestSmellDetector().getProductionFileCache();
+        for (Path path : changes) {
+            String file = path.toString();
+            boolean exists = Files.isRegularFile(path);
+            if (exists ? sourceFiles.add(file) : sourceFiles.remove(file)) {
+                // a created or deleted file may change which files are tests and how they are paired
+                rediscover = true;
+            }
+            if (testFiles.containsKey(file)) {
+                affected.add(file);
+            }
+            affected.addAll(testFilesByProductionFile.getOrDefault(file, Collections.emptyList()));
+            if (productionFileCache != null) {
+                productionFileCache.invalidate(file);
+            }
+        }
+
+        if (rediscover) {
+            rediscover = false;
+            Map<String, TestFile> previous = testFiles;
+            index(new SourceCrawler(roots).discover());
+            for (TestFile testFile : testFiles.values()) {
+                TestFile previousTestFile = previous.get(testFile.getTestFilePath());
+                if (previousTestFile == null || !previousTestFile.getProductionFilePath().equals(testFile.getProductionFilePath())) {
+                    affected.add(testFile.getTestFilePath());
+                }
+            }
+            for (String testFilePath : previous.keySet()) {
+                if (!testFiles.containsKey(testFilePath)) {
+                    lastRows.remove(testFilePath);
+                    System.out.println("Removed test file: " + testFilePath);
+                }
+            }
+            affected.retainAll(testFiles.keySet());
+        }
+        analyze(sink, affected);
+        return affected.size();
+    }
+
+    /**
+     * Analyzes test files and writes the rows of those whose rows changed since they were last analyzed
+     */
+    private void analyze(ResultsSink sink, Set<String> testFilePaths) throws IOException {
+        for (String testFilePath : testFilePaths) {
+            List<List<String>> rows;
+            try {
+                rows = analyzer.analyze(testFiles.get(testFilePath));
+            } catch (IOException | RuntimeException e) {
+                // e.g. a file that is being edited does not parse; its last rows stand until it is saved again
+                String message = String.valueOf(e.getMessage());
+                // the message of a parse error goes on with a stack trace
+                int lineEnd = message.indexOf('\n');
+                System.out.println("Cannot analyze " + testFilePath + ": " + (lineEnd == -1 ? message : message.substring(0, lineEnd)));
+                continue;
+            }
+            if (!rows.equals(lastRows.put(testFilePath, rows))) {
+                for (List<String> columnValues : rows) {
+                    sink.writeLine(columnValues);
+                }
+            }
+        }
+        sink.flush();
+    }
+}
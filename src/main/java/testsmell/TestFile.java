@@ -10,7 +10,7 @@ public class TestFile {
     private String app;
     private String testFilePath;
     private String productionFilePath;
-    private List<AbstractSmell> testSmells;
+    private List<SmellResult> testSmells;
 
     public void clearSmells() {
     	testSmells = new ArrayList<>();
@@ -28,7 +28,7 @@ public class TestFile {
         return testFilePath;
     }
 
-    public List<AbstractSmell> getTestSmells() {
+    public List<SmellResult> getTestSmells() {
         return testSmells;
     }
 
@@ -43,7 +43,7 @@ public class TestFile {
         this.testSmells = new ArrayList<>();
     }
 
-    public void addSmell(AbstractSmell smell) {
+    public void addSmell(SmellResult smell) {
         testSmells.add(smell);
     }
 
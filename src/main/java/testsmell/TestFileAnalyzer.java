@@ -0,0 +1,239 @@
+package testsmell;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Analyzes a test file at class and method level and converts the detected smells into output rows.
+ * The analyzer holds no per-file state, so a single instance can analyze several files concurrently.
+ */
+public class TestFileAnalyzer {
+
+    /**
+     * The number of columns of a row that describe the test file rather than the detected smells
+     */
+    public static final int FILE_COLUMNS = 7;
+    private static final int TEST_METHOD_COLUMN = 2;
+
+    private final TestSmellDetector testSmellDetector;
+    private final ResultCache resultCache;
+    private final boolean withMetrics;
+    private final Map<String, Integer> smellIndexes = new HashMap<>();
+
+    public TestFileAnalyzer(TestSmellDetector testSmellDetector) {
+        this(testSmellDetector, null);
+    }
+
+    /**
+     * @param testSmellDetector the detector the test files are analyzed with
+     * @param resultCache the cache of the results of earlier runs; may be null
+     */
+    public TestFileAnalyzer(TestSmellDetector testSmellDetector, ResultCache resultCache) {
+        this(testSmellDetector, resultCache, false);
+    }
+
+    /**
+     * @param testSmellDetector the detector the test files are analyzed with
+     * @param resultCache the cache of the results of earlier runs; may be null
+     * @param withMetrics whether the rows have a column per {@link Metric} after the smells; the cache must then only
+     *                    hold results with metrics
+     */
+    public TestFileAnalyzer(TestSmellDetector testSmellDetector, ResultCache resultCache, boolean withMetrics) {
+        this.testSmellDetector = testSmellDetector;
+        this.resultCache = resultCache;
+        this.withMetrics = withMetrics;
+        List<String> smellNames = testSmellDetector.getTestSmellNames();
+        for (int i = 0; i < smellNames.size(); i++) {
+            smellIndexes.put(smellNames.get(i), i);
+        }
+    }
+
+    public TestSmellDetector getTestSmellDetector() {
+        return testSmellDetector;
+    }
+
+    /**
+     * Provides the column names of the rows returned by {@link #analyze(TestFile)}
+     */
+    public List<String> getColumnNames() {
+        List<String> columnNames = new ArrayList<>();
+        columnNames.add("App");
+        columnNames.add("TestClass");
+        columnNames.add("TestMethod");
+        columnNames.add("TestFilePath");
+        columnNames.add("ProductionFilePath");
+        columnNames.add("RelativeTestFilePath");
+        columnNames.add("RelativeProductionFilePath");
+        columnNames.addAll(testSmellDetector.getTestSmellNames());
+        if (withMetrics) {
+            for (Metric metric : Metric.values()) {
+                columnNames.add(metric.getName());
+            }
+        }
+        return columnNames;
+    }
+
+    /**
+     * A test file on its way through an analysis: the result cache is consulted first, then the smells are detected
+     * with a session unless the cached result is used
+     */
+    static final class Analysis {
+        private final TestFile file;
+        private ResultCache.Key key;
+        private List<List<String>> cachedResult;
+        private List<List<String>> rows;
+
+        private Analysis(TestFile file) {
+            this.file = file;
+        }
+
+        TestFile getFile() {
+            return file;
+        }
+
+        /**
+         * Whether the rows are known without detecting the smells, i.e. they were taken from the result cache
+         */
+        boolean isComplete() {
+            return rows != null;
+        }
+
+        List<List<String>> getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * Detects the smells of the test file, or takes them from the result cache if the files did not change since they
+     * were analyzed
+     * @return the class level row followed by one row per test method
+     * @throws IOException
+     */
+    public List<List<String>> analyze(TestFile file) throws IOException {
+        Analysis analysis = begin(file);
+        if (!analysis.isComplete()) {
+            try (AnalysisSession session = testSmellDetector.openSession(file)) {
+                complete(analysis, session);
+            }
+        }
+        return analysis.getRows();
+    }
+
+    /**
+     * Looks up the result of the test file in the result cache; the returned analysis is complete if the cached result
+     * is used. This reads the test and production files when there is a result cache.
+     */
+    Analysis begin(TestFile file) throws IOException {
+        Analysis analysis = new Analysis(file);
+        if (resultCache == null) {
+            return analysis;
+        }
+        analysis.key = resultCache.computeKey(file);
+        analysis.cachedResult = resultCache.get(analysis.key);
+        if (analysis.cachedResult != null && resultCache.getMode() == ResultCache.Mode.USE) {
+            List<List<String>> rows = new ArrayList<>(analysis.cachedResult.size());
+            for (List<String> result : analysis.cachedResult) {
+                List<String> columnValues = fileColumns(file, result.get(0));
+                columnValues.addAll(result.subList(1, result.size()));
+                rows.add(columnValues);
+            }
+            analysis.rows = rows;
+        }
+        return analysis;
+    }
+
+    /**
+     * Detects the smells of an analysis that is not complete, with a session of its test file, and stores the result
+     * in the result cache
+     */
+    void complete(Analysis analysis, AnalysisSession session) throws IOException {
+        List<List<String>> rows = detect(session);
+        analysis.rows = rows;
+        if (resultCache == null) {
+            return;
+        }
+        // only the test method and the smells are stored, the files may be elsewhere when the result is used again
+        List<List<String>> result = new ArrayList<>(rows.size());
+        for (List<String> columnValues : rows) {
+            List<String> smells = new ArrayList<>(columnValues.size() - FILE_COLUMNS + 1);
+            smells.add(columnValues.get(TEST_METHOD_COLUMN));
+            smells.addAll(columnValues.subList(FILE_COLUMNS, columnValues.size()));
+            result.add(smells);
+        }
+        if (analysis.cachedResult != null && !analysis.cachedResult.equals(result)) {
+            System.out.println("Result cache mismatch: " + analysis.file.getTestFilePath());
+            resultCache.recordMismatch();
+        }
+        if (!result.equals(analysis.cachedResult)) {
+            resultCache.put(analysis.key, result);
+        }
+    }
+
+    private List<String> fileColumns(TestFile file, String testMethod) {
+        List<String> columnValues = new ArrayList<>(FILE_COLUMNS + smellIndexes.size() + (withMetrics ? Metric.values().length : 0));
+        columnValues.add(file.getApp());
+        columnValues.add(file.getTestFileName());
+        columnValues.add(testMethod);
+        columnValues.add(file.getTestFilePath());
+        columnValues.add(file.getProductionFilePath());
+        columnValues.add(file.getRelativeTestFilePath());
+        columnValues.add(file.getRelativeProductionFilePath());
+        return columnValues;
+    }
+
+    private List<List<String>> detect(AnalysisSession session) throws IOException {
+        // SimpleDateFormat is not thread safe
+        DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        List<List<String>> rows = new ArrayList<>();
+        TestFile file = session.getTestFile();
+
+        // detect smells at class level; the session parses the files once for both levels
+        System.out.println(dateFormat.format(new Date()) + " Processing at class level: " + file.getTestFilePath());
+        SmellTable classSmells = new SmellTable(smellIndexes.size(), withMetrics);
+        int classRow = classSmells.addRow("");
+        file.clearSmells();
+        testSmellDetector.detectSmellsClassLevel(session);
+        for (SmellResult smell : file.getTestSmells()) {
+            // a smell that is not applicable (e.g. no production file) keeps the empty value
+            Integer smellIndex = smellIndexes.get(smell.getSmellName());
+            if (smell.isApplicable() && smellIndex != null) {
+                classSmells.set(classRow, smellIndex, smell.getHasSmell());
+            }
+        }
+        rows.add(toRow(file, classSmells, classRow));
+
+        // detect smells at method level
+        System.out.println(dateFormat.format(new Date()) + " Processing at method level: " + file.getTestFilePath());
+        file.clearSmells();
+        testSmellDetector.detectSmellsMethodLevel(session);
+        // one row per element (i.e. test method) that was analyzed for at least one smell, in the order first seen
+        SmellTable methodSmells = new SmellTable(smellIndexes.size(), withMetrics);
+        for (SmellResult smell : file.getTestSmells()) {
+            Integer smellIndex = smellIndexes.get(smell.getSmellName());
+            for (SmellyElement smellyElement : smell.getSmellyElements()) {
+                System.out.println(dateFormat.format(new Date()) + " Processing at method level: " + file.getTestFileNameWithoutExtension() + "." + smellyElement.getElementName());
+                int row = methodSmells.getRow(smellyElement.getElementName());
+                if (smellIndex != null) {
+                    methodSmells.set(row, smellIndex, smellyElement.getHasSmell());
+                }
+                methodSmells.setMetrics(row, smellyElement);
+            }
+        }
+        for (int row = 0; row < methodSmells.getRowCount(); row++) {
+            rows.add(toRow(file, methodSmells, row));
+        }
+        return rows;
+    }
+
+    private List<String> toRow(TestFile file, SmellTable smells, int row) {
+        List<String> columnValues = fileColumns(file, smells.getElementName(row));
+        smells.appendValues(row, columnValues);
+        return columnValues;
+    }
+}
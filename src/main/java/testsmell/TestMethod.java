@@ -11,14 +11,19 @@ public class TestMethod extends SmellyElement {
 
     public TestMethod(String methodName) {
         this.methodName = methodName;
-        data = new HashMap<>();
     }
 
     public void setHasSmell(boolean hasSmell) {
         this.hasSmell = hasSmell;
     }
 
+    /**
+     * Adds a data item that is not a {@link Metric} of the element
+     */
     public void addDataItem(String name, String value) {
+        if (data == null) {
+            data = new HashMap<>();
+        }
         data.put(name, value);
     }
 
@@ -34,6 +39,8 @@ public class TestMethod extends SmellyElement {
 
     @Override
     public Map<String, String> getData() {
-        return data;
+        Map<String, String> items = data == null ? new HashMap<>() : new HashMap<>(data);
+        addMetricData(items);
+        return items;
     }
 }
@@ -1,121 +1,180 @@
 package testsmell;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.CompilationUnit;
-import org.apache.commons.lang3.StringUtils;
 import testsmell.smell.*;
 
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Detects the smells of test files. The detectors are shared, stateless instances and the detector does not keep any
+ * state of the analyzed files, so a single instance can analyze several files concurrently.
+ */
 public class TestSmellDetector {
 
-	private List<AbstractSmell> availableTestSmells;
-	
-    private List<AbstractSmell> testSmellsClassLevel;
-    
-    private List<AbstractSmell> testSmellsMethodLevel;
+    private static final List<AbstractSmell> CLASS_LEVEL_SMELLS = Collections.unmodifiableList(Arrays.asList(
+            new AssertionRoulette(),
+            new ConditionalTestLogic(),
+            new ConstructorInitialization(),
+            new DefaultTest(),
+            new DependentTest(),
+            new DuplicateAssert(),
+            new EagerTest(),
+            new EmptyTest(),
+            new ExceptionCatchingThrowing(),
+            new GeneralFixture(),
+            new IgnoredTest(),
+            new LazyTest(),
+            new MagicNumberTest(),
+            new MysteryGuest(),
+            new PrintStatement(),
+            new RedundantAssertion(),
+            new ResourceOptimism(),
+            new SensitiveEquality(),
+            new SleepyTest(),
+            new UnknownTest(),
+            new VerboseTest()
+            // TODO: add after importing and reviewing the test smells
+            // new CatchingUnexpectedExceptions(),
+            // new DuplicateTestCode(),
+            // new LonelyTest(),
+            // new TheSecretCatcher()
+    ));
+
+    private static final List<AbstractSmell> METHOD_LEVEL_SMELLS = Collections.unmodifiableList(Arrays.asList(
+            classLevelSmell(AssertionRoulette.class),
+            classLevelSmell(ConditionalTestLogic.class),
+            classLevelSmell(DuplicateAssert.class),
+            classLevelSmell(EagerTest.class),
+            classLevelSmell(EmptyTest.class),
+            classLevelSmell(GeneralFixture.class),
+            classLevelSmell(IgnoredTest.class),
+            classLevelSmell(LazyTest.class),
+            classLevelSmell(ResourceOptimism.class),
+            classLevelSmell(MagicNumberTest.class),
+            classLevelSmell(MysteryGuest.class),
+            classLevelSmell(PrintStatement.class),
+            classLevelSmell(RedundantAssertion.class),
+            classLevelSmell(SensitiveEquality.class),
+            classLevelSmell(SleepyTest.class),
+            classLevelSmell(VerboseTest.class),
+            classLevelSmell(UnknownTest.class)
+    ));
+
+    /**
+     * The smells that tsDetect supports
+     */
+    private static final List<AbstractSmell> AVAILABLE_TEST_SMELLS = CLASS_LEVEL_SMELLS;
+
+    private static final List<String> AVAILABLE_TEST_SMELL_NAMES = smellNames(AVAILABLE_TEST_SMELLS);
+
+    private static final List<String> CLASS_LEVEL_SMELL_NAMES = smellNames(CLASS_LEVEL_SMELLS);
+
+    private static final List<String> METHOD_LEVEL_SMELL_NAMES = smellNames(METHOD_LEVEL_SMELLS);
+
+    /**
+     * Unicode escapes may spell any token, so a test file that contains one is inspected for every smell
+     */
+    private static final String UNICODE_ESCAPE = "\\u";
+
+    /**
+     * Scans test files for the tokens required by the smells, see {@link AbstractSmell#getRequiredTokens()}
+     */
+    private static final TokenScanner PRESCAN = new TokenScanner(Stream.concat(Stream.of(UNICODE_ESCAPE),
+            CLASS_LEVEL_SMELLS.stream().flatMap(smell -> smell.getRequiredTokens().stream()).flatMap(List::stream))
+            .distinct().collect(Collectors.toList()));
+
+    /**
+     * The token masks of the required token groups of every smell
+     */
+    private static final Map<AbstractSmell, long[]> REQUIRED_TOKENS = new IdentityHashMap<>();
+
+    static {
+        for (AbstractSmell smell : CLASS_LEVEL_SMELLS) {
+            REQUIRED_TOKENS.put(smell, smell.getRequiredTokens().stream()
+                    .mapToLong(group -> group.stream().mapToLong(PRESCAN::mask).reduce(0, (a, b) -> a | b)).toArray());
+        }
+    }
+
+    /**
+     * The revision of the detectors; increase it whenever a change of a detector changes its results, so that results
+     * persisted by earlier versions are not reused
+     */
+    private static final int DETECTOR_REVISION = 1;
+
+    private ProductionFileCache productionFileCache;
+    private final Instrumentation instrumentation;
+    private boolean prescan = true;
 
     public TestSmellDetector() {
-    	initializeSmells();
-    }
-
-    private void initializeSmells() {
-    	availableTestSmells = new ArrayList<>();
-    	availableTestSmells.add(new AssertionRoulette());
-    	availableTestSmells.add(new ConditionalTestLogic());
-    	availableTestSmells.add(new ConstructorInitialization());
-    	availableTestSmells.add(new DefaultTest());
-    	availableTestSmells.add(new DependentTest());
-        availableTestSmells.add(new DuplicateAssert());
-        availableTestSmells.add(new EagerTest());
-        availableTestSmells.add(new EmptyTest());
-        availableTestSmells.add(new ExceptionCatchingThrowing());
-        availableTestSmells.add(new GeneralFixture());
-        availableTestSmells.add(new IgnoredTest());
-        availableTestSmells.add(new LazyTest());
-        availableTestSmells.add(new MagicNumberTest());
-        availableTestSmells.add(new MysteryGuest());
-        availableTestSmells.add(new PrintStatement());
-        availableTestSmells.add(new RedundantAssertion());
-        availableTestSmells.add(new ResourceOptimism());
-        availableTestSmells.add(new SensitiveEquality());
-        availableTestSmells.add(new SleepyTest());
-        availableTestSmells.add(new UnknownTest());
-        availableTestSmells.add(new VerboseTest());
-        // TODO: add after importing and reviewing the test smells
-        // availableTestSmells.add(new CatchingUnexpectedExceptions());
-        // testSmellsClassLevel.add(new DuplicateTestCode());
-        // testSmellsClassLevel.add(new LonelyTest());
-        // testSmellsClassLevel.add(new TheSecretCatcher());
+        this(new ProductionFileCache(RunOptions.DEFAULT_PRODUCTION_CACHE_BYTES));
     }
-    
-    private void initializeClassLevelSmells() {
-        testSmellsClassLevel = new ArrayList<>();
-        testSmellsClassLevel.add(new AssertionRoulette());
-        testSmellsClassLevel.add(new ConditionalTestLogic());
-        testSmellsClassLevel.add(new ConstructorInitialization());
-        testSmellsClassLevel.add(new DefaultTest());
-        testSmellsClassLevel.add(new DependentTest());
-        testSmellsClassLevel.add(new DuplicateAssert());
-        testSmellsClassLevel.add(new EagerTest());
-        testSmellsClassLevel.add(new EmptyTest());
-        testSmellsClassLevel.add(new ExceptionCatchingThrowing());
-        testSmellsClassLevel.add(new GeneralFixture());
-        testSmellsClassLevel.add(new IgnoredTest());
-        testSmellsClassLevel.add(new LazyTest());
-        testSmellsClassLevel.add(new MagicNumberTest());
-        testSmellsClassLevel.add(new MysteryGuest());
-        testSmellsClassLevel.add(new PrintStatement());
-        testSmellsClassLevel.add(new RedundantAssertion());
-        testSmellsClassLevel.add(new ResourceOptimism());
-        testSmellsClassLevel.add(new SensitiveEquality());
-        testSmellsClassLevel.add(new SleepyTest());
-        testSmellsClassLevel.add(new UnknownTest());
-        testSmellsClassLevel.add(new VerboseTest());
-        // TODO: add after importing and reviewing the test smells
-        // testSmellsClassLevel.add(new CatchingUnexpectedExceptions());
-        // testSmellsClassLevel.add(new DuplicateTestCode());
-        // testSmellsClassLevel.add(new LonelyTest());
-        // testSmellsClassLevel.add(new TheSecretCatcher());
-    }
-
-    private void initializeMethodLevelSmells() {
-        testSmellsMethodLevel = new ArrayList<>();
-        testSmellsMethodLevel.add(new AssertionRoulette());
-        testSmellsMethodLevel.add(new ConditionalTestLogic());
-        testSmellsMethodLevel.add(new DuplicateAssert());
-        testSmellsMethodLevel.add(new EagerTest());
-        testSmellsMethodLevel.add(new EmptyTest());
-        testSmellsMethodLevel.add(new GeneralFixture());
-        testSmellsMethodLevel.add(new IgnoredTest());
-        testSmellsMethodLevel.add(new LazyTest());
-        testSmellsMethodLevel.add(new ResourceOptimism());
-        testSmellsMethodLevel.add(new MagicNumberTest());
-        testSmellsMethodLevel.add(new MysteryGuest());
-        testSmellsMethodLevel.add(new PrintStatement());
-        testSmellsMethodLevel.add(new RedundantAssertion());
-        testSmellsMethodLevel.add(new SensitiveEquality());
-        testSmellsMethodLevel.add(new SleepyTest());
-        testSmellsMethodLevel.add(new VerboseTest());
-        testSmellsMethodLevel.add(new UnknownTest());
-        // TODO: add after importing and reviewing the test smells
-        // testSmellsMethodLevel.add(new CatchingUnexpectedExceptions());
-        // testSmellsMethodLevel.add(new DuplicateTestCode());
-        // testSmellsMethodLevel.add(new LonelyTest());
-        // testSmellsMethodLevel.add(new TheSecretCatcher());
+
+    /**
+     * @param productionFileCache the cache shared by all analyzed files for the production file ASTs; may be null
+     */
+    public TestSmellDetector(ProductionFileCache productionFileCache) {
+        this(productionFileCache, Instrumentation.DISABLED);
     }
-    
-    public void setTestSmells(List<AbstractSmell> testSmells) {
-        this.testSmellsClassLevel = testSmells;
+
+    /**
+     * @param productionFileCache the cache shared by all analyzed files for the production file ASTs; may be null
+     * @param instrumentation records the cost of reading, parsing and detecting, per phase and per detector
+     */
+    public TestSmellDetector(ProductionFileCache productionFileCache, Instrumentation instrumentation) {
+        this.productionFileCache = productionFileCache;
+        this.instrumentation = instrumentation;
+    }
+
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Whether test files are scanned for the tokens required by the smells before they are inspected, so that smells
+     * that cannot occur in a file are answered without inspecting it. The results are the same either way.
+     */
+    public boolean isPrescan() {
+        return prescan;
+    }
+
+    public void setPrescan(boolean prescan) {
+        this.prescan = prescan;
+    }
+
+    public ProductionFileCache getProductionFileCache() {
+        return productionFileCache;
+    }
+
+    private static List<String> smellNames(List<AbstractSmell> smells) {
+        return Collections.unmodifiableList(smells.stream().map(AbstractSmell::getSmellName).collect(Collectors.toList()));
+    }
+
+    private static AbstractSmell classLevelSmell(Class<? extends AbstractSmell> smellClass) {
+        return CLASS_LEVEL_SMELLS.stream().filter(smellClass::isInstance).findFirst().get();
+    }
+
+    /**
+     * Provides the detectors of the smells that are being checked for at class level
+     */
+    public List<AbstractSmell> getTestSmellsClassLevel() {
+        return CLASS_LEVEL_SMELLS;
     }
 
-    public void testSmellsMethodLevel(List<AbstractSmell> testSmells) {
-        this.testSmellsMethodLevel = testSmells;
+    /**
+     * Provides the detectors of the smells that are being checked for at method level
+     */
+    public List<AbstractSmell> getTestSmellsMethodLevel() {
+        return METHOD_LEVEL_SMELLS;
     }
 
     /**
@@ -124,7 +183,7 @@ public class TestSmellDetector {
      * @return list of smell names
      */
     public List<String> getTestSmellNames() {
-        return availableTestSmells.stream().map(AbstractSmell::getSmellName).collect(Collectors.toList());
+        return AVAILABLE_TEST_SMELL_NAMES;
     }
     
     /**
@@ -133,7 +192,7 @@ public class TestSmellDetector {
      * @return list of smell names
      */
     public List<String> getTestSmellNamesClassLevel() {
-        return testSmellsClassLevel.stream().map(AbstractSmell::getSmellName).collect(Collectors.toList());
+        return CLASS_LEVEL_SMELL_NAMES;
     }
 
     /**
@@ -142,7 +201,62 @@ public class TestSmellDetector {
      * @return list of smell names
      */
     public List<String> getTestSmellNamesMethodLevel() {
-        return testSmellsMethodLevel.stream().map(AbstractSmell::getSmellName).collect(Collectors.toList());
+        return METHOD_LEVEL_SMELL_NAMES;
+    }
+
+    /**
+     * Identifies the detectors and their revision, for results that are persisted across runs
+     */
+    public String getDetectorSetVersion() {
+        return DETECTOR_REVISION + ":" + String.join(",", getTestSmellNamesClassLevel()) + ";" + String.join(",", getTestSmellNamesMethodLevel());
+    }
+
+    /**
+     * Opens an analysis session for the given test file. The test and production files are parsed once and shared by
+     * all detection passes that are run against the session.
+     */
+    public AnalysisSession openSession(TestFile testFile) {
+        return new AnalysisSession(testFile, productionFileCache, instrumentation);
+    }
+
+    /**
+     * Analyzes a test class held in memory, e.g. the unsaved buffer of an editor, at class and method level. No file
+     * is read and the production file cache is not used.
+     * @param testFileName the name of the test file, e.g. FooTest.java; smells such as Constructor Initialization
+     *                     depend on the name of the test class
+     * @param testSource the source of the test file
+     * @param productionSource the source of the production file, or null if there is none
+     * @return the smells of the test class
+     */
+    public AnalysisResult analyzeSource(String testFileName, String testSource, String productionSource) {
+        TestFile testFile = new TestFile("", testFileName, "");
+        return analyze(AnalysisSession.fromSource(testFile, testSource, productionSource, instrumentation));
+    }
+
+    /**
+     * Analyzes the ASTs of a test class and its production class at class and method level, e.g. ASTs kept by an
+     * editor. No file is read.
+     * @param testFileName the name of the test file, e.g. FooTest.java
+     * @param testFileCompilationUnit the AST of the test file
+     * @param productionFileCompilationUnit the AST of the production file, or null if there is none
+     * @return the smells of the test class
+     */
+    public AnalysisResult analyzeSource(String testFileName, CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit) {
+        TestFile testFile = new TestFile("", testFileName, "");
+        return analyze(AnalysisSession.fromCompilationUnits(testFile, testFileCompilationUnit, productionFileCompilationUnit, instrumentation));
+    }
+
+    private AnalysisResult analyze(AnalysisSession session) {
+        try (AnalysisSession inMemorySession = session) {
+            TestFile testFile = detectSmellsClassLevel(inMemorySession);
+            List<SmellResult> classLevelSmells = testFile.getTestSmells();
+            testFile.clearSmells();
+            detectSmellsMethodLevel(inMemorySession);
+            return new AnalysisResult(classLevelSmells, testFile.getTestSmells());
+        } catch (IOException e) {
+            // the session holds the sources, nothing is read
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -156,55 +270,122 @@ public class TestSmellDetector {
      * Loads the java source code file into an AST and then analyzes it for the existence of the different types of test smells at class level.
      */
     public TestFile detectSmellsClassLevel(TestFile testFile) throws IOException {
-        initializeClassLevelSmells();
-    	return detectSmells(testFile, testSmellsClassLevel);
+        try (AnalysisSession session = openSession(testFile)) {
+            return detectSmellsClassLevel(session);
+        }
+    }
+
+    /**
+     * Analyzes the ASTs of the session for the existence of the different types of test smells at class level.
+     */
+    public TestFile detectSmellsClassLevel(AnalysisSession session) throws IOException {
+        return detectSmells(session, CLASS_LEVEL_SMELLS);
     }
     
     /**
-     * Loads the java source code file into an AST and then analyzes it for the existence of the different types of test smells at class level.
+     * Loads the java source code file into an AST and then analyzes it for the existence of the different types of test smells at method level.
      */
     public TestFile detectSmellsMethodLevel(TestFile testFile) throws IOException {
-        initializeMethodLevelSmells();
-    	return detectSmells(testFile, testSmellsMethodLevel);
+        try (AnalysisSession session = openSession(testFile)) {
+            return detectSmellsMethodLevel(session);
+        }
+    }
+
+    /**
+     * Analyzes the ASTs of the session for the existence of the different types of test smells at method level.
+     */
+    public TestFile detectSmellsMethodLevel(AnalysisSession session) throws IOException {
+        return detectSmells(session, METHOD_LEVEL_SMELLS);
     }
     
     /**
      * Loads the java source code file into an AST and then analyzes it for the existence of the different types of test smells
      */
     public TestFile detectSmells(TestFile testFile, List<AbstractSmell> testSmells) throws IOException {
-        CompilationUnit testFileCompilationUnit = null;
-        CompilationUnit productionFileCompilationUnit = null;
-        FileInputStream testFileInputStream;
-        FileInputStream productionFileInputStream;
-
-        if(! StringUtils.isEmpty(testFile.getTestFilePath())) {
-            testFileInputStream = new FileInputStream(testFile.getTestFilePath());
-            testFileCompilationUnit = JavaParser.parse(testFileInputStream);
+        try (AnalysisSession session = openSession(testFile)) {
+            return detectSmells(session, testSmells);
         }
+    }
+
+    /**
+     * Analyzes the ASTs of the session for the existence of the different types of test smells. The results are added
+     * to the test file in the order of the given smells. The cost of the detection, and of every detector, is recorded
+     * by the instrumentation of this detector.
+     */
+    public TestFile detectSmells(AnalysisSession session, List<AbstractSmell> testSmells) throws IOException {
+        TestFile testFile = session.getTestFile();
+        CompilationUnit testFileCompilationUnit = session.getTestFileCompilationUnit();
+        // parse the production file up front, so that an unreadable production file is reported as before
+        session.getProductionFileCompilationUnit();
+
+        long startTime = instrumentation.startTime();
+        long startBytes = instrumentation.startBytes();
+        boolean measured = instrumentation.isEnabled();
 
-        if(! StringUtils.isEmpty(testFile.getProductionFilePath())){
-            productionFileInputStream = new FileInputStream(testFile.getProductionFilePath());
-            productionFileCompilationUnit = JavaParser.parse(productionFileInputStream);
+        // smells whose required tokens are missing from the test file cannot occur in it
+        long tokens = prescan ? session.getTestFileTokens(PRESCAN) : -1L;
+        if ((tokens & PRESCAN.mask(UNICODE_ESCAPE)) != 0) {
+            tokens = -1L;
         }
 
-        for (AbstractSmell smell : testSmells) {
+        // all smells are collected by a single traversal of the test file AST
+        SmellVisitor[] visitors = new SmellVisitor[testSmells.size()];
+        List<SmellVisitor> applicableVisitors = new ArrayList<>(testSmells.size());
+        int[] applicableSmells = measured ? new int[testSmells.size()] : null;
+        for (int i = 0; i < testSmells.size(); i++) {
+            long detectorStartTime = instrumentation.startTime();
+            long detectorStartBytes = instrumentation.startBytes();
             try {
-                smell.runAnalysis(
-                	testFileCompilationUnit,
-                	productionFileCompilationUnit,
-                	testFile.getTestFileNameWithoutExtension(),
-                	testFile.getProductionFileNameWithoutExtension()
-                );
+                AbstractSmell smell = testSmells.get(i);
+                visitors[i] = canOccur(smell, tokens) ? smell.createVisitor(session) : smell.createVisitorWithoutSmell(session);
+                if (measured) {
+                    applicableSmells[applicableVisitors.size()] = i;
+                }
+                applicableVisitors.add(visitors[i]);
             } catch (FileNotFoundException e) {
-                testFile.addSmell(null);
-                continue;
+                // the smell is not applicable, e.g. the test file has no production file
             }
-            testFile.addSmell(smell);
+            instrumentation.recordDetector(testSmells.get(i).getSmellName(), detectorStartTime, detectorStartBytes);
+        }
+        if (measured) {
+            long[] elapsedNanos = new long[applicableVisitors.size()];
+            long[] allocatedBytes = new long[applicableVisitors.size()];
+            SmellTraversal.traverse(testFileCompilationUnit, applicableVisitors, elapsedNanos, allocatedBytes);
+            for (int i = 0; i < applicableVisitors.size(); i++) {
+                instrumentation.recordDetector(testSmells.get(applicableSmells[i]).getSmellName(), 0, elapsedNanos[i], allocatedBytes[i]);
+            }
+        } else {
+            SmellTraversal.traverse(testFileCompilationUnit, applicableVisitors);
         }
-        
-        return testFile;
 
+        for (int i = 0; i < testSmells.size(); i++) {
+            AbstractSmell smell = testSmells.get(i);
+            long detectorStartTime = instrumentation.startTime();
+            long detectorStartBytes = instrumentation.startBytes();
+            testFile.addSmell(visitors[i] == null ? SmellResult.notApplicable(smell.getSmellName()) : smell.getResult(visitors[i]));
+            if (measured) {
+                instrumentation.recordDetector(smell.getSmellName(), 0, System.nanoTime() - detectorStartTime,
+                        Instrumentation.allocatedBytes() - detectorStartBytes);
+            }
+        }
+        instrumentation.recordPhase(Instrumentation.Phase.DETECT, startTime, startBytes);
+        return testFile;
     }
 
-
+    /**
+     * Returns true if the smell can occur in a test file with the given tokens
+     */
+    private static boolean canOccur(AbstractSmell smell, long tokens) {
+        long[] requiredTokens = REQUIRED_TOKENS.get(smell);
+        if (requiredTokens == null) {
+            // not one of the smells of tsDetect, its tokens are not scanned for
+            return true;
+        }
+        for (long group : requiredTokens) {
+            if ((tokens & group) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
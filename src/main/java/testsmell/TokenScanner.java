@@ -0,0 +1,149 @@
+package testsmell;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds which of a fixed set of ASCII tokens occur in a source file, with a single pass over its raw bytes.
+ * The tokens are compiled into an Aho-Corasick automaton whose failure links are folded into a complete transition
+ * table, so every byte costs one table lookup however many tokens there are. Tokens are matched anywhere, including in
+ * comments and string literals and as part of longer identifiers. Bytes outside of ASCII never match, so the files may
+ * be in any ASCII compatible encoding.
+ * An instance is immutable and can be shared between threads.
+ */
+public class TokenScanner {
+
+    public static final int MAX_TOKENS = Long.SIZE;
+    private static final int ALPHABET = 128;
+
+    private final List<String> tokens;
+    private final int[] transitions;
+    private final long[] matches;
+
+    /**
+     * @param tokens the tokens to search for, at most {@link #MAX_TOKENS}; the bit of a token in the masks returned by
+     *               {@link #scan(byte[])} is its index in this list
+     */
+    public TokenScanner(List<String> tokens) {
+        if (tokens.size() > MAX_TOKENS) {
+            throw new IllegalArgumentException("At most " + MAX_TOKENS + " tokens can be scanned for, got " + tokens.size());
+        }
+        this.tokens = new ArrayList<>(tokens);
+
+        // the trie of the tokens; a transition of -1 is missing
+        List<int[]> trie = new ArrayList<>();
+        List<Long> outputs = new ArrayList<>();
+        trie.add(newState());
+        outputs.add(0L);
+        for (int i = 0; i < tokens.size(); i++) {
+            byte[] token = tokens.get(i).getBytes(StandardCharsets.US_ASCII);
+            if (token.length == 0 || !tokens.get(i).chars().allMatch(c -> c < ALPHABET)) {
+                throw new IllegalArgumentException("Tokens must be non-empty ASCII strings: " + tokens.get(i));
+            }
+            int state = 0;
+            for (byte b : token) {
+                if (trie.get(state)[b] == -1) {
+                    trie.get(state)[b] = trie.size();
+                    trie.add(newState());
+                    outputs.add(0L);
+                }
+                state = trie.get(state)[b];
+            }
+            outputs.set(state, outputs.get(state) | 1L << i);
+        }
+
+        // breadth first, so that the failure state of a state is complete before the state is
+        transitions = new int[trie.size() * ALPHABET];
+        matches = new long[trie.size()];
+        int[] failure = new int[trie.size()];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            if (next == -1) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        matches[0] = outputs.get(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches[state] = outputs.get(state) | matches[failure[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie.get(state)[c];
+                if (next == -1) {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                } else {
+                    transitions[state * ALPHABET + c] = next;
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * Returns the spellings of an ASCII token in every combination of upper and lower case letters, to scan for a token
+     * regardless of its case
+     */
+    public static List<String> ignoringCase(String token) {
+        List<String> variants = new ArrayList<>();
+        variants.add("");
+        for (char c : token.toCharArray()) {
+            char lowerCase = Character.toLowerCase(c);
+            char upperCase = Character.toUpperCase(c);
+            List<String> extended = new ArrayList<>(variants.size() * 2);
+            for (String variant : variants) {
+                extended.add(variant + lowerCase);
+                if (upperCase != lowerCase) {
+                    extended.add(variant + upperCase);
+                }
+            }
+            variants = extended;
+        }
+        return variants;
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Returns the bit of a token in the masks returned by {@link #scan(byte[])}
+     * @throws IllegalArgumentException if the token is not scanned for
+     */
+    public long mask(String token) {
+        int index = tokens.indexOf(token);
+        if (index == -1) {
+            throw new IllegalArgumentException("Not a scanned token: " + token);
+        }
+        return 1L << index;
+    }
+
+    /**
+     * Scans the given bytes for all tokens
+     * @return a mask with the bit of every token that occurs in the bytes
+     */
+    public long scan(byte[] source) {
+        long found = 0;
+        int state = 0;
+        for (byte b : source) {
+            // bytes outside of ASCII are negative and restart the automaton
+            state = b < 0 ? 0 : transitions[state * ALPHABET + b];
+            found |= matches[state];
+        }
+        return found;
+    }
+}
@@ -1,17 +1,15 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.MethodCallExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 /**
  * "Guess what's wrong?" This smell comes from having a number of assertions in a test method that have no explanation.
@@ -20,13 +18,6 @@ import java.util.List;
  */
 public class AssertionRoulette extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-    private int assertionsCount = 0;
-
-    public AssertionRoulette() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Assertion Roulette' smell
      */
@@ -35,77 +26,54 @@ public class AssertionRoulette extends AbstractSmell {
         return "Assertion Roulette";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods for multiple assert statements without an explanation/message
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        AssertionRoulette.ClassVisitor classVisitor;
-        classVisitor = new AssertionRoulette.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
-        assertionsCount = classVisitor.overallAssertions;
-    }
-
-    public int getAssertionsCount() {
-        return assertionsCount;
-    }
-
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new AssertionRoulette.ClassVisitor();
     }
 
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private static class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         private int assertNoMessageCount = 0;
         private int assertCount = 0;
-        private int overallAssertions = 0;
         TestMethod testMethod;
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
-
+                return true;
+            }
+            return false;
+        }
 
-                // if there is only 1 assert statement in the method, then a explanation message is not needed
-                if (assertCount == 1)
-                    testMethod.setHasSmell(false);
-                else if (assertNoMessageCount >= 1) //if there is more than one assert statement, then all the asserts need to have an explanation message
-                    testMethod.setHasSmell(true);
+        @Override
+        public void leave(MethodDeclaration n) {
+            // if there is only 1 assert statement in the method, then a explanation message is not needed
+            if (assertCount == 1)
+                testMethod.setHasSmell(false);
+            else if (assertNoMessageCount >= 1) //if there is more than one assert statement, then all the asserts need to have an explanation message
+                testMethod.setHasSmell(true);
 
-                testMethod.addDataItem("AssertCount", String.valueOf(assertNoMessageCount));
+            testMethod.setMetric(Metric.ASSERT_COUNT, assertNoMessageCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                overallAssertions += assertCount;
-                assertCount = 0;
-                assertNoMessageCount = 0;
-            }
+            //reset values for next method
+            currentMethod = null;
+            assertCount = 0;
+            assertNoMessageCount = 0;
         }
 
         // examine the methods being called within the test method
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
                 // if the name of a method being called is an assertion and has 3 parameters
                 if (n.getNameAsString().startsWith(("assertArrayEquals")) ||
@@ -1,17 +1,14 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.SmellVisitor;
 import testsmell.TestClass;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 
 /*
@@ -20,13 +17,6 @@ If this code detects the existence of a constructor, it sets the class as smelly
  */
 public class ConstructorInitialization extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-    private String testFileName;
-
-    public ConstructorInitialization() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Constructor Initialization' smell
      */
@@ -35,49 +25,35 @@ public class ConstructorInitialization extends AbstractSmell {
         return "Constructor Initialization";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for Constructor Initialization smell
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit,CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        this.testFileName = testFileName;
-        ConstructorInitialization.ClassVisitor classVisitor;
-        classVisitor = new ConstructorInitialization.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new ConstructorInitialization.ClassVisitor(session.getTestFile().getTestFileNameWithoutExtension());
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
-    }
 
-
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
+        private final String testFileName;
         TestClass testClass;
         boolean constructorAllowed=false;
 
+        ClassVisitor(String testFileName) {
+            this.testFileName = testFileName;
+        }
+
         @Override
-        public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+        public boolean visit(ClassOrInterfaceDeclaration n) {
             for(int i=0;i<n.getExtendedTypes().size();i++){
                 ClassOrInterfaceType node = n.getExtendedTypes().get(i);
                 constructorAllowed = node.getNameAsString().equals("ActivityInstrumentationTestCase2");
             }
-            super.visit(n, arg);
+            return true;
         }
 
         @Override
-        public void visit(ConstructorDeclaration n, Void arg) {
+        public boolean visit(ConstructorDeclaration n) {
             // This check is needed to handle java files that have multiple classes
             if(n.getNameAsString().equals(testFileName)) {
                 if(!constructorAllowed) {
@@ -86,6 +62,7 @@ public class ConstructorInitialization extends AbstractSmell {
                     smellyElementList.add(testClass);
                 }
             }
+            return false;
         }
     }
 }
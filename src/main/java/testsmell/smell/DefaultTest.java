@@ -1,15 +1,12 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.SmellVisitor;
 import testsmell.TestClass;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 /*
 By default Android Studio creates default test classes when a project is created. These classes are meant to serve as an example for developers when wring unit tests
@@ -17,12 +14,6 @@ This code marks the class as smelly if the class name corresponds to the name of
  */
 public class DefaultTest extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public DefaultTest() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Default Test' smell
      */
@@ -31,40 +22,23 @@ public class DefaultTest extends AbstractSmell {
         return "Default Test";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit,CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        DefaultTest.ClassVisitor classVisitor;
-        classVisitor = new DefaultTest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new DefaultTest.ClassVisitor();
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
-    }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         TestClass testClass;
 
         @Override
-        public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+        public boolean visit(ClassOrInterfaceDeclaration n) {
             if (n.getNameAsString().equals("ExampleUnitTest") || n.getNameAsString().equals("ExampleInstrumentedTest")) {
                 testClass = new TestClass(n.getNameAsString());
                 testClass.setHasSmell(true);
                 smellyElementList.add(testClass);
             }
-            super.visit(n, arg);
+            return true;
         }
     }
 }
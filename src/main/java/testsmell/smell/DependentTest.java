@@ -1,28 +1,18 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.MethodCallExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.SmellVisitor;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class DependentTest extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-    private List<TestMethod> testMethods;
-
-
-    public DependentTest() {
-        smellyElementList = new ArrayList<>();
-        testMethods = new ArrayList<>();
-    }
-
     /**
      * Checks of 'DependentTest' smell
      */
@@ -31,73 +21,66 @@ public class DependentTest extends AbstractSmell {
         return "Dependent Test";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods that call other test methods
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        DependentTest.ClassVisitor classVisitor;
-        classVisitor = new DependentTest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
-
-        for (TestMethod testMethod : testMethods) {
-            if (testMethod.getCalledMethods().stream().anyMatch(x -> x.getName().equals(testMethods.stream().map(z -> z.getMethodDeclaration().getNameAsString())))){
-                smellyElementList.add(new testsmell.TestMethod(testMethod.getMethodDeclaration().getNameAsString()));
-            }
-        }
-
-/*
-        for (int i = 0; i < testMethods.get(i).getCalledMethods().size(); i++) {
-            for (TestMethod testMethod : testMethods) {
-                if (testMethods.get(i).getCalledMethods().stream().anyMatch(x -> x.getName().equals(testMethod.getMethodDeclaration().getNameAsString()))) {
-                    smellyElementList.add(new testsmell.TestMethod(testMethod.getMethodDeclaration().getNameAsString()));
-                }
-            }
-        }*/
-    }
-
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new DependentTest.ClassVisitor();
     }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         List<CalledMethod> calledMethods;
+        private List<TestMethod> testMethods = new ArrayList<>();
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 calledMethods = new ArrayList<>();
-
-                super.visit(n, arg);
-                testMethods.add(new DependentTest.TestMethod(n, calledMethods));
+                return true;
             }
+            return false;
+        }
+
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethods.add(new DependentTest.TestMethod(n, calledMethods));
         }
 
         // examine the methods being called within the test method
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
                 if (!calledMethods.contains(new CalledMethod(n.getArguments().size(), n.getNameAsString()))) {
                     calledMethods.add(new CalledMethod(n.getArguments().size(), n.getNameAsString()));
                 }
             }
         }
+
+        @Override
+        public void afterTraversal() {
+            analyzeCalledMethods();
+        }
+
+        private void analyzeCalledMethods() {
+            for (TestMethod testMethod : testMethods) {
+                if (testMethod.getCalledMethods().stream().anyMatch(x -> x.getName().equals(testMethods.stream().map(z -> z.getMethodDeclaration().getNameAsString())))){
+                    smellyElementList.add(new testsmell.TestMethod(testMethod.getMethodDeclaration().getNameAsString()));
+                }
+            }
+
+    /*
+            for (int i = 0; i < testMethods.get(i).getCalledMethods().size(); i++) {
+                for (TestMethod testMethod : testMethods) {
+                    if (testMethods.get(i).getCalledMethods().stream().anyMatch(x -> x.getName().equals(testMethod.getMethodDeclaration().getNameAsString()))) {
+                        smellyElementList.add(new testsmell.TestMethod(testMethod.getMethodDeclaration().getNameAsString()));
+                    }
+                }
+            }*/
+        }
     }
 
     private class TestMethod {
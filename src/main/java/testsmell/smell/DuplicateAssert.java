@@ -1,25 +1,18 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.MethodCallExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
 
 public class DuplicateAssert extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public DuplicateAssert() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Duplicate Assert' smell
      */
@@ -28,34 +21,16 @@ public class DuplicateAssert extends AbstractSmell {
         return "Duplicate Assert";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods that have multiple assert statements with the same explanation message
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        DuplicateAssert.ClassVisitor classVisitor;
-        classVisitor = new DuplicateAssert.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
-    }
-
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new DuplicateAssert.ClassVisitor();
     }
 
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         TestMethod testMethod;
         List<String> assertMessage = new ArrayList<>();
@@ -63,38 +38,41 @@ public class DuplicateAssert extends AbstractSmell {
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                // if there are duplicate messages, then the smell exists
-                Set<String> set1 = new HashSet<String>(assertMessage);
-                if (set1.size() < assertMessage.size()) {
-                    testMethod.setHasSmell(true);
-                }
+        @Override
+        public void leave(MethodDeclaration n) {
+            // if there are duplicate messages, then the smell exists
+            Set<String> set1 = new HashSet<String>(assertMessage);
+            if (set1.size() < assertMessage.size()) {
+                testMethod.setHasSmell(true);
+            }
 
-                // if there are duplicate assert methods, then the smell exists
-                Set<String> set2 = new HashSet<String>(assertMethod);
-                if (set2.size() < assertMethod.size()) {
-                    testMethod.setHasSmell(true);
-                }
+            // if there are duplicate assert methods, then the smell exists
+            Set<String> set2 = new HashSet<String>(assertMethod);
+            if (set2.size() < assertMethod.size()) {
+                testMethod.setHasSmell(true);
+            }
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                assertMessage = new ArrayList<>();
-                assertMethod = new ArrayList<>();
-            }
+            //reset values for next method
+            currentMethod = null;
+            assertMessage = new ArrayList<>();
+            assertMethod = new ArrayList<>();
         }
 
         // examine the methods being called within the test method
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
                 // if the name of a method being called start with 'assert'
                 // if the name of a method being called is an assertion and has 3 parameters
@@ -1,35 +1,19 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.Modifier;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.EnumDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.*;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 public class EagerTest extends AbstractSmell {
 
-    private static final String TEST_FILE = "Test";
-    private static final String PRODUCTION_FILE = "Production";
-    private String productionClassName;
-    private List<SmellyElement> smellyElementList;
-    private List<MethodDeclaration> productionMethods;
-    private int eagerCount;
-
-    public EagerTest() {
-        productionMethods = new ArrayList<>();
-        smellyElementList = new ArrayList<>();
-    }
 
     /**
      * Checks of 'Eager Test' smell
@@ -39,115 +23,66 @@ public class EagerTest extends AbstractSmell {
         return "Eager Test";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods that exhibit the 'Eager Test' smell
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-
-        if (productionFileCompilationUnit == null)
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        ProductionMethodIndex productionMethodIndex = session.getProductionMethodIndex();
+        if (productionMethodIndex == null)
             throw new FileNotFoundException();
 
-        EagerTest.ClassVisitor classVisitor;
-
-        classVisitor = new EagerTest.ClassVisitor(PRODUCTION_FILE);
-        classVisitor.visit(productionFileCompilationUnit, null);
-
-        classVisitor = new EagerTest.ClassVisitor(TEST_FILE);
-        classVisitor.visit(testFileCompilationUnit, null);
-        eagerCount = classVisitor.overallEager;
-    }
-
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
-    }
-
-    public int getEagerCount() {
-        return eagerCount;
+        return new EagerTest.ClassVisitor(productionMethodIndex);
     }
 
     /**
      * Visitor class
      */
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private static class ClassVisitor extends SmellVisitor {
+        private final ProductionMethodIndex productionMethodIndex;
+        private final String productionClassName;
         private MethodDeclaration currentMethod = null;
         TestMethod testMethod;
         private int eagerCount = 0;
-        private int overallEager = 0;
         private List<String> productionVariables = new ArrayList<>();
         private List<String> calledMethods = new ArrayList<>();
-        private String fileType;
 
-        public ClassVisitor(String type) {
-            fileType = type;
-        }
-
-        @Override
-        public void visit(ClassOrInterfaceDeclaration n, Void arg) {
-            if (Objects.equals(fileType, PRODUCTION_FILE)) {
-                productionClassName = n.getNameAsString();
-            }
-            super.visit(n, arg);
-        }
-
-        @Override
-        public void visit(EnumDeclaration n, Void arg) {
-            if (Objects.equals(fileType, PRODUCTION_FILE)) {
-                productionClassName = n.getNameAsString();
-            }
-            super.visit(n, arg);
+        public ClassVisitor(ProductionMethodIndex productionMethodIndex) {
+            this.productionMethodIndex = productionMethodIndex;
+            this.productionClassName = productionMethodIndex.getProductionClassName();
         }
 
         /**
          * The purpose of this method is to 'visit' all test methods.
          */
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
-            // ensure that this method is only executed for the test file
-            if (Objects.equals(fileType, TEST_FILE)) {
-                if (Util.isValidTestMethod(n)) {
-                    currentMethod = n;
-                    testMethod = new TestMethod(currentMethod.getNameAsString());
-                    testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                    super.visit(n, arg);
-
-                    testMethod.setHasSmell(eagerCount > 1); //the method has a smell if there is more than 1 call to production methods
-                    smellyElementList.add(testMethod);
-
-                    //reset values for next method
-                    currentMethod = null;
-                    overallEager += eagerCount;
-                    eagerCount = 0;
-                    productionVariables = new ArrayList<>();
-                    calledMethods = new ArrayList<>();
-                }
-            } else { //collect a list of all public/protected members of the production class
-                for (Modifier modifier : n.getModifiers()) {
-                    if (modifier.name().toLowerCase().equals("public") || modifier.name().toLowerCase().equals("protected")) {
-                        productionMethods.add(n);
-                    }
-                }
-
+        public boolean visit(MethodDeclaration n) {
+            if (Util.isValidTestMethod(n)) {
+                currentMethod = n;
+                testMethod = new TestMethod(currentMethod.getNameAsString());
+                testMethod.setHasSmell(false); //default value is false (i.e. no smell)
+                return true;
             }
+            return false;
+        }
+
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethod.setHasSmell(eagerCount > 1); //the method has a smell if there is more than 1 call to production methods
+            smellyElementList.add(testMethod);
+
+            //reset values for next method
+            currentMethod = null;
+            eagerCount = 0;
+            productionVariables = new ArrayList<>();
+            calledMethods = new ArrayList<>();
         }
 
 
         /**
          * The purpose of this method is to identify the production class methods that are called from the test method
          * When the parser encounters a method call:
-         * 1) the method is contained in the productionMethods list
+         * 1) the method is contained in the production method index
          * or
          * 2) the code will check the 'scope' of the called method
          * A match is made if the scope is either:
@@ -155,11 +90,10 @@ public class EagerTest extends AbstractSmell {
          * if the scope is a variable that has been declared to be of type of the production class (i.e. contained in the 'productionVariables' list).
          */
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
+        public boolean visit(MethodCallExpr n) {
             NameExpr nameExpr = null;
             if (currentMethod != null) {
-                if (productionMethods.stream().anyMatch(i -> i.getNameAsString().equals(n.getNameAsString()) &&
-                        i.getParameters().size() == n.getArguments().size())) {
+                if (productionMethodIndex.contains(n.getNameAsString(), n.getArguments().size())) {
                     eagerCount++;
                     calledMethods.add(n.getNameAsString());
                 } else {
@@ -189,7 +123,7 @@ public class EagerTest extends AbstractSmell {
                     }
                 }
             }
-            super.visit(n, arg);
+            return true;
         }
 
         private NameExpr tempNameExpr;
@@ -224,13 +158,11 @@ public class EagerTest extends AbstractSmell {
 //        }
 
         @Override
-        public void visit(VariableDeclarator n, Void arg) {
-            if (Objects.equals(fileType, TEST_FILE)) {
-                if (productionClassName.equals(n.getType().asString())) {
-                    productionVariables.add(n.getNameAsString());
-                }
+        public boolean visit(VariableDeclarator n) {
+            if (productionClassName.equals(n.getType().asString())) {
+                productionVariables.add(n.getNameAsString());
             }
-            super.visit(n, arg);
+            return true;
         }
     }
 }
\ No newline at end of file
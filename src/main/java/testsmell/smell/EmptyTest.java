@@ -1,16 +1,13 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 /**
  * This class checks if a test method is empty (i.e. the method does not contain statements in its body)
@@ -18,12 +15,6 @@ import java.util.List;
  */
 public class EmptyTest extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public EmptyTest() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Empty Test' smell
      */
@@ -32,43 +23,26 @@ public class EmptyTest extends AbstractSmell {
         return "EmptyTest";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods that are empty (i.e. no method body)
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        EmptyTest.ClassVisitor classVisitor;
-        classVisitor = new EmptyTest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new EmptyTest.ClassVisitor();
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
-    }
 
     /**
      * Visitor class
      */
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         TestMethod testMethod;
 
         /**
          * The purpose of this method is to 'visit' all test methods in the test file
          */
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
@@ -83,6 +57,7 @@ public class EmptyTest extends AbstractSmell {
                 }
                 smellyElementList.add(testMethod);
             }
+            return false;
         }
     }
 }
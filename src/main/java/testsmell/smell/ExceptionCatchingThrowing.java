@@ -1,17 +1,19 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.stmt.CatchClause;
 import com.github.javaparser.ast.stmt.ThrowStmt;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.NoSmellVisitor;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /*
@@ -20,12 +22,6 @@ If this code detects the existence of a catch block or a throw statement in the
  */
 public class ExceptionCatchingThrowing extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public ExceptionCatchingThrowing() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Exception Catching Throwing' smell
      */
@@ -35,32 +31,28 @@ public class ExceptionCatchingThrowing extends AbstractSmell {
     }
 
     /**
-     * Returns true if any of the elements has a smell
+     * Analyze the test file for test methods that have exception handling
      */
     @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new ExceptionCatchingThrowing.ClassVisitor();
     }
 
+
     /**
-     * Analyze the test file for test methods that have exception handling
+     * A test method can only catch or throw exceptions if the file contains catch, throw or throws
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        ExceptionCatchingThrowing.ClassVisitor classVisitor;
-        classVisitor = new ExceptionCatchingThrowing.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public List<List<String>> getRequiredTokens() {
+        return Collections.singletonList(Arrays.asList("catch", "throw"));
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
     @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitorWithoutSmell(AnalysisSession session) {
+        return new NoSmellVisitor(Metric.EXCEPTION_COUNT);
     }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         private int exceptionCount = 0;
         TestMethod testMethod;
@@ -68,41 +60,41 @@ public class ExceptionCatchingThrowing extends AbstractSmell {
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                if (n.getThrownExceptions().size() >= 1)
-                    exceptionCount++;
+        @Override
+        public void leave(MethodDeclaration n) {
+            if (n.getThrownExceptions().size() >= 1)
+                exceptionCount++;
 
-                testMethod.setHasSmell(exceptionCount >= 1);
-                testMethod.addDataItem("ExceptionCount", String.valueOf(exceptionCount));
+            testMethod.setHasSmell(exceptionCount >= 1);
+            testMethod.setMetric(Metric.EXCEPTION_COUNT, exceptionCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                exceptionCount = 0;
-            }
+            //reset values for next method
+            currentMethod = null;
+            exceptionCount = 0;
         }
 
 
         @Override
-        public void visit(ThrowStmt n, Void arg) {
-            super.visit(n, arg);
-
+        public void leave(ThrowStmt n) {
             if (currentMethod != null) {
                 exceptionCount++;
             }
         }
 
         @Override
-        public void visit(CatchClause n, Void arg) {
-            super.visit(n, arg);
-
+        public void leave(CatchClause n) {
             if (currentMethod != null) {
                 exceptionCount++;
             }
@@ -10,30 +10,18 @@ import com.github.javaparser.ast.expr.AssignExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.SmellTraversal;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
 
 public class GeneralFixture extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-    List<MethodDeclaration> methodList;
-    MethodDeclaration setupMethod;
-    List<FieldDeclaration> fieldList;
-    List<String> setupFields;
-
-    public GeneralFixture() {
-        smellyElementList = new ArrayList<>();
-        methodList = new ArrayList<>();
-        fieldList = new ArrayList<>();
-        setupFields = new ArrayList<>();
-    }
-
     /**
      * Checks of 'General Fixture' smell
      */
@@ -42,19 +30,17 @@ public class GeneralFixture extends AbstractSmell {
         return "General Fixture";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
     @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
-    @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        CompilationUnit testFileCompilationUnit = session.getTestFileCompilationUnit();
         GeneralFixture.ClassVisitor classVisitor;
         classVisitor = new GeneralFixture.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null); //This call will populate the list of test methods and identify the setup method [visit(ClassOrInterfaceDeclaration n)]
+        //This traversal will populate the list of test methods and identify the setup method [visit(ClassOrInterfaceDeclaration n)]
+        //It does not descend into classes, so it is cheap compared to the traversal of the whole file
+        SmellTraversal.traverse(testFileCompilationUnit, Collections.singletonList(classVisitor));
+        MethodDeclaration setupMethod = classVisitor.setupMethod;
+        List<FieldDeclaration> fieldList = classVisitor.fieldList;
+        List<String> setupFields = classVisitor.setupFields;
 
         //Proceed with general fixture analysis if setup method exists
         if (setupMethod != null) {
@@ -80,29 +66,35 @@ public class GeneralFixture extends AbstractSmell {
             }
         }
 
-        for (MethodDeclaration method : methodList) {
-            //This call will visit each test method to identify the list of variables the method contains [visit(MethodDeclaration n)]
-            classVisitor.visit(method, null);
-        }
-    }
-
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+        //The returned visitor will visit each test method to identify the list of variables the method contains [visit(MethodDeclaration n)]
+        classVisitor.collecting = false;
+        classVisitor.testMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+        classVisitor.testMethods.addAll(classVisitor.methodList);
+        return classVisitor;
     }
 
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private static class ClassVisitor extends SmellVisitor {
+        List<MethodDeclaration> methodList = new ArrayList<>();
+        MethodDeclaration setupMethod;
+        List<FieldDeclaration> fieldList = new ArrayList<>();
+        List<String> setupFields = new ArrayList<>();
         private MethodDeclaration methodDeclaration = null;
         private MethodDeclaration currentMethod = null;
         TestMethod testMethod;
         private Set<String> fixtureCount = new HashSet();
+        // true while the test methods and the setup method are collected, false while the test methods are analyzed
+        private boolean collecting = true;
+        private Set<MethodDeclaration> testMethods;
+        // the method of the methodList that is being analyzed
+        private MethodDeclaration analyzedMethod = null;
 
         @Override
-        public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+        public boolean visit(ClassOrInterfaceDeclaration n) {
+            if (!collecting) {
+                //keep searching for the test methods of the methodList, but do not look into classes declared in them
+                return analyzedMethod == null;
+            }
             NodeList<BodyDeclaration<?>> members = n.getMembers();
             for (int i = 0; i < members.size(); i++) {
                 if (members.get(i) instanceof MethodDeclaration) {
@@ -127,28 +119,45 @@ public class GeneralFixture extends AbstractSmell {
                     fieldList.add((FieldDeclaration) members.get(i));
                 }
             }
+            return false;
         }
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
+            if (!collecting && analyzedMethod == null) {
+                if (!testMethods.contains(n)) {
+                    return true;
+                }
+                analyzedMethod = n;
+            }
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
 
                 //call visit(NameExpr) for current method
-                super.visit(n, arg);
-
-                testMethod = new TestMethod(n.getNameAsString());
-                testMethod.setHasSmell(fixtureCount.size() != setupFields.size());
-                smellyElementList.add(testMethod);
+                return true;
+            }
+            return false;
+        }
 
-                fixtureCount = new HashSet();;
-                currentMethod = null;
+        @Override
+        public void leave(MethodDeclaration n) {
+            if (!collecting && analyzedMethod == null) {
+                return;
+            }
+            testMethod = new TestMethod(n.getNameAsString());
+            testMethod.setHasSmell(fixtureCount.size() != setupFields.size());
+            smellyElementList.add(testMethod);
+
+            fixtureCount = new HashSet();;
+            currentMethod = null;
+            if (n == analyzedMethod) {
+                analyzedMethod = null;
             }
         }
 
         @Override
-        public void visit(NameExpr n, Void arg) {
+        public boolean visit(NameExpr n) {
             if (currentMethod != null) {
                 //check if the variable contained in the current test method is also contained in the setup method
                 if (setupFields.contains(n.getNameAsString())) {
@@ -159,7 +168,7 @@ public class GeneralFixture extends AbstractSmell {
                 }
             }
 
-            super.visit(n, arg);
+            return true;
         }
 
 
@@ -1,27 +1,22 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.SmellVisitor;
 import testsmell.TestClass;
 import testsmell.TestMethod;
+import testsmell.TokenScanner;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class IgnoredTest extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public IgnoredTest() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Ignored Test' smell
      */
@@ -31,35 +26,35 @@ public class IgnoredTest extends AbstractSmell {
     }
 
     /**
-     * Returns true if any of the elements has a smell
+     * Analyze the test file for test methods that contain Ignored test methods
      */
     @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new IgnoredTest.ClassVisitor();
     }
 
+
     /**
-     * Analyze the test file for test methods that contain Ignored test methods
+     * A test can only be ignored if the file contains an Ignore annotation or a method named test, in any case
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        IgnoredTest.ClassVisitor classVisitor;
-        classVisitor = new IgnoredTest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public List<List<String>> getRequiredTokens() {
+        List<String> tokens = new ArrayList<>(TokenScanner.ignoringCase("test"));
+        tokens.add("Ignore");
+        return Collections.singletonList(tokens);
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
     @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitorWithoutSmell(AnalysisSession session) {
+        // no test is ignored, and no element is reported
+        return new SmellVisitor() {
+        };
     }
 
     /**
      * Visitor class
      */
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         TestMethod testMethod;
         TestClass testClass;
 
@@ -67,20 +62,20 @@ public class IgnoredTest extends AbstractSmell {
          * This method will check if the class has the @Ignore annotation
          */
         @Override
-        public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+        public boolean visit(ClassOrInterfaceDeclaration n) {
             if (n.getAnnotationByName("Ignore").isPresent()) {
                 testClass = new TestClass(n.getNameAsString());
                 testClass.setHasSmell(true);
                 smellyElementList.add(testClass);
             }
-            super.visit(n, arg);
+            return true;
         }
 
         /**
          * The purpose of this method is to 'visit' all test methods in the test file.
          */
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
 
             //JUnit 4
             //check if test method has Ignore annotation
@@ -89,7 +84,7 @@ public class IgnoredTest extends AbstractSmell {
                     testMethod = new TestMethod(n.getNameAsString());
                     testMethod.setHasSmell(true);
                     smellyElementList.add(testMethod);
-                    return;
+                    return false;
                 }
             }
 
@@ -100,9 +95,10 @@ public class IgnoredTest extends AbstractSmell {
                     testMethod = new TestMethod(n.getNameAsString());
                     testMethod.setHasSmell(true);
                     smellyElementList.add(testMethod);
-                    return;
+                    return false;
                 }
             }
+            return false;
         }
 
     }
@@ -1,39 +1,28 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.Modifier;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.EnumDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.ProductionMethodIndex;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 public class LazyTest extends AbstractSmell {
-    private static final String TEST_FILE = "Test";
-    private static final String PRODUCTION_FILE = "Production";
-    private String productionClassName;
-    private List<SmellyElement> smellyElementList;
-    private List<MethodUsage> calledProductionMethods;
-    private List<MethodDeclaration> productionMethods;
-
-    public LazyTest() {
-        productionMethods = new ArrayList<>();
-        smellyElementList = new ArrayList<>();
-        calledProductionMethods = new ArrayList<>();
-    }
 
     /**
      * Checks of 'Lazy Test' smell
@@ -43,51 +32,16 @@ public class LazyTest extends AbstractSmell {
         return "Lazy Test";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods that exhibit the 'Lazy Test' smell
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-
-        if (productionFileCompilationUnit == null)
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        ProductionMethodIndex productionMethodIndex = session.getProductionMethodIndex();
+        if (productionMethodIndex == null)
             throw new FileNotFoundException();
 
-        LazyTest.ClassVisitor classVisitor;
-
-        classVisitor = new LazyTest.ClassVisitor(PRODUCTION_FILE);
-        classVisitor.visit(productionFileCompilationUnit, null);
-
-        classVisitor = new LazyTest.ClassVisitor(TEST_FILE);
-        classVisitor.visit(testFileCompilationUnit, null);
-
-        for (MethodUsage method : calledProductionMethods) {
-            List<MethodUsage> s = calledProductionMethods.stream().filter(x -> x.getProductionMethod().equals(method.getProductionMethod())).collect(Collectors.toList());
-            if (s.size() > 1) {
-                if (s.stream().filter(y -> y.getTestMethod().equals(method.getTestMethod())).count() != s.size()) {
-                    // If counts don not match, this production method is used by multiple test methods. Hence, there is a Lazy Test smell.
-                    // If the counts were equal it means that the production method is only used (called from) inside one test method
-                    TestMethod testClass = new TestMethod(method.getTestMethod());
-                    testClass.setHasSmell(true);
-                    smellyElementList.add(testClass);
-                }
-            }
-        }
-    }
-
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+        return new LazyTest.ClassVisitor(productionMethodIndex);
     }
 
     private class MethodUsage {
@@ -110,64 +64,70 @@ public class LazyTest extends AbstractSmell {
     /**
      * Visitor class
      */
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
+        private final ProductionMethodIndex productionMethodIndex;
+        private final String productionClassName;
+        private List<MethodUsage> calledProductionMethods = new ArrayList<>();
         private MethodDeclaration currentMethod = null;
         TestMethod testMethod;
         private List<String> productionVariables = new ArrayList<>();
-        private String fileType;
 
-        public ClassVisitor(String type) {
-            fileType = type;
+        public ClassVisitor(ProductionMethodIndex productionMethodIndex) {
+            this.productionMethodIndex = productionMethodIndex;
+            this.productionClassName = productionMethodIndex.getProductionClassName();
         }
 
+        /**
+         * The purpose of this method is to 'visit' all test methods.
+         */
         @Override
-        public void visit(ClassOrInterfaceDeclaration n, Void arg) {
-            if (Objects.equals(fileType, PRODUCTION_FILE)) {
-                productionClassName = n.getNameAsString();
+        public boolean visit(MethodDeclaration n) {
+            if (Util.isValidTestMethod(n)) {
+                currentMethod = n;
+                testMethod = new TestMethod(currentMethod.getNameAsString());
+                testMethod.setHasSmell(false); //default value is false (i.e. no smell)
+                return true;
             }
-            super.visit(n, arg);
+            return false;
         }
 
         @Override
-        public void visit(EnumDeclaration n, Void arg) {
-            if (Objects.equals(fileType, PRODUCTION_FILE)) {
-                productionClassName = n.getNameAsString();
-            }
-            super.visit(n, arg);
+        public void leave(MethodDeclaration n) {
+            //reset values for next method
+            currentMethod = null;
+            productionVariables = new ArrayList<>();
         }
 
-        /**
-         * The purpose of this method is to 'visit' all test methods.
-         */
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
-            // ensure that this method is only executed for the test file
-            if (Objects.equals(fileType, TEST_FILE)) {
-                if (Util.isValidTestMethod(n)) {
-                    currentMethod = n;
-                    testMethod = new TestMethod(currentMethod.getNameAsString());
-                    testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                    super.visit(n, arg);
-
-                    //reset values for next method
-                    currentMethod = null;
-                    productionVariables = new ArrayList<>();
-                }
-            } else { //collect a list of all public/protected members of the production class
-                for (Modifier modifier : n.getModifiers()) {
-                    if (modifier.name().toLowerCase().equals("public") || modifier.name().toLowerCase().equals("protected")) {
-                        productionMethods.add(n);
-                    }
-                }
+        public void afterTraversal() {
+            analyzeCalledProductionMethods();
+        }
 
+        private void analyzeCalledProductionMethods() {
+            // group the test methods by the production method they call
+            Map<String, Set<String>> testMethodsByProductionMethod = new HashMap<>();
+            for (MethodUsage method : calledProductionMethods) {
+                testMethodsByProductionMethod.computeIfAbsent(method.getProductionMethod(), x -> new HashSet<>()).add(method.getTestMethod());
+            }
+            // If a production method is used by multiple test methods, there is a Lazy Test smell.
+            // If it is only used (called from) inside one test method, there is none.
+            Set<String> lazyTestMethods = new LinkedHashSet<>();
+            for (MethodUsage method : calledProductionMethods) {
+                if (testMethodsByProductionMethod.get(method.getProductionMethod()).size() > 1) {
+                    lazyTestMethods.add(method.getTestMethod());
+                }
+            }
+            for (String lazyTestMethod : lazyTestMethods) {
+                TestMethod testClass = new TestMethod(lazyTestMethod);
+                testClass.setHasSmell(true);
+                smellyElementList.add(testClass);
             }
         }
 
-
         /**
          * The purpose of this method is to identify the production class methods that are called from the test method
          * When the parser encounters a method call:
-         * 1) the method is contained in the productionMethods list
+         * 1) the method is contained in the production method index
          * or
          * 2) the code will check the 'scope' of the called method
          * A match is made if the scope is either:
@@ -175,11 +135,9 @@ public class LazyTest extends AbstractSmell {
          * if the scope is a variable that has been declared to be of type of the production class (i.e. contained in the 'productionVariables' list).
          */
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
-                if (productionMethods.stream().anyMatch(i -> i.getNameAsString().equals(n.getNameAsString()) &&
-                        i.getParameters().size() == n.getArguments().size())) {
+                if (productionMethodIndex.contains(n.getNameAsString(), n.getArguments().size())) {
                     calledProductionMethods.add(new MethodUsage(currentMethod.getNameAsString(), n.getNameAsString()));
                 } else {
                     if (n.getScope().isPresent()) {
@@ -214,13 +172,11 @@ public class LazyTest extends AbstractSmell {
 //        }
 
         @Override
-        public void visit(VariableDeclarator n, Void arg) {
-            if (Objects.equals(fileType, TEST_FILE)) {
-                if (productionClassName.equals(n.getType().asString())) {
-                    productionVariables.add(n.getNameAsString());
-                }
+        public boolean visit(VariableDeclarator n) {
+            if (productionClassName.equals(n.getType().asString())) {
+                productionVariables.add(n.getNameAsString());
             }
-            super.visit(n, arg);
+            return true;
         }
     }
 }
@@ -1,28 +1,20 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 public class MagicNumberTest  extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public MagicNumberTest() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'MagicNumberTest' smell
      */
@@ -31,61 +23,47 @@ public class MagicNumberTest  extends AbstractSmell {
         return "Magic Number Test";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods that have magic numbers in as parameters in the assert methods
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        MagicNumberTest.ClassVisitor classVisitor;
-        classVisitor = new MagicNumberTest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new MagicNumberTest.ClassVisitor();
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
-    }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         TestMethod testMethod;
         private int magicCount = 0;
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                testMethod.setHasSmell(magicCount >= 1);
-                testMethod.addDataItem("MagicNumberCount", String.valueOf(magicCount));
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethod.setHasSmell(magicCount >= 1);
+            testMethod.setMetric(Metric.MAGIC_NUMBER_COUNT, magicCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                magicCount = 0;
-            }
+            //reset values for next method
+            currentMethod = null;
+            magicCount = 0;
         }
 
         // examine the methods being called within the test method
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
                 // if the name of a method being called start with 'assert'
                 if (n.getNameAsString().startsWith(("assertArrayEquals")) ||
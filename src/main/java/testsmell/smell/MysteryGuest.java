@@ -1,18 +1,20 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.NoSmellVisitor;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -24,11 +26,19 @@ import java.util.List;
  */
 public class MysteryGuest extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public MysteryGuest() {
-        smellyElementList = new ArrayList<>();
-    }
+    private static final List<String> MYSTERY_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "File",
+            "FileOutputStream",
+            "SQLiteOpenHelper",
+            "SQLiteDatabase",
+            "Cursor",
+            "Context",
+            "HttpClient",
+            "HttpResponse",
+            "HttpPost",
+            "HttpGet",
+            "SoapObject"
+    ));
 
     /**
      * Checks of 'Mystery Guest' smell
@@ -39,46 +49,29 @@ public class MysteryGuest extends AbstractSmell {
     }
 
     /**
-     * Returns true if any of the elements has a smell
+     * Analyze the test file for test methods that use external resources
      */
     @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new MysteryGuest.ClassVisitor();
     }
 
+
     /**
-     * Analyze the test file for test methods that use external resources
+     * A test method can only use an external resource if the file contains the name of a mystery type
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        MysteryGuest.ClassVisitor classVisitor;
-        classVisitor = new MysteryGuest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public List<List<String>> getRequiredTokens() {
+        return Collections.singletonList(MYSTERY_TYPES);
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
     @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitorWithoutSmell(AnalysisSession session) {
+        return new NoSmellVisitor(Metric.MYSTERY_COUNT);
     }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
-        private List<String> mysteryTypes = new ArrayList<>(
-                Arrays.asList(
-                        "File",
-                        "FileOutputStream",
-                        "SQLiteOpenHelper",
-                        "SQLiteDatabase",
-                        "Cursor",
-                        "Context",
-                        "HttpClient",
-                        "HttpResponse",
-                        "HttpPost",
-                        "HttpGet",
-                        "SoapObject"
-                ));
+    private class ClassVisitor extends SmellVisitor {
+        private List<String> mysteryTypes = new ArrayList<>(MYSTERY_TYPES);
 
         /*
                 private List<String> databaseMethods = new ArrayList<>(
@@ -111,29 +104,32 @@ public class MysteryGuest extends AbstractSmell {
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                testMethod.setHasSmell(mysteryCount > 0);
-                testMethod.addDataItem("MysteryCount", String.valueOf(mysteryCount));
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethod.setHasSmell(mysteryCount > 0);
+            testMethod.setMetric(Metric.MYSTERY_COUNT, mysteryCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                mysteryCount = 0;
-            }
+            //reset values for next method
+            currentMethod = null;
+            mysteryCount = 0;
         }
 
         /*
         // examine the methods being called within the test method
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null){
                 for (String methodName: fileMethods) {
                     if(n.getNameAsString().equals(methodName)){
@@ -150,8 +146,7 @@ public class MysteryGuest extends AbstractSmell {
         */
 
         @Override
-        public void visit(VariableDeclarationExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(VariableDeclarationExpr n) {
             //Note: the null check limits the identification of variable types declared within the method body.
             // Removing it will check for variables declared at the class level.
             //TODO: to null check or not to null check???
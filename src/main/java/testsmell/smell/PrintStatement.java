@@ -1,18 +1,20 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.NoSmellVisitor;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /*
@@ -21,12 +23,6 @@ This code checks the body of each test method if System.out. print(), println(),
  */
 public class PrintStatement extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public PrintStatement() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Print Statement' smell
      */
@@ -36,60 +32,59 @@ public class PrintStatement extends AbstractSmell {
     }
 
     /**
-     * Returns true if any of the elements has a smell
+     * Analyze the test file for test methods that print output to the console
      */
     @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new PrintStatement.ClassVisitor();
     }
 
+
     /**
-     * Analyze the test file for test methods that print output to the console
+     * A test method can only print if the file contains System.out and the name of a print method
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        PrintStatement.ClassVisitor classVisitor;
-        classVisitor = new PrintStatement.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public List<List<String>> getRequiredTokens() {
+        return Arrays.asList(Collections.singletonList("System"), Collections.singletonList("out"), Arrays.asList("print", "write"));
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
     @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitorWithoutSmell(AnalysisSession session) {
+        return new NoSmellVisitor(Metric.PRINT_COUNT);
     }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         private int printCount = 0;
         TestMethod testMethod;
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                testMethod.setHasSmell(printCount >= 1);
-                testMethod.addDataItem("PrintCount", String.valueOf(printCount));
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethod.setHasSmell(printCount >= 1);
+            testMethod.setMetric(Metric.PRINT_COUNT, printCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                printCount = 0;
-            }
+            //reset values for next method
+            currentMethod = null;
+            printCount = 0;
         }
 
         // examine the methods being called within the test method
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
                 // if the name of a method being called is 'print' or 'println' or 'printf' or 'write'
                 if (n.getNameAsString().equals("print") || n.getNameAsString().equals("println") || n.getNameAsString().equals("printf") || n.getNameAsString().equals("write")) {
@@ -1,31 +1,23 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.BooleanLiteralExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NullLiteralExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 /*
 If a test method contains an assert statement that explicitly returns a true or false, the method is marked as smelly
  */
 public class RedundantAssertion extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public RedundantAssertion() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Redundant Assertion' smell
      */
@@ -34,63 +26,49 @@ public class RedundantAssertion extends AbstractSmell {
         return "Redundant Assertion";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods for multiple assert statements
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        RedundantAssertion.ClassVisitor classVisitor;
-        classVisitor = new RedundantAssertion.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new RedundantAssertion.ClassVisitor();
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
-    }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         private int redundantCount = 0;
         TestMethod testMethod;
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                testMethod.setHasSmell(redundantCount >= 1);
-                testMethod.addDataItem("RedundantCount", String.valueOf(redundantCount));
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethod.setHasSmell(redundantCount >= 1);
+            testMethod.setMetric(Metric.REDUNDANT_COUNT, redundantCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                redundantCount = 0;
-            }
+            //reset values for next method
+            currentMethod = null;
+            redundantCount = 0;
         }
 
 
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
+        public void leave(MethodCallExpr n) {
             String argumentValue = null;
 
-            super.visit(n, arg);
             if (currentMethod != null) {
                 switch (n.getNameAsString()) {
                     case "assertTrue":
@@ -1,28 +1,22 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.*;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ResourceOptimism extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public ResourceOptimism() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Resource Optimism' smell
      */
@@ -31,34 +25,16 @@ public class ResourceOptimism extends AbstractSmell {
         return "Resource Optimism";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for the 'ResourceOptimism' smell
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        ResourceOptimism.ClassVisitor classVisitor;
-        classVisitor = new ResourceOptimism.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
-    }
-
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new ResourceOptimism.ClassVisitor();
     }
 
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         private int resourceOptimismCount = 0;
         private boolean hasSmell = false;
@@ -69,28 +45,32 @@ public class ResourceOptimism extends AbstractSmell {
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n) || Util.isValidSetupMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                testMethod.setHasSmell(methodVariables.size() >= 1 || hasSmell==true);
-                testMethod.addDataItem("ResourceOptimismCount", String.valueOf(resourceOptimismCount));
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethod.setHasSmell(methodVariables.size() >= 1 || hasSmell==true);
+            testMethod.setMetric(Metric.RESOURCE_OPTIMISM_COUNT, resourceOptimismCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                resourceOptimismCount = 0;
-                hasSmell = false;
-                methodVariables = new ArrayList<>();
-            }
+            //reset values for next method
+            currentMethod = null;
+            resourceOptimismCount = 0;
+            hasSmell = false;
+            methodVariables = new ArrayList<>();
         }
 
         @Override
-        public void visit(VariableDeclarationExpr n, Void arg) {
+        public boolean visit(VariableDeclarationExpr n) {
             if (currentMethod != null) {
                 for (VariableDeclarator variableDeclarator : n.getVariables()) {
                     if (variableDeclarator.getType().equals("File")) {
@@ -98,11 +78,11 @@ public class ResourceOptimism extends AbstractSmell {
                     }
                 }
             }
-            super.visit(n, arg);
+            return true;
         }
 
         @Override
-        public void visit(ObjectCreationExpr n, Void arg) {
+        public boolean visit(ObjectCreationExpr n) {
             if (currentMethod != null) {
                 if (n.getParentNode().isPresent()) {
                     if (!(n.getParentNode().get() instanceof VariableDeclarator)) { // VariableDeclarator is handled in the override method
@@ -114,11 +94,11 @@ public class ResourceOptimism extends AbstractSmell {
             } else {
                 System.out.println(n.getType());
             }
-            super.visit(n, arg);
+            return true;
         }
 
         @Override
-        public void visit(VariableDeclarator n, Void arg) {
+        public boolean visit(VariableDeclarator n) {
             if (currentMethod != null) {
                 if (n.getType().asString().equals("File")) {
                     methodVariables.add(n.getNameAsString());
@@ -128,23 +108,22 @@ public class ResourceOptimism extends AbstractSmell {
                     classVariables.add(n.getNameAsString());
                 }
             }
-            super.visit(n, arg);
+            return true;
         }
 
         @Override
-        public void visit(FieldDeclaration n, Void arg) {
+        public boolean visit(FieldDeclaration n) {
             for (VariableDeclarator variableDeclarator : n.getVariables()) {
                 if (variableDeclarator.getType().equals("File")) {
                     classVariables.add(variableDeclarator.getNameAsString());
                 }
             }
-            super.visit(n, arg);
+            return true;
         }
 
 
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
                 if (n.getNameAsString().equals("exists") ||
                         n.getNameAsString().equals("isFile") ||
@@ -1,17 +1,19 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.NoSmellVisitor;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /*
@@ -20,12 +22,6 @@ This code marks a method as smelly if the method body calls Thread.sleep()
  */
 public class SleepyTest extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public SleepyTest() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'SleepyTest' smell
      */
@@ -35,60 +31,59 @@ public class SleepyTest extends AbstractSmell {
     }
 
     /**
-     * Returns true if any of the elements has a smell
+     * Analyze the test file for test methods that use Thread.sleep()
      */
     @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new SleepyTest.ClassVisitor();
     }
 
+
     /**
-     * Analyze the test file for test methods that use Thread.sleep()
+     * A test method can only sleep if the file contains a call of Thread.sleep()
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        SleepyTest.ClassVisitor classVisitor;
-        classVisitor = new SleepyTest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public List<List<String>> getRequiredTokens() {
+        return Arrays.asList(Collections.singletonList("Thread"), Collections.singletonList("sleep"));
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
     @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
+    public SmellVisitor createVisitorWithoutSmell(AnalysisSession session) {
+        return new NoSmellVisitor(Metric.THREAD_SLEEP_COUNT);
     }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         private MethodDeclaration currentMethod = null;
         private int sleepCount = 0;
         TestMethod testMethod;
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
                 testMethod.setHasSmell(false); //default value is false (i.e. no smell)
-                super.visit(n, arg);
+                return true;
+            }
+            return false;
+        }
 
-                testMethod.setHasSmell(sleepCount >= 1);
-                testMethod.addDataItem("ThreadSleepCount", String.valueOf(sleepCount));
+        @Override
+        public void leave(MethodDeclaration n) {
+            testMethod.setHasSmell(sleepCount >= 1);
+            testMethod.setMetric(Metric.THREAD_SLEEP_COUNT, sleepCount);
 
-                smellyElementList.add(testMethod);
+            smellyElementList.add(testMethod);
 
-                //reset values for next method
-                currentMethod = null;
-                sleepCount = 0;
-            }
+            //reset values for next method
+            currentMethod = null;
+            sleepCount = 0;
         }
 
         // examine the methods being called within the test method
         @Override
-        public void visit(MethodCallExpr n, Void arg) {
-            super.visit(n, arg);
+        public void leave(MethodCallExpr n) {
             if (currentMethod != null) {
                 // if the name of a method being called is 'sleep'
                 if (n.getNameAsString().equals("sleep")) {
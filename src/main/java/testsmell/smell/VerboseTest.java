@@ -1,28 +1,20 @@
 package testsmell.smell;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import testsmell.AbstractSmell;
-import testsmell.SmellyElement;
+import testsmell.AnalysisSession;
+import testsmell.Metric;
+import testsmell.SmellVisitor;
 import testsmell.TestMethod;
 import testsmell.Util;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 /*
 If a test methods contains a statements that exceeds a certain threshold, the method is marked as smelly
  */
 public class VerboseTest extends AbstractSmell {
 
-    private List<SmellyElement> smellyElementList;
-
-    public VerboseTest() {
-        smellyElementList = new ArrayList<>();
-    }
-
     /**
      * Checks of 'Verbose Test' smell
      */
@@ -31,33 +23,16 @@ public class VerboseTest extends AbstractSmell {
         return "Verbose Test";
     }
 
-    /**
-     * Returns true if any of the elements has a smell
-     */
-    @Override
-    public boolean getHasSmell() {
-        return smellyElementList.stream().filter(x -> x.getHasSmell()).count() >= 1;
-    }
-
     /**
      * Analyze the test file for test methods for the 'Verbose Test' smell
      */
     @Override
-    public void runAnalysis(CompilationUnit testFileCompilationUnit, CompilationUnit productionFileCompilationUnit, String testFileName, String productionFileName) throws FileNotFoundException {
-        VerboseTest.ClassVisitor classVisitor;
-        classVisitor = new VerboseTest.ClassVisitor();
-        classVisitor.visit(testFileCompilationUnit, null);
+    public SmellVisitor createVisitor(AnalysisSession session) throws IOException {
+        return new VerboseTest.ClassVisitor();
     }
 
-    /**
-     * Returns the set of analyzed elements (i.e. test methods)
-     */
-    @Override
-    public List<SmellyElement> getSmellyElements() {
-        return smellyElementList;
-    }
 
-    private class ClassVisitor extends VoidVisitorAdapter<Void> {
+    private class ClassVisitor extends SmellVisitor {
         final int MAX_STATEMENTS = 123;
         private MethodDeclaration currentMethod = null;
         private int verboseCount = 0;
@@ -65,7 +40,7 @@ public class VerboseTest extends AbstractSmell {
 
         // examine all methods in the test class
         @Override
-        public void visit(MethodDeclaration n, Void arg) {
+        public boolean visit(MethodDeclaration n) {
             if (Util.isValidTestMethod(n)) {
                 currentMethod = n;
                 testMethod = new TestMethod(n.getNameAsString());
@@ -81,7 +56,7 @@ public class VerboseTest extends AbstractSmell {
                     }
                 }
                 testMethod.setHasSmell(verboseCount >= 1);
-                testMethod.addDataItem("VerboseCount", String.valueOf(verboseCount));
+                testMethod.setMetric(Metric.VERBOSE_COUNT, verboseCount);
 
                 smellyElementList.add(testMethod);
 
@@ -89,6 +64,7 @@ public class VerboseTest extends AbstractSmell {
                 currentMethod = null;
                 verboseCount = 0;
             }
+            return false;
         }
     }
 }
@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import testsmell.CorpusGenerator;
+import testsmell.ManifestReader;
+import testsmell.ProductionFileCache;
+import testsmell.TestFile;
+import testsmell.TestFileAnalyzer;
+import testsmell.TestSmellDetector;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MainTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<TestFile> generateCorpus() throws IOException {
+        CorpusGenerator generator = CorpusGenerator.parse(new String[]{tempDir.toString(), "--classes=40", "--methods=4", "--seed=7"});
+        generator.generate();
+        List<TestFile> testFiles = new ArrayList<>();
+        try (ManifestReader manifest = new ManifestReader(generator.getManifestFile().toString())) {
+            manifest.forEachRemaining(testFiles::add);
+        }
+        return testFiles;
+    }
+
+    @Test
+    public void testParallelAnalysisWritesTheRowsInManifestOrder() throws IOException {
+        List<TestFile> testFiles = generateCorpus();
+        TestFileAnalyzer analyzer = new TestFileAnalyzer(new TestSmellDetector(new ProductionFileCache(0)));
+
+        List<List<String>> sequential = new ArrayList<>();
+        Main.analyzeInParallel(analyzer, testFiles.iterator(), sequential::addAll, 1);
+        List<List<String>> parallel = new ArrayList<>();
+        // more test files than are analyzed ahead of the file that is written next
+        assertTrue(testFiles.size() > 4 * 4);
+        Main.analyzeInParallel(analyzer, testFiles.iterator(), parallel::addAll, 4);
+
+        assertEquals(sequential, parallel);
+        List<String> testFilePaths = new ArrayList<>();
+        for (TestFile testFile : testFiles) {
+            testFilePaths.add(testFile.getTestFilePath());
+        }
+        List<String> classRowPaths = new ArrayList<>();
+        for (List<String> row : parallel) {
+            if (row.get(2).isEmpty()) {
+                classRowPaths.add(row.get(3));
+            }
+        }
+        assertEquals(testFilePaths, classRowPaths);
+    }
+
+    @Test
+    public void testFailureOfAWorkerIsThrownToTheCaller() throws IOException {
+        List<TestFile> testFiles = generateCorpus();
+        String failingFile = testFiles.get(testFiles.size() / 2).getTestFilePath();
+        TestFileAnalyzer analyzer = new TestFileAnalyzer(new TestSmellDetector(new ProductionFileCache(0))) {
+            @Override
+            public List<List<String>> analyze(TestFile file) throws IOException {
+                if (file.getTestFilePath().equals(failingFile)) {
+                    throw new IOException("cannot read " + file.getTestFilePath());
+                }
+                return super.analyze(file);
+            }
+        };
+
+        IOException failure = assertThrows(IOException.class,
+                () -> Main.analyzeInParallel(analyzer, testFiles.iterator(), rows -> { }, 4));
+        assertEquals("cannot read " + failingFile, failure.getMessage());
+    }
+}
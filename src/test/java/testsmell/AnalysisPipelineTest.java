@@ -0,0 +1,94 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<List<String>> analyzeSequentially(TestFileAnalyzer analyzer, List<TestFile> testFiles) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        for (TestFile testFile : testFiles) {
+            rows.addAll(analyzer.analyze(testFile));
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRowsAreWrittenInTheOrderOfTheTestFiles() throws IOException {
+        CorpusGenerator generator = CorpusGenerator.parse(new String[]{tempDir.toString(), "--classes=30", "--methods=4", "--seed=5"});
+        generator.generate();
+        List<TestFile> testFiles = new ArrayList<>();
+        try (ManifestReader manifest = new ManifestReader(generator.getManifestFile().toString())) {
+            manifest.forEachRemaining(testFiles::add);
+        }
+        TestFileAnalyzer analyzer = new TestFileAnalyzer(new TestSmellDetector(new ProductionFileCache(0)));
+
+        List<List<String>> rows = new ArrayList<>();
+        // a queue of one file forces the stages to wait for each other
+        new AnalysisPipeline(analyzer, 2, 3, 3, 1).run(testFiles.iterator(), rows::addAll);
+
+        assertEquals(analyzeSequentially(analyzer, testFiles), rows);
+    }
+
+    @Test
+    public void testThreadPerTestFileReadsAllTestFiles() throws IOException {
+        CorpusGenerator generator = CorpusGenerator.parse(new String[]{tempDir.toString(), "--classes=30", "--methods=4", "--seed=6"});
+        generator.generate();
+        List<TestFile> testFiles = new ArrayList<>();
+        try (ManifestReader manifest = new ManifestReader(generator.getManifestFile().toString())) {
+            manifest.forEachRemaining(testFiles::add);
+        }
+        TestFileAnalyzer analyzer = new TestFileAnalyzer(new TestSmellDetector(new ProductionFileCache(0)));
+        // platform threads stand in for virtual threads, which the pipeline starts the same way
+        AtomicInteger startedThreads = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            startedThreads.incrementAndGet();
+            return new Thread(runnable);
+        };
+
+        List<List<String>> rows = new ArrayList<>();
+        new AnalysisPipeline(analyzer, factory, 100, 2, 2, 4).run(testFiles.iterator(), rows::addAll);
+
+        assertEquals(analyzeSequentially(analyzer, testFiles), rows);
+        assertEquals(testFiles.size(), startedThreads.get());
+    }
+
+    @Test
+    public void testVirtualThreadsAreFoundOnJava21() throws Exception {
+        String version = System.getProperty("java.specification.version");
+        boolean java21 = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        ThreadFactory factory = AnalysisPipeline.virtualThreadFactory();
+
+        assertEquals(java21, factory != null);
+        if (factory != null) {
+            Thread thread = factory.newThread(() -> { });
+            assertEquals(true, Thread.class.getMethod("isVirtual").invoke(thread));
+            assertTrue(thread.getName().startsWith("tsDetect-read-"));
+        }
+    }
+
+    @Test
+    public void testFailureOfTheSinkStopsThePipeline() throws IOException {
+        CorpusGenerator generator = CorpusGenerator.parse(new String[]{tempDir.toString(), "--classes=20", "--seed=5"});
+        generator.generate();
+        TestFileAnalyzer analyzer = new TestFileAnalyzer(new TestSmellDetector());
+
+        try (ManifestReader manifest = new ManifestReader(generator.getManifestFile().toString())) {
+            IOException failure = assertThrows(IOException.class, () -> new AnalysisPipeline(analyzer, 1, 1, 1, 2)
+                    .run(manifest, rows -> { throw new IOException("disk full"); }));
+            assertEquals("disk full", failure.getMessage());
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package testsmell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestFileAnalyzer analyzer;
+    private AnalysisServer server;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        analyzer = new TestFileAnalyzer(new TestSmellDetector(new ProductionFileCache(1024 * 1024)));
+        server = AnalysisServer.start(analyzer, 0, 2);
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.close();
+    }
+
+    private HttpURLConnection request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        // a request that is not served fails the test instead of blocking it
+        connection.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(30));
+        connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(30));
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+
+    private static List<String> readLines(InputStream inputStream) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testRequestsStreamTheRowsOfTheManifest() throws IOException {
+        CorpusGenerator generator = CorpusGenerator.parse(new String[]{tempDir.toString(), "--classes=10", "--seed=9"});
+        generator.generate();
+        String manifest = new String(Files.readAllBytes(generator.getManifestFile()), StandardCharsets.UTF_8);
+        List<String> expected = new ArrayList<>();
+        expected.add(String.join(",", analyzer.getColumnNames()));
+        try (ManifestReader reader = new ManifestReader(generator.getManifestFile().toString())) {
+            while (reader.hasNext()) {
+                for (List<String> columnValues : analyzer.analyze(reader.next())) {
+                    expected.add(String.join(",", columnValues));
+                }
+            }
+        }
+
+        // the second request is served with the warm caches of the first
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection connection = request("POST", "/analyze", manifest);
+            assertEquals(200, connection.getResponseCode());
+            assertNotNull(connection.getHeaderField("X-Request-Id"));
+            assertEquals(expected, readLines(connection.getInputStream()));
+        }
+    }
+
+    @Test
+    public void testInvalidRequestsAreRejected() throws IOException {
+        assertEquals(400, request("POST", "/analyze", "no test file").getResponseCode());
+        assertEquals(400, request("POST", "/analyze?format=xml", "").getResponseCode());
+        assertEquals(404, request("DELETE", "/analyze/42", null).getResponseCode());
+        assertEquals(405, request("GET", "/analyze", null).getResponseCode());
+        assertEquals(503, request("GET", "/status", null).getResponseCode());
+        server.warmUp(0);
+        assertEquals(200, request("GET", "/status", null).getResponseCode());
+    }
+
+    /**
+     * A manifest that lists the test files of a generated corpus many times, so that its response is much larger than
+     * the buffers of the connection
+     */
+    private String longManifest(int repetitions) throws IOException {
+        CorpusGenerator generator = CorpusGenerator.parse(new String[]{tempDir.toString(), "--classes=10", "--seed=9"});
+        generator.generate();
+        String manifest = new String(Files.readAllBytes(generator.getManifestFile()), StandardCharsets.UTF_8);
+        StringBuilder longManifest = new StringBuilder();
+        for (int i = 0; i < repetitions; i++) {
+            longManifest.append(manifest);
+        }
+        return longManifest.toString();
+    }
+
+    private String status() throws IOException {
+        return readLines(request("GET", "/status", null).getInputStream()).get(0);
+    }
+
+    private void awaitNoRunningRequests() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!status().equals("ready, 0 running requests")) {
+            assertTrue(System.nanoTime() < deadline, "the request is still running");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testCancelledRequestEndsEarly() throws IOException {
+        server.warmUp(0);
+        int repetitions = 2000;
+        HttpURLConnection connection = request("POST", "/analyze", longManifest(repetitions));
+        assertEquals(200, connection.getResponseCode());
+        String requestId = connection.getHeaderField("X-Request-Id");
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            // the header and the first rows
+            for (; lines < 10; lines++) {
+                assertNotNull(reader.readLine());
+            }
+            assertEquals("ready, 1 running requests", status());
+            assertEquals(200, request("DELETE", "/analyze/" + requestId, null).getResponseCode());
+            while (reader.readLine() != null) {
+                lines++;
+            }
+        }
+
+        // every test file has at least its class level row
+        assertTrue(lines < repetitions * 10, "the response was not cut short: " + lines + " lines");
+        assertEquals("ready, 0 running requests", status());
+        assertEquals(404, request("DELETE", "/analyze/" + requestId, null).getResponseCode());
+    }
+
+    @Test
+    public void testRequestIsCancelledWhenTheClientDisconnects() throws IOException, InterruptedException {
+        server.warmUp(0);
+        HttpURLConnection connection = request("POST", "/analyze", longManifest(2000));
+        assertEquals(200, connection.getResponseCode());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+        assertNotNull(reader.readLine());
+        assertEquals("ready, 1 running requests", status());
+        connection.disconnect();
+
+        // the server notices when the rows it sends are no longer taken
+        awaitNoRunningRequests();
+    }
+
+    @Test
+    public void testRequestsAreCancelledWhileAllAnalysisThreadsAreBusy() throws IOException {
+        server.warmUp(0);
+        int repetitions = 2000;
+        String manifest = longManifest(repetitions);
+        // as many requests as the server analyzes at the same time
+        List<HttpURLConnection> connections = new ArrayList<>();
+        List<BufferedReader> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection connection = request("POST", "/analyze", manifest);
+            assertEquals(200, connection.getResponseCode());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            assertNotNull(reader.readLine());
+            connections.add(connection);
+            readers.add(reader);
+        }
+        assertEquals("ready, 2 running requests", status());
+
+        for (int i = 0; i < connections.size(); i++) {
+            assertEquals(200, request("DELETE", "/analyze/" + connections.get(i).getHeaderField("X-Request-Id"), null).getResponseCode());
+            int lines = 1;
+            try (BufferedReader reader = readers.get(i)) {
+                while (reader.readLine() != null) {
+                    lines++;
+                }
+            }
+            assertTrue(lines < repetitions * 10, "the response was not cut short: " + lines + " lines");
+        }
+        assertEquals("ready, 0 running requests", status());
+    }
+}
@@ -0,0 +1,68 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Set<String> detect(Path manifestFile) throws IOException {
+        Set<String> detected = new HashSet<>();
+        TestSmellDetector detector = new TestSmellDetector();
+        try (ManifestReader testFiles = new ManifestReader(manifestFile.toString())) {
+            while (testFiles.hasNext()) {
+                TestFile testFile = detector.detectSmellsClassLevel(testFiles.next());
+                for (SmellResult smell : testFile.getTestSmells()) {
+                    for (SmellyElement element : smell.getSmellyElements()) {
+                        if (element.getHasSmell()) {
+                            detected.add(testFile.getApp() + "," + testFile.getTestFilePath() + "," + smell.getSmellName() + "," + element.getElementName());
+                        }
+                    }
+                }
+            }
+        }
+        return detected;
+    }
+
+    @Test
+    public void testOracleMatchesDetectedSmells() throws IOException {
+        CorpusGenerator generator = CorpusGenerator.parse(new String[]{tempDir.toString(), "--classes=40", "--methods=6",
+                "--assertions=2", "--fixture-fields=2", "--seed=7", "--density=0.25"});
+
+        long expectedSmells = generator.generate();
+
+        List<String> oracle = Files.readAllLines(generator.getOracleFile());
+        assertEquals(expectedSmells, oracle.size() - 1);
+        assertEquals(new HashSet<>(oracle.subList(1, oracle.size())), detect(generator.getManifestFile()));
+        for (CorpusGenerator.InjectedSmell smell : CorpusGenerator.InjectedSmell.values()) {
+            assertTrue(oracle.stream().anyMatch(x -> x.contains("," + smell.getSmellName() + ",")), smell.getSmellName());
+        }
+    }
+
+    @Test
+    public void testCorpusIsReproducible() throws IOException {
+        CorpusGenerator first = CorpusGenerator.parse(new String[]{tempDir.resolve("first").toString(), "--classes=5", "--seed=3"});
+        CorpusGenerator second = CorpusGenerator.parse(new String[]{tempDir.resolve("second").toString(), "--classes=5", "--seed=3"});
+
+        assertEquals(first.generateClass(4).testSource(), second.generateClass(4).testSource());
+        assertEquals(first.generateClass(4).productionSource(), second.generateClass(4).productionSource());
+        assertNotEquals(first.generateClass(3).testSource(), first.generateClass(4).testSource());
+    }
+
+    @Test
+    public void testUnknownOptionIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CorpusGenerator.parse(new String[]{"out", "--density-unknown=0.1"}));
+        assertThrows(IllegalArgumentException.class, () -> CorpusGenerator.parse(new String[]{"out", "--density=2"}));
+    }
+}
@@ -0,0 +1,195 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DatabaseResultsSinkTest {
+
+    private static final List<String> COLUMN_NAMES = Arrays.asList("App", "TestClass", "TestMethod", "TestFilePath",
+            "ProductionFilePath", "RelativeTestFilePath", "RelativeProductionFilePath", "Sleepy Test", "Eager Test",
+            "AssertCount");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Records the statements executed against a connection: the executed SQL and the rows inserted per table
+     */
+    private static class RecordingDatabase {
+        final List<String> log = new ArrayList<>();
+        final Map<String, List<List<Object>>> inserted = new HashMap<>();
+
+        Connection connect() {
+            return proxy(Connection.class, (method, args) -> {
+                switch (method) {
+                    case "createStatement":
+                        return proxy(Statement.class, (statementMethod, statementArgs) -> {
+                            if (statementMethod.equals("executeQuery")) {
+                                return proxy(ResultSet.class, (resultMethod, resultArgs) -> false);
+                            }
+                            if (statementMethod.equals("execute")) {
+                                log.add((String) statementArgs[0]);
+                            }
+                            return false;
+                        });
+                    case "prepareStatement":
+                        return prepare((String) args[0]);
+                    case "commit":
+                        log.add("COMMIT");
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private PreparedStatement prepare(String sql) {
+            String table = sql.split(" ")[2];
+            List<Object> parameters = new ArrayList<>();
+            List<List<Object>> batch = new ArrayList<>();
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (method.startsWith("set")) {
+                    while (parameters.size() < (Integer) args[0]) {
+                        parameters.add(null);
+                    }
+                    parameters.set((Integer) args[0] - 1, method.equals("setNull") ? null : args[1]);
+                } else if (method.equals("addBatch")) {
+                    batch.add(new ArrayList<>(parameters));
+                } else if (method.equals("executeBatch")) {
+                    if (!batch.isEmpty()) {
+                        log.add("INSERT " + table);
+                    }
+                    inserted.computeIfAbsent(table, x -> new ArrayList<>()).addAll(batch);
+                    batch.clear();
+                    return new int[0];
+                }
+                return null;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Handler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (instance, method, args) -> handler.invoke(method.getName(), args));
+        }
+
+        private interface Handler {
+            Object invoke(String method, Object[] args) throws Exception;
+        }
+    }
+
+    @Test
+    public void testRowsAreInsertedIntoNormalizedTables() throws IOException {
+        RecordingDatabase database = new RecordingDatabase();
+        try (DatabaseResultsSink sink = new DatabaseResultsSink(database.connect(), Instrumentation.DISABLED)) {
+            sink.writeColumnName(COLUMN_NAMES);
+            sink.writeLine(Arrays.asList("app", "ATest.java", "", "/a/ATest.java", "/a/A.java", "ATest.java", "A.java", "true", "", ""));
+            sink.writeLine(Arrays.asList("app", "ATest.java", "testA", "/a/ATest.java", "/a/A.java", "ATest.java", "A.java", "true", "false", "3"));
+            sink.writeLine(Arrays.asList("app", "BTest.java", "", "/a/BTest.java", "", "BTest.java", "", "false", "", ""));
+        }
+
+        assertEquals(Arrays.asList(Arrays.asList(1L, "app")), database.inserted.get("apps"));
+        assertEquals(Arrays.asList(
+                Arrays.asList(1L, 1L, "ATest.java", "/a/ATest.java", "/a/A.java", "ATest.java", "A.java"),
+                Arrays.asList(2L, 1L, "BTest.java", "/a/BTest.java", "", "BTest.java", "")), database.inserted.get("files"));
+        assertEquals(Arrays.asList(Arrays.asList(1L, 1L, "testA")), database.inserted.get("methods"));
+        assertEquals(Arrays.asList(
+                Arrays.asList(1L, null, "Sleepy Test", 1),
+                Arrays.asList(1L, 1L, "Sleepy Test", 1),
+                Arrays.asList(1L, 1L, "Eager Test", 0),
+                Arrays.asList(2L, null, "Sleepy Test", 0)), database.inserted.get("smells"));
+        assertEquals(Arrays.asList(Arrays.asList(1L, "AssertCount", 3L)), database.inserted.get("metrics"));
+
+        // the indexes are created after the rows are committed
+        int firstIndex = database.log.indexOf(database.log.stream().filter(x -> x.startsWith("CREATE INDEX")).findFirst().get());
+        assertEquals("COMMIT", database.log.get(firstIndex - 1));
+        assertTrue(database.log.subList(firstIndex, database.log.size()).stream().noneMatch(x -> x.startsWith("INSERT")));
+    }
+
+    private static List<String> query(Connection connection, String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                List<String> values = new ArrayList<>();
+                for (int i = 1; i <= columns; i++) {
+                    values.add(resultSet.getString(i));
+                }
+                rows.add(String.join(",", values));
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRowsOfAnalyzedFilesAreReplacedInSQLite() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("results.db");
+        Connection probe;
+        try {
+            probe = DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            probe = null;
+        }
+        assumeTrue(probe != null, "no SQLite JDBC driver on the class path");
+        probe.close();
+
+        try (DatabaseResultsSink sink = DatabaseResultsSink.open(url, Instrumentation.DISABLED)) {
+            sink.writeColumnName(COLUMN_NAMES);
+            sink.writeLine(Arrays.asList("app", "ATest.java", "", "/a/ATest.java", "/a/A.java", "ATest.java", "A.java", "true", "", ""));
+            sink.writeLine(Arrays.asList("app", "ATest.java", "testA", "/a/ATest.java", "/a/A.java", "ATest.java", "A.java", "true", "false", "3"));
+            sink.writeLine(Arrays.asList("app", "BTest.java", "", "/a/BTest.java", "", "BTest.java", "", "false", "", ""));
+            sink.flush();
+            try (Connection connection = DriverManager.getConnection(url)) {
+                assertEquals(Collections.emptyList(), query(connection, "SELECT name FROM sqlite_master WHERE type = 'index'"));
+            }
+            // written again in the same run, as by the watch mode
+            sink.writeLine(Arrays.asList("app", "BTest.java", "", "/a/BTest.java", "", "BTest.java", "", "true", "", ""));
+            sink.flush();
+            // the earlier rows are looked up by the indexes, not by scanning the tables
+            try (Connection connection = DriverManager.getConnection(url)) {
+                assertTrue(query(connection, "SELECT name FROM sqlite_master WHERE type = 'index'").contains("files_test_file_path"));
+            }
+        }
+        // a second run over the same repository
+        try (DatabaseResultsSink sink = DatabaseResultsSink.open(url, Instrumentation.DISABLED)) {
+            sink.writeColumnName(COLUMN_NAMES);
+            sink.writeLine(Arrays.asList("app", "ATest.java", "", "/a/ATest.java", "/a/A.java", "ATest.java", "A.java", "false", "", ""));
+            sink.writeLine(Arrays.asList("app", "ATest.java", "testB", "/a/ATest.java", "/a/A.java", "ATest.java", "A.java", "false", "true", "1"));
+        }
+
+        try (Connection connection = DriverManager.getConnection(url)) {
+            assertEquals(Arrays.asList("app"), query(connection, "SELECT name FROM apps"));
+            assertEquals(Arrays.asList("/a/BTest.java", "/a/ATest.java"), query(connection, "SELECT test_file_path FROM files ORDER BY id"));
+            assertEquals(Arrays.asList("ATest.java,testB"), query(connection,
+                    "SELECT f.test_class, m.name FROM methods m JOIN files f ON m.file_id = f.id"));
+            assertEquals(Arrays.asList(
+                    "/a/ATest.java,,Sleepy Test,0",
+                    "/a/ATest.java,testB,Sleepy Test,0",
+                    "/a/ATest.java,testB,Eager Test,1",
+                    "/a/BTest.java,,Sleepy Test,1"), query(connection,
+                    "SELECT f.test_file_path, COALESCE(m.name, ''), s.smell, s.has_smell FROM smells s JOIN files f ON s.file_id = f.id " +
+                            "LEFT JOIN methods m ON s.method_id = m.id ORDER BY f.test_file_path, m.name, s.smell DESC"));
+            assertEquals(Arrays.asList("testB,AssertCount,1"), query(connection,
+                    "SELECT m.name, x.metric, x.metric_value FROM metrics x JOIN methods m ON x.method_id = m.id"));
+        }
+    }
+}
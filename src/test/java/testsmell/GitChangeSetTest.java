@@ -0,0 +1,77 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitChangeSetTest {
+
+    @TempDir
+    Path repository;
+
+    @Test
+    public void testTestFilesAreAffectedByTheirOwnOrTheirProductionFile() {
+        GitChangeSet changes = new GitChangeSet(repository.toFile(), Arrays.asList("src/main/java/Calculator.java", "src/test/java/WidgetTest.java"));
+        String testDirectory = repository.resolve("src/test/java").toString();
+
+        assertEquals(2, changes.size());
+        assertTrue(changes.affects(new TestFile("app", testDirectory + "/CalculatorTest.java", repository.resolve("src/main/java/Calculator.java").toString())));
+        assertTrue(changes.affects(new TestFile("app", testDirectory + "/WidgetTest.java", "")));
+        assertFalse(changes.affects(new TestFile("app", testDirectory + "/OtherTest.java", repository.resolve("src/main/java/Other.java").toString())));
+        assertFalse(changes.contains(repository.resolve("other/WidgetTest.java").toString()));
+    }
+
+    private boolean git(String... arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList("git", "-C", repository.toString(),
+                "-c", "user.name=tsDetect", "-c", "user.email=tsdetect@example.com", "-c", "commit.gpgsign=false"));
+        command.addAll(Arrays.asList(arguments));
+        Process process;
+        try {
+            process = new ProcessBuilder(command).inheritIO().start();
+        } catch (IOException e) {
+            // git is not installed
+            return false;
+        }
+        return process.waitFor() == 0;
+    }
+
+    private void write(String relativePath, String contents) throws IOException {
+        Path file = repository.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testChangesBetweenRevisionsAreListedByGit() throws Exception {
+        assumeTrue(git("init", "-q"), "git is not available");
+        write("src/main/java/Calculator.java", "class Calculator {}");
+        write("src/test/java/CalculatorTest.java", "class CalculatorTest {}");
+        write("src/test/java/WidgetTest.java", "class WidgetTest {}");
+        assertTrue(git("add", "-A"));
+        assertTrue(git("commit", "-q", "-m", "base"));
+        write("src/main/java/Calculator.java", "class Calculator { int add(int a, int b) { return a + b; } }");
+        assertTrue(git("rm", "-q", "src/test/java/WidgetTest.java"));
+        assertTrue(git("commit", "-q", "-a", "-m", "head"));
+
+        GitChangeSet changes = GitChangeSet.between(repository.resolve("src").toFile(), "HEAD~1..HEAD");
+
+        assertEquals(2, changes.size());
+        // git reports the repository with symbolic links resolved
+        Path root = repository.toRealPath();
+        String testDirectory = root.resolve("src/test/java").toString();
+        assertTrue(changes.affects(new TestFile("app", testDirectory + "/CalculatorTest.java", root.resolve("src/main/java/Calculator.java").toString())));
+        assertTrue(changes.contains(testDirectory + "/WidgetTest.java"));
+        assertThrows(IOException.class, () -> GitChangeSet.between(repository.toFile(), "HEAD~5..HEAD"));
+        assertThrows(IllegalArgumentException.class, () -> GitChangeSet.between(repository.toFile(), "--output=x"));
+    }
+}
@@ -0,0 +1,132 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalResultsTest {
+
+    private static final List<String> COLUMN_NAMES = Arrays.asList("App", "TestClass", "TestMethod", "TestFilePath", "ProductionFilePath", "Sleepy Test");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Collects the rows written by the incremental results
+     */
+    private static class RecordingSink implements ResultsSink {
+        List<String> columnNames;
+        final List<List<String>> rows = new ArrayList<>();
+
+        @Override
+        public void writeColumnName(List<String> columnNames) {
+            this.columnNames = columnNames;
+        }
+
+        @Override
+        public void writeLine(List<String> columnValues) {
+            rows.add(columnValues);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private String path(String name) {
+        return tempDir.resolve(name).toString();
+    }
+
+    private static List<String> row(String testFilePath, String testMethod, String sleepyTest) {
+        return Arrays.asList("app", testFilePath.substring(testFilePath.lastIndexOf('/') + 1), testMethod, testFilePath, "", sleepyTest);
+    }
+
+    private Path writeBaseline(List<String> header, List<List<String>> rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.join(",", header));
+        for (List<String> columnValues : rows) {
+            lines.add(String.join(",", columnValues));
+        }
+        Path baseline = tempDir.resolve("baseline.csv");
+        Files.write(baseline, lines, Charset.defaultCharset());
+        return baseline;
+    }
+
+    @Test
+    public void testAnalyzedFilesAreMergedOverTheBaseline() throws IOException {
+        String changed = path("ChangedTest.java");
+        String deleted = path("DeletedTest.java");
+        String unchanged = path("UnchangedTest.java");
+        String added = path("AddedTest.java");
+        Files.createFile(tempDir.resolve("ChangedTest.java"));
+        Files.createFile(tempDir.resolve("UnchangedTest.java"));
+        Files.createFile(tempDir.resolve("AddedTest.java"));
+        Path baseline = writeBaseline(COLUMN_NAMES, Arrays.asList(
+                row(changed, "", "false"),
+                row(changed, "testAdd", "false"),
+                row(deleted, "", "false"),
+                row(unchanged, "", "true"),
+                row(unchanged, "testWait", "true")));
+        GitChangeSet changes = new GitChangeSet(tempDir.toFile(), Arrays.asList("ChangedTest.java", "DeletedTest.java", "AddedTest.java"));
+        IncrementalResults results = new IncrementalResults(changes, baseline.toString());
+
+        Iterator<TestFile> selected = results.select(Arrays.asList(
+                new TestFile("app", changed, ""),
+                new TestFile("app", deleted, ""),
+                new TestFile("app", unchanged, ""),
+                new TestFile("app", added, "")).iterator());
+        assertEquals(changed, selected.next().getTestFilePath());
+        assertEquals(added, selected.next().getTestFilePath());
+        assertFalse(selected.hasNext());
+
+        results.add(Arrays.asList(row(added, "", "false")));
+        results.add(Arrays.asList(row(changed, "", "true"), row(changed, "testSleep", "true")));
+        assertEquals(2, results.getAnalyzedFileCount());
+        RecordingSink sink = new RecordingSink();
+        results.write(sink, COLUMN_NAMES);
+
+        assertEquals(COLUMN_NAMES, sink.columnNames);
+        assertEquals(Arrays.asList(
+                row(changed, "", "true"),
+                row(changed, "testSleep", "true"),
+                row(unchanged, "", "true"),
+                row(unchanged, "testWait", "true"),
+                row(added, "", "false")), sink.rows);
+    }
+
+    @Test
+    public void testBaselineWithOtherColumnsIsRejected() throws IOException {
+        Path baseline = writeBaseline(COLUMN_NAMES.subList(0, 5), Collections.emptyList());
+        IncrementalResults results = new IncrementalResults(new GitChangeSet(tempDir.toFile(), Collections.emptyList()), baseline.toString());
+
+        assertThrows(IOException.class, () -> results.write(new RecordingSink(), COLUMN_NAMES));
+    }
+
+    @Test
+    public void testBaselineRowsThatCannotBeSplitAreSkipped() throws IOException {
+        String unchanged = path("UnchangedTest.java");
+        Path baseline = writeBaseline(COLUMN_NAMES, Arrays.asList(
+                row(path("with,comma/OtherTest.java"), "", "false"),
+                row(unchanged, "", "false")));
+        IncrementalResults results = new IncrementalResults(new GitChangeSet(tempDir.toFile(), Collections.emptyList()), baseline.toString());
+        RecordingSink sink = new RecordingSink();
+        results.write(sink, COLUMN_NAMES);
+
+        assertEquals(Collections.singletonList(row(unchanged, "", "false")), sink.rows);
+    }
+}
@@ -0,0 +1,37 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLinesEncoderTest {
+
+    private static final List<String> COLUMN_NAMES = Arrays.asList("App", "TestClass", "TestMethod", "TestFilePath",
+            "ProductionFilePath", "RelativeTestFilePath", "RelativeProductionFilePath", "Sleepy Test", "Eager Test",
+            "AssertCount", "ThreadSleepCount");
+
+    @Test
+    public void testRowsAreEncodedAsTypedMembers() throws IOException {
+        JsonLinesEncoder encoder = new JsonLinesEncoder(COLUMN_NAMES);
+        StringWriter output = new StringWriter();
+
+        encoder.write(output, Arrays.asList("app", "ATest.java", "", "/src/a,b/\"ATest\".java", "", "a\\b", "", "true", "", "", ""));
+        encoder.write(output, Arrays.asList("app", "ATest.java", "testA", "p", "q\n", "", "", "false", "true", "3", ""));
+
+        String[] lines = output.toString().split("\n", -1);
+        assertEquals(3, lines.length);
+        assertEquals("{\"type\":\"class\",\"app\":\"app\",\"testClass\":\"ATest.java\",\"testMethod\":\"\"," +
+                "\"testFilePath\":\"/src/a,b/\\\"ATest\\\".java\",\"productionFilePath\":\"\",\"relativeTestFilePath\":\"a\\\\b\"," +
+                "\"relativeProductionFilePath\":\"\",\"smells\":{\"Sleepy Test\":true,\"Eager Test\":null}}", lines[0]);
+        assertEquals("{\"type\":\"method\",\"app\":\"app\",\"testClass\":\"ATest.java\",\"testMethod\":\"testA\"," +
+                "\"testFilePath\":\"p\",\"productionFilePath\":\"q\\n\",\"relativeTestFilePath\":\"\"," +
+                "\"relativeProductionFilePath\":\"\",\"smells\":{\"Sleepy Test\":false,\"Eager Test\":true}," +
+                "\"metrics\":{\"AssertCount\":3}}", lines[1]);
+        assertEquals("", lines[2]);
+    }
+}
@@ -0,0 +1,32 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManifestReaderTest {
+
+    @Test
+    public void testReadsLinesWithAndWithoutProductionFile() {
+        ManifestReader reader = new ManifestReader(new StringReader(
+                "app,/a/FooTest.java,/a/Foo.java\n\napp,/a/BarTest.java\napp,/a/BazTest.java,\n"));
+
+        TestFile foo = reader.next();
+        assertEquals("app", foo.getApp());
+        assertEquals("/a/FooTest.java", foo.getTestFilePath());
+        assertEquals("/a/Foo.java", foo.getProductionFilePath());
+        assertFalse(reader.next().getHasProductionFile());
+        assertFalse(reader.next().getHasProductionFile());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testLineWithoutTestFileIsRejected() {
+        ManifestReader reader = new ManifestReader(new StringReader("app\n"));
+
+        assertThrows(UncheckedIOException.class, reader::hasNext);
+    }
+}
@@ -0,0 +1,102 @@
+package testsmell;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductionFileCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String writeClass(String name, String body) throws IOException {
+        Path file = tempDir.resolve(name + ".java");
+        Files.write(file, ("public class " + name + " { " + body + " }").getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    @Test
+    public void testRepeatedLookupIsAHit() throws IOException {
+        String path = writeClass("Foo", "public void bar() {}");
+        ProductionFileCache cache = new ProductionFileCache(1024 * 1024);
+
+        CompilationUnit first = cache.getCompilationUnit(path);
+        CompilationUnit second = cache.getCompilationUnit(path);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testModifiedFileIsParsedAgain() throws IOException {
+        String path = writeClass("Foo", "public void bar() {}");
+        ProductionFileCache cache = new ProductionFileCache(1024 * 1024);
+        CompilationUnit first = cache.getCompilationUnit(path);
+
+        writeClass("Foo", "public void bar() {} public void baz() {}");
+        new File(path).setLastModified(System.currentTimeMillis() + 10_000);
+        CompilationUnit second = cache.getCompilationUnit(path);
+
+        assertNotSame(first, second);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+        String foo = writeClass("Foo", "public void bar() {}");
+        String baz = writeClass("Baz", "public void bar() {}");
+        String qux = writeClass("Qux", "public void bar() {}");
+        // room for two of the three files
+        ProductionFileCache cache = new ProductionFileCache(new File(foo).length() * 10 * 2);
+
+        cache.getCompilationUnit(foo);
+        cache.getCompilationUnit(baz);
+        cache.getCompilationUnit(foo);
+        cache.getCompilationUnit(qux);
+        cache.getCompilationUnit(foo);
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testDisabledCacheKeepsNothing() throws IOException {
+        String path = writeClass("Foo", "public void bar() {}");
+        ProductionFileCache cache = new ProductionFileCache(0);
+
+        cache.getCompilationUnit(path);
+        cache.getCompilationUnit(path);
+
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testMethodIndexIsSharedByCachedFile() throws IOException {
+        String path = writeClass("Foo", "public void bar() {} public int bar(int a) { return a; } protected void baz(int a, int b) {} private void qux() {}");
+        ProductionFileCache cache = new ProductionFileCache(1024 * 1024);
+        CompilationUnit compilationUnit = cache.getCompilationUnit(path);
+
+        ProductionMethodIndex index = cache.getProductionMethodIndex(path, compilationUnit);
+
+        assertSame(index, cache.getProductionMethodIndex(path, cache.getCompilationUnit(path)));
+        assertEquals("Foo", index.getProductionClassName());
+        assertTrue(index.contains("bar", 0));
+        assertTrue(index.contains("bar", 1));
+        assertTrue(index.contains("baz", 2));
+        assertFalse(index.contains("baz", 1));
+        assertFalse(index.contains("qux", 0));
+        assertEquals(3, index.size());
+    }
+}
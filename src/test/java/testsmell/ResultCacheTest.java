@@ -0,0 +1,147 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private static final List<List<String>> RESULT = Arrays.asList(
+            Arrays.asList("", "true", "false", ""),
+            Arrays.asList("testAdd", "false", "true", "false"));
+
+    @TempDir
+    Path tempDir;
+
+    private TestFile write(String name, String source) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return new TestFile("app", file.toString(), "");
+    }
+
+    private ResultCache open(File file, long maxBytes, ResultCache.Mode mode) throws IOException {
+        return new ResultCache(file, maxBytes, mode, "1:smells");
+    }
+
+    @Test
+    public void testResultsArePersistedByNameAndContents() throws IOException {
+        File cacheFile = tempDir.resolve("results.cache").toFile();
+        TestFile testFile = write("ATest.java", "class ATest {}");
+        Files.createDirectories(tempDir.resolve("other"));
+        TestFile sameContents = write("other/ATest.java", "class ATest {}");
+        TestFile otherName = write("BTest.java", "class ATest {}");
+        TestFile otherContents = write("CTest.java", "class CTest {}");
+
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            assertNull(cache.get(cache.computeKey(testFile)));
+            cache.put(cache.computeKey(testFile), RESULT);
+        }
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            assertEquals(RESULT, cache.get(cache.computeKey(sameContents)));
+            // the detectors compare the name of the test file with its class
+            assertNull(cache.get(cache.computeKey(otherName)));
+            assertNull(cache.get(cache.computeKey(otherContents)));
+        }
+        try (ResultCache cache = new ResultCache(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE, "2:smells")) {
+            assertNull(cache.get(cache.computeKey(testFile)));
+        }
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.REBUILD)) {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testCutOffRecordIsDiscarded() throws IOException {
+        File cacheFile = tempDir.resolve("results.cache").toFile();
+        TestFile first = write("ATest.java", "class ATest {}");
+        TestFile second = write("BTest.java", "class BTest {}");
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            cache.put(cache.computeKey(first), RESULT);
+            cache.put(cache.computeKey(second), RESULT);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            assertEquals(1, cache.size());
+            assertEquals(RESULT, cache.get(cache.computeKey(first)));
+            assertNull(cache.get(cache.computeKey(second)));
+            cache.put(cache.computeKey(second), Collections.singletonList(Collections.singletonList("")));
+        }
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            assertEquals(2, cache.size());
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        File cacheFile = tempDir.resolve("results.cache").toFile();
+        TestFile[] testFiles = new TestFile[10];
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            for (int i = 0; i < testFiles.length; i++) {
+                testFiles[i] = write("Test" + i + ".java", "class Test" + i + " {}");
+                cache.put(cache.computeKey(testFiles[i]), RESULT);
+            }
+        }
+        long recordBytes = (cacheFile.length() - 8) / testFiles.length;
+
+        try (ResultCache cache = open(cacheFile, 16 + recordBytes * 4, ResultCache.Mode.USE)) {
+            assertNotNull(cache.get(cache.computeKey(testFiles[0])));
+        }
+
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            assertEquals(3, cache.size());
+            assertNotNull(cache.get(cache.computeKey(testFiles[0])));
+            assertNotNull(cache.get(cache.computeKey(testFiles[9])));
+            assertNull(cache.get(cache.computeKey(testFiles[1])));
+        }
+    }
+
+    @Test
+    public void testCacheIsCompactedWhileResultsAreStored() throws IOException {
+        File cacheFile = tempDir.resolve("results.cache").toFile();
+        TestFile testFile = write("ATest.java", "class ATest {}");
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            cache.put(cache.computeKey(testFile), RESULT);
+        }
+        long maxBytes = cacheFile.length() + (cacheFile.length() - 8) * 3;
+
+        TestFile[] testFiles = new TestFile[10];
+        try (ResultCache cache = open(cacheFile, maxBytes, ResultCache.Mode.USE)) {
+            // storing the result of the same test file again appends a record
+            for (int i = 0; i < 20; i++) {
+                cache.put(cache.computeKey(testFile), RESULT);
+                assertTrue(cacheFile.length() <= maxBytes);
+            }
+            assertEquals(1, cache.size());
+            assertEquals(RESULT, cache.get(cache.computeKey(testFile)));
+
+            for (int i = 0; i < testFiles.length; i++) {
+                testFiles[i] = write("Test" + i + ".java", "class Test" + i + " {}");
+                cache.put(cache.computeKey(testFiles[i]), RESULT);
+                assertTrue(cacheFile.length() <= maxBytes);
+                assertEquals(RESULT, cache.get(cache.computeKey(testFiles[i])));
+            }
+            assertNull(cache.get(cache.computeKey(testFile)));
+            assertEquals(RESULT, cache.get(cache.computeKey(testFiles[8])));
+        }
+
+        try (ResultCache cache = open(cacheFile, Long.MAX_VALUE, ResultCache.Mode.USE)) {
+            assertEquals(RESULT, cache.get(cache.computeKey(testFiles[8])));
+            assertEquals(RESULT, cache.get(cache.computeKey(testFiles[9])));
+            assertNull(cache.get(cache.computeKey(testFiles[0])));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultsWriterTest {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /**
+     * Larger than the output of the tests; the threshold is also the size of the buffer
+     */
+    private static final int LARGE_THRESHOLD = 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private ResultsWriter open(ResultsWriter.Format format, int flushThreshold, long flushIntervalMillis, boolean async) throws IOException {
+        return new ResultsWriter(tempDir.resolve("results." + format.name().toLowerCase()).toString(), format, flushThreshold,
+                flushIntervalMillis, async, Instrumentation.DISABLED);
+    }
+
+    private static List<String> readLines(ResultsWriter resultsWriter) throws IOException {
+        return Files.readAllLines(new File(resultsWriter.getOutputFile()).toPath(), Charset.defaultCharset());
+    }
+
+    @Test
+    public void testOutputIsFlushedOnceTheThresholdIsReached() throws IOException {
+        try (ResultsWriter resultsWriter = open(ResultsWriter.Format.CSV, 100, HOUR_MILLIS, false)) {
+            resultsWriter.writeColumnName(Arrays.asList("App", "TestClass"));
+            resultsWriter.writeLine(Arrays.asList("app", "ATest.java"));
+            assertEquals(0, new File(resultsWriter.getOutputFile()).length());
+
+            for (int i = 0; i < 10; i++) {
+                resultsWriter.writeLine(Arrays.asList("app", "Test" + i + ".java"));
+            }
+            // the seventh line reaches 100 characters and is flushed with the lines before it; later lines are buffered
+            assertEquals(7, readLines(resultsWriter).size());
+        }
+    }
+
+    @Test
+    public void testOutputIsFlushedOnceTheIntervalPassed() throws IOException, InterruptedException {
+        try (ResultsWriter resultsWriter = open(ResultsWriter.Format.CSV, LARGE_THRESHOLD, 50, false)) {
+            resultsWriter.writeColumnName(Arrays.asList("App", "TestClass"));
+            Thread.sleep(100);
+            resultsWriter.writeLine(Arrays.asList("app", "ATest.java"));
+            assertEquals(Arrays.asList("App,TestClass", "app,ATest.java"), readLines(resultsWriter));
+        }
+
+        // the writer thread flushes without further rows
+        try (ResultsWriter resultsWriter = open(ResultsWriter.Format.CSV, LARGE_THRESHOLD, 50, true)) {
+            resultsWriter.writeColumnName(Arrays.asList("App", "TestClass"));
+            resultsWriter.writeLine(Arrays.asList("app", "ATest.java"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (readLines(resultsWriter).size() < 2) {
+                assertTrue(System.nanoTime() < deadline, "the output was not flushed");
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void testClosingDrainsTheQueueOfTheWriterThread() throws IOException {
+        List<String> expected = new ArrayList<>();
+        ResultsWriter resultsWriter = open(ResultsWriter.Format.CSV, LARGE_THRESHOLD, HOUR_MILLIS, true);
+        resultsWriter.writeColumnName(Arrays.asList("App", "TestClass"));
+        expected.add("App,TestClass");
+        // more rows than the queue holds
+        for (int i = 0; i < 10_000; i++) {
+            resultsWriter.writeLine(Arrays.asList("app", "Test" + i + ".java"));
+            expected.add("app,Test" + i + ".java");
+        }
+        resultsWriter.close();
+
+        assertEquals(expected, readLines(resultsWriter));
+        IOException closed = assertThrows(IOException.class, () -> resultsWriter.writeLine(Arrays.asList("app", "BTest.java")));
+        assertEquals("The results writer is closed", closed.getMessage());
+        resultsWriter.flush();
+    }
+
+    @Test
+    public void testRowsAfterCloseAreRejected() throws IOException {
+        ResultsWriter resultsWriter = open(ResultsWriter.Format.CSV, LARGE_THRESHOLD, HOUR_MILLIS, false);
+        resultsWriter.close();
+
+        assertThrows(IOException.class, () -> resultsWriter.writeLine(Arrays.asList("app", "ATest.java")));
+    }
+
+    @Test
+    public void testFailureOfTheWriterThreadIsReported() throws IOException, InterruptedException {
+        ResultsWriter resultsWriter = open(ResultsWriter.Format.JSONL, LARGE_THRESHOLD, HOUR_MILLIS, true);
+        // JSON Lines rows cannot be written before the column names, which fails on the writer thread
+        resultsWriter.writeLine(Arrays.asList("app", "ATest.java"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        IOException failure = null;
+        while (failure == null) {
+            assertTrue(System.nanoTime() < deadline, "the failure was not reported");
+            try {
+                resultsWriter.writeLine(Arrays.asList("app", "BTest.java"));
+                Thread.sleep(10);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        assertEquals("The column names must be written before the rows", failure.getCause().getMessage());
+        assertThrows(IOException.class, resultsWriter::close);
+    }
+}
@@ -0,0 +1,36 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmellTableTest {
+
+    @Test
+    public void testCellsAreTrueFalseOrUnknown() {
+        SmellTable table = new SmellTable(70);
+        for (int i = 0; i < 10; i++) {
+            table.getRow("test" + i);
+        }
+        int row = table.getRow("test3");
+        table.set(row, 0, true);
+        table.set(row, 65, true);
+        table.set(row, 69, false);
+        table.set(row, 0, false);
+
+        assertEquals(10, table.getRowCount());
+        assertEquals("test3", table.getElementName(row));
+        List<String> columnValues = new ArrayList<>();
+        table.appendValues(row, columnValues);
+        assertEquals(70, columnValues.size());
+        assertEquals("false", columnValues.get(0));
+        assertEquals("", columnValues.get(1));
+        assertEquals("", columnValues.get(64));
+        assertEquals("true", columnValues.get(65));
+        assertEquals("false", columnValues.get(69));
+        assertFalse(table.isKnown(table.getRow("test4"), 65));
+    }
+}
@@ -0,0 +1,243 @@
+package testsmell;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmellTraversalTest {
+
+    private static final String PRODUCTION_SOURCE = "package com.ex;\n" +
+            "public class Calculator {\n" +
+            "    public int add(int a, int b) { return a + b; }\n" +
+            "    public int sub(int a, int b) { return a - b; }\n" +
+            "    public int mul(int a, int b) { return a * b; }\n" +
+            "}\n";
+
+    /**
+     * Exercises nested, inner and anonymous classes, methods whose subtrees some detectors skip, and most node types
+     */
+    private static final String TEST_SOURCE = "package com.ex;\n" +
+            "import java.io.File;\n" +
+            "import org.junit.*;\n" +
+            "import static org.junit.Assert.*;\n" +
+            "public class CalculatorTest {\n" +
+            "    private Calculator calculator;\n" +
+            "    private int unused = 42;\n" +
+            "    public CalculatorTest() { calculator = new Calculator(); }\n" +
+            "    @Before\n" +
+            "    public void setUp() { calculator = new Calculator(); unused = 7; }\n" +
+            "    @Test\n" +
+            "    public void testAdd() throws Exception {\n" +
+            "        assertEquals(3, calculator.add(1, 2));\n" +
+            "        assertEquals(3, calculator.add(1, 2));\n" +
+            "        assertTrue(calculator.sub(2, 1) == 1);\n" +
+            "        Thread.sleep(10);\n" +
+            "        System.out.println(calculator.mul(2, 3));\n" +
+            "    }\n" +
+            "    @Test\n" +
+            "    public void testLoops() {\n" +
+            "        for (int i = 0; i < 3; i++) { if (i > 1) { assertNotNull(calculator); } }\n" +
+            "        for (String s : new String[]{\"a\"}) { while (s.isEmpty()) { fail(); } }\n" +
+            "        switch (calculator.add(1, 1)) { case 2: assertTrue(true); break; default: fail(); }\n" +
+            "        int x = calculator.sub(5, 3) > 0 ? 1 : 2;\n" +
+            "        assertEquals(\"1\", String.valueOf(x));\n" +
+            "        assertEquals(calculator.toString(), \"\" + calculator);\n" +
+            "    }\n" +
+            "    @Test\n" +
+            "    public void testAnonymous() {\n" +
+            "        Runnable runnable = new Runnable() {\n" +
+            "            @Override\n" +
+            "            public void run() {\n" +
+            "                assertEquals(4, calculator.mul(2, 2));\n" +
+            "                try { new File(\"data.txt\").exists(); } catch (RuntimeException e) { throw e; }\n" +
+            "            }\n" +
+            "        };\n" +
+            "        runnable.run();\n" +
+            "    }\n" +
+            "    @Test\n" +
+            "    public void testEmpty() {\n" +
+            "    }\n" +
+            "    @Ignore\n" +
+            "    @Test\n" +
+            "    public void testIgnored() { assertEquals(1, 1); }\n" +
+            "    @Test\n" +
+            "    public void testFile() throws Exception {\n" +
+            "        File file = new File(\"input.txt\");\n" +
+            "        try { file.createNewFile(); } catch (java.io.IOException e) { fail(e.getMessage()); }\n" +
+            "    }\n" +
+            "    public void testWithoutAnnotation() { helperCheck(calculator.add(1, 1)); }\n" +
+            "    private void helperCheck(int value) { assertEquals(2, value); System.out.println(value); }\n" +
+            "    public static class Nested {\n" +
+            "        @Test\n" +
+            "        public void testNested() { assertEquals(2, new Calculator().add(1, 1)); }\n" +
+            "    }\n" +
+            "    public class Muted {\n" +
+            "        public void testInner() { Thread.yield(); assertFalse(false); }\n" +
+            "    }\n" +
+            "    enum Mode { ADD, SUB }\n" +
+            "}\n";
+
+    private static AnalysisSession openSession() {
+        TestFile testFile = new TestFile("app", "CalculatorTest.java", "Calculator.java");
+        return AnalysisSession.fromSource(testFile, TEST_SOURCE, PRODUCTION_SOURCE, Instrumentation.DISABLED);
+    }
+
+    private static String summarize(SmellResult result) {
+        return result.getSmellName() + "=" + result.isApplicable() + "/" + result.getHasSmell() + result.getSmellyElements().stream()
+                .map(x -> x.getElementName() + ":" + x.getHasSmell() + x.getData())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Records the nodes it observes; skips the children of helper methods and of the class Muted
+     */
+    private static class RecordingVisitor extends SmellVisitor {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public boolean visit(ClassOrInterfaceDeclaration n) {
+            events.add("class " + n.getNameAsString());
+            return !n.getNameAsString().equals("Muted");
+        }
+
+        @Override
+        public void leave(ClassOrInterfaceDeclaration n) {
+            events.add("leave class " + n.getNameAsString());
+        }
+
+        @Override
+        public boolean visit(MethodDeclaration n) {
+            events.add("method " + n.getNameAsString());
+            return !n.getNameAsString().startsWith("helper");
+        }
+
+        @Override
+        public boolean visit(MethodCallExpr n) {
+            events.add("call " + n.getNameAsString());
+            return true;
+        }
+
+        @Override
+        public void leave(MethodCallExpr n) {
+            events.add("leave call " + n.getNameAsString());
+        }
+
+        @Override
+        public boolean visit(ObjectCreationExpr n) {
+            events.add("new " + n.getType().getNameAsString());
+            return true;
+        }
+    }
+
+    /**
+     * The {@code VoidVisitorAdapter} equivalent of {@link RecordingVisitor}
+     */
+    private static class RecordingAdapter extends VoidVisitorAdapter<Void> {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+            events.add("class " + n.getNameAsString());
+            if (!n.getNameAsString().equals("Muted")) {
+                super.visit(n, arg);
+                events.add("leave class " + n.getNameAsString());
+            }
+        }
+
+        @Override
+        public void visit(MethodDeclaration n, Void arg) {
+            events.add("method " + n.getNameAsString());
+            if (!n.getNameAsString().startsWith("helper")) {
+                super.visit(n, arg);
+            }
+        }
+
+        @Override
+        public void visit(MethodCallExpr n, Void arg) {
+            events.add("call " + n.getNameAsString());
+            super.visit(n, arg);
+            events.add("leave call " + n.getNameAsString());
+        }
+
+        @Override
+        public void visit(ObjectCreationExpr n, Void arg) {
+            events.add("new " + n.getType().getNameAsString());
+            super.visit(n, arg);
+        }
+    }
+
+    @Test
+    public void testVisitorObservesTheNodesOfAnAdapter() {
+        CompilationUnit compilationUnit = JavaParser.parse(TEST_SOURCE);
+        RecordingAdapter adapter = new RecordingAdapter();
+        adapter.visit(compilationUnit, null);
+        RecordingVisitor visitor = new RecordingVisitor();
+
+        SmellTraversal.traverse(compilationUnit, Collections.singletonList(visitor));
+
+        assertEquals(adapter.events, visitor.events);
+        assertTrue(visitor.events.contains("new Runnable"));
+        assertFalse(visitor.events.contains("method testInner"));
+    }
+
+    @Test
+    public void testFusedDetectorsAgreeWithStandaloneDetectors() throws IOException {
+        List<AbstractSmell> smells = new TestSmellDetector().getTestSmellsClassLevel();
+        List<String> standalone = new ArrayList<>();
+        for (AbstractSmell smell : smells) {
+            try (AnalysisSession session = openSession()) {
+                standalone.add(summarize(smell.analyze(session)));
+            }
+        }
+        RecordingAdapter adapter = new RecordingAdapter();
+        adapter.visit(JavaParser.parse(TEST_SOURCE), null);
+
+        // more visitors than a traversal dispatches at once, and visitors that skip subtrees among them in every batch
+        int copies = 4;
+        assertTrue(smells.size() * copies > 64);
+        try (AnalysisSession session = openSession()) {
+            List<SmellVisitor> visitors = new ArrayList<>();
+            List<AbstractSmell> visitorSmells = new ArrayList<>();
+            List<RecordingVisitor> recordingVisitors = new ArrayList<>();
+            for (int copy = 0; copy < copies; copy++) {
+                RecordingVisitor recordingVisitor = new RecordingVisitor();
+                recordingVisitors.add(recordingVisitor);
+                visitors.add(recordingVisitor);
+                visitorSmells.add(null);
+                for (AbstractSmell smell : smells) {
+                    try {
+                        visitors.add(smell.createVisitor(session));
+                        visitorSmells.add(smell);
+                    } catch (FileNotFoundException e) {
+                        fail(smell.getSmellName() + " is not applicable");
+                    }
+                }
+            }
+            SmellTraversal.traverse(session.getTestFileCompilationUnit(), visitors);
+
+            for (int copy = 0; copy < copies; copy++) {
+                List<String> fused = new ArrayList<>();
+                for (int i = 0; i < smells.size(); i++) {
+                    int index = copy * (smells.size() + 1) + 1 + i;
+                    fused.add(summarize(visitorSmells.get(index).getResult(visitors.get(index))));
+                }
+                assertEquals(standalone, fused, "copy " + copy);
+                assertEquals(adapter.events, recordingVisitors.get(copy).events, "copy " + copy);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceCrawlerTest {
+
+    @TempDir
+    Path app;
+
+    private Path write(String path, String source) throws IOException {
+        Path file = app.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testTestFilesArePairedWithTheirProductionFiles() throws IOException {
+        Path calculator = write("src/main/java/com/ex/Calculator.java", "package com.ex;\npublic class Calculator {\n    public int add(int a, int b) {\n        return a + b;\n    }\n}");
+        Path widget = write("src/main/java/com/ex/ui/Widget.java", "package com.ex.ui;\npublic class Widget {}");
+        write("src/main/java/com/ex/other/Widget.java", "package com.ex.other;\npublic class Widget {}");
+        Path parser = write("src/main/java/com/ex/Parser.java", "package com.ex;\npublic class Parser {}");
+        Path calculatorTest = write("src/test/java/com/ex/CalculatorTest.java", "package com.ex;\npublic class CalculatorTest {\n    @Ignore @Test(timeout = 10)\n    public void add() {}\n}");
+        Path widgetTest = write("src/test/java/com/ex/ui/WidgetTests.java", "package com.ex.ui;\npublic class WidgetTests extends TestCase {\n    public void testSize() {}\n}");
+        Path parserTest = write("src/test/java/com/ex/TestParser.java", "package com.ex;\npublic class TestParser {\n    public static void testParse() throws Exception {}\n}");
+        Path widgetTestOther = write("src/test/java/com/ex/WidgetTest.java", "package com.ex;\npublic class WidgetTest {\n    public void testOther() {}\n}");
+        write("src/test/java/com/ex/TestUtils.java", "package com.ex;\npublic class TestUtils {\n    public TestUtils() {}\n    void testHelper() {}\n}");
+        // like Util.isTestMethod, test methods must be public
+        write("src/test/java/com/ex/ParserTests.java", "package com.ex;\nclass ParserTests {\n    @Test\n    void parse() {}\n}");
+
+        List<TestFile> testFiles = new SourceCrawler(Collections.singletonList(app)).discover();
+
+        Map<String, String> productionFiles = new HashMap<>();
+        for (TestFile testFile : testFiles) {
+            assertEquals(app.getFileName().toString(), testFile.getApp());
+            productionFiles.put(testFile.getTestFilePath(), testFile.getProductionFilePath());
+        }
+        assertEquals(4, productionFiles.size());
+        assertEquals(calculator.toString(), productionFiles.get(calculatorTest.toString()));
+        assertEquals(widget.toString(), productionFiles.get(widgetTest.toString()));
+        assertEquals(parser.toString(), productionFiles.get(parserTest.toString()));
+        assertEquals("", productionFiles.get(widgetTestOther.toString()));
+    }
+}
@@ -0,0 +1,104 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceWatcherTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Collects the rows written by the watcher
+     */
+    private static class RecordingSink implements ResultsSink {
+        final BlockingQueue<List<String>> rows = new LinkedBlockingQueue<>();
+
+        @Override
+        public void writeColumnName(List<String> columnNames) {
+        }
+
+        @Override
+        public void writeLine(List<String> columnValues) {
+            rows.add(columnValues);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        List<String> next() throws InterruptedException {
+            List<String> row = rows.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(row, "no row was written");
+            return row;
+        }
+    }
+
+    private static String testSource(String className, String body) {
+        return "package com.ex;\n" +
+                "import org.junit.Test;\n" +
+                "public class " + className + " {\n" +
+                "    @Test\n" +
+                "    public void testAdd() throws Exception {\n" +
+                "        " + body + "\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    @Test
+    public void testChangedAndCreatedTestFilesAreAnalyzedAgain() throws Exception {
+        Path directory = tempDir.resolve("app/src/test/java/com/ex");
+        Files.createDirectories(directory);
+        Path testFile = directory.resolve("CalculatorTest.java");
+        Files.write(testFile, testSource("CalculatorTest", "org.junit.Assert.assertEquals(2, 1 + 1);").getBytes(StandardCharsets.UTF_8));
+
+        TestSmellDetector detector = new TestSmellDetector(new ProductionFileCache(1024 * 1024));
+        TestFileAnalyzer analyzer = new TestFileAnalyzer(detector);
+        int sleepyTest = TestFileAnalyzer.FILE_COLUMNS + detector.getTestSmellNames().indexOf("Sleepy Test");
+        RecordingSink sink = new RecordingSink();
+        SourceWatcher watcher = new SourceWatcher(Collections.singletonList(tempDir.resolve("app")), analyzer, 20);
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.run(sink);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        try {
+            assertEquals("false", sink.next().get(sleepyTest));
+            assertEquals("testAdd", sink.next().get(2));
+
+            Files.write(testFile, testSource("CalculatorTest", "Thread.sleep(10);").getBytes(StandardCharsets.UTF_8));
+            List<String> classRow = sink.next();
+            assertEquals(testFile.toString(), classRow.get(3));
+            assertEquals("true", classRow.get(sleepyTest));
+            sink.next();
+
+            Files.write(directory.resolve("WidgetTest.java"), testSource("WidgetTest", "").getBytes(StandardCharsets.UTF_8));
+            assertEquals("WidgetTest.java", sink.next().get(1));
+        } finally {
+            watcher.close();
+            thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        }
+        assertFalse(thread.isAlive());
+    }
+}
@@ -0,0 +1,207 @@
+package testsmell;
+
+import com.github.javaparser.JavaParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSmellDetectorTest {
+
+    private static final String PRODUCTION_SOURCE = "public class Calculator {\n" +
+            "    public int add(int a, int b) { return a + b; }\n" +
+            "    public int sub(int a, int b) { return a - b; }\n" +
+            "}\n";
+
+    private static final String TEST_SOURCE = "import org.junit.Test;\n" +
+            "import static org.junit.Assert.*;\n" +
+            "public class CalculatorTest {\n" +
+            "    @Test\n" +
+            "    public void testBoth() {\n" +
+            "        Calculator calculator = new Calculator();\n" +
+            "        assertEquals(3, calculator.add(1, 2));\n" +
+            "        assertEquals(1, calculator.sub(2, 1));\n" +
+            "    }\n" +
+            "    @Test\n" +
+            "    public void testAdd() {\n" +
+            "        Calculator calculator = new Calculator();\n" +
+            "        if (calculator.add(1, 1) == calculator.add(0, 2)) { System.out.println(\"ok\"); }\n" +
+            "    }\n" +
+            "}\n";
+
+    @TempDir
+    Path tempDir;
+
+    private String write(String name, String source) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    private static SmellResult find(TestFile testFile, String smellName) {
+        return testFile.getTestSmells().stream().filter(x -> x.getSmellName().equals(smellName)).findFirst().get();
+    }
+
+    private static List<String> summarize(TestFile testFile) {
+        return summarize(testFile.getTestSmells());
+    }
+
+    private static List<String> summarize(List<SmellResult> smells) {
+        return smells.stream()
+                .map(x -> x.getSmellName() + "=" + x.getHasSmell() + x.getSmellyElements().stream()
+                        .map(y -> y.getElementName() + ":" + y.getHasSmell()).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testDetectorsCanBeReused() throws IOException {
+        String productionFile = write("Calculator.java", PRODUCTION_SOURCE);
+        String testFile = write("CalculatorTest.java", TEST_SOURCE);
+        TestSmellDetector detector = new TestSmellDetector();
+
+        TestFile first = detector.detectSmellsMethodLevel(new TestFile("app", testFile, productionFile));
+        TestFile second = detector.detectSmellsMethodLevel(new TestFile("app", testFile, productionFile));
+
+        assertEquals(summarize(first), summarize(second));
+        assertTrue(find(first, "Eager Test").getHasSmell());
+        assertTrue(find(first, "Conditional Test Logic").getHasSmell());
+        assertEquals(2, find(first, "Print Statement").getSmellyElements().size());
+        // both test methods call add(); each is reported once, however often it calls add()
+        assertEquals(2, find(first, "Lazy Test").getSmellyElements().size());
+    }
+
+    @Test
+    public void testSourcesInMemoryAreAnalyzedLikeFiles() throws IOException {
+        String productionFile = write("Calculator.java", PRODUCTION_SOURCE);
+        String testFile = write("CalculatorTest.java", TEST_SOURCE);
+        TestSmellDetector detector = new TestSmellDetector();
+        TestFile classLevel = detector.detectSmellsClassLevel(new TestFile("app", testFile, productionFile));
+        TestFile methodLevel = detector.detectSmellsMethodLevel(new TestFile("app", testFile, productionFile));
+
+        AnalysisResult fromSource = detector.analyzeSource("CalculatorTest.java", TEST_SOURCE, PRODUCTION_SOURCE);
+        AnalysisResult fromCompilationUnits = detector.analyzeSource("CalculatorTest.java",
+                JavaParser.parse(TEST_SOURCE), JavaParser.parse(PRODUCTION_SOURCE));
+
+        for (AnalysisResult result : Arrays.asList(fromSource, fromCompilationUnits)) {
+            assertEquals(summarize(classLevel), summarize(result.getClassLevelSmells()));
+            assertEquals(summarize(methodLevel), summarize(result.getMethodLevelSmells()));
+        }
+        assertTrue(fromSource.getClassLevelSmell("Eager Test").getHasSmell());
+        assertFalse(detector.analyzeSource("CalculatorTest.java", TEST_SOURCE, null).getClassLevelSmell("Eager Test").isApplicable());
+    }
+
+    @Test
+    public void testSmellsNeedingProductionFileAreNotApplicableWithoutIt() throws IOException {
+        String testFile = write("CalculatorTest.java", TEST_SOURCE);
+
+        TestFile result = new TestSmellDetector().detectSmellsClassLevel(new TestFile("app", testFile, ""));
+
+        assertFalse(find(result, "Eager Test").isApplicable());
+        assertFalse(find(result, "Lazy Test").isApplicable());
+        assertTrue(find(result, "Assertion Roulette").isApplicable());
+        assertTrue(find(result, "Eager Test").getSmellyElements().isEmpty());
+    }
+
+    @Test
+    public void testInstrumentationRecordsPhasesAndDetectors() throws IOException {
+        String productionFile = write("Calculator.java", PRODUCTION_SOURCE);
+        String testFile = write("CalculatorTest.java", TEST_SOURCE);
+        Instrumentation instrumentation = new Instrumentation();
+        TestSmellDetector detector = new TestSmellDetector(null, instrumentation);
+
+        TestFile result = detector.detectSmellsClassLevel(new TestFile("app", testFile, productionFile));
+        Path report = tempDir.resolve("metrics.csv");
+        instrumentation.writeReport(report.toString());
+
+        List<String> lines = Files.readAllLines(report);
+        assertTrue(lines.stream().anyMatch(x -> x.startsWith("phase,read,2,")));
+        assertTrue(lines.stream().anyMatch(x -> x.startsWith("phase,parse,2,")));
+        assertTrue(lines.stream().anyMatch(x -> x.startsWith("phase,detect,1,")));
+        for (SmellResult smell : result.getTestSmells()) {
+            assertTrue(lines.stream().anyMatch(x -> x.startsWith("detector," + smell.getSmellName() + ",1,")), smell.getSmellName());
+        }
+    }
+
+    @Test
+    public void testPassesOverOneSessionParseEachFileOnce() throws IOException {
+        String productionFile = write("Calculator.java", PRODUCTION_SOURCE);
+        String testFile = write("CalculatorTest.java", TEST_SOURCE);
+        Instrumentation instrumentation = new Instrumentation();
+        TestSmellDetector detector = new TestSmellDetector(null, instrumentation);
+
+        AnalysisSession session = detector.openSession(new TestFile("app", testFile, productionFile));
+        try {
+            detector.detectSmellsClassLevel(session);
+            detector.detectSmellsMethodLevel(session);
+        } finally {
+            session.close();
+        }
+        Path report = tempDir.resolve("metrics.csv");
+        instrumentation.writeReport(report.toString());
+
+        List<String> lines = Files.readAllLines(report);
+        assertTrue(lines.stream().anyMatch(x -> x.startsWith("phase,read,2,")));
+        assertTrue(lines.stream().anyMatch(x -> x.startsWith("phase,parse,2,")));
+        assertTrue(lines.stream().anyMatch(x -> x.startsWith("phase,detect,2,")));
+        assertThrows(IllegalStateException.class, session::getTestFileCompilationUnit);
+        assertThrows(IllegalStateException.class, () -> detector.detectSmellsClassLevel(session));
+    }
+
+    @Test
+    public void testPrescanDoesNotChangeResults() throws IOException {
+        String productionFile = write("Calculator.java", PRODUCTION_SOURCE);
+        String quietTestFile = write("QuietTest.java", "public class QuietTest {\n" +
+                "    public void testOuter() {\n" +
+                "        Runnable runnable = new Runnable() {\n" +
+                "            public void testInner() { }\n" +
+                "            public void run() { }\n" +
+                "        };\n" +
+                "    }\n" +
+                "}\n");
+        String escapedTestFile = write("EscapedTest.java", "public class EscapedTest {\n" +
+                "    public void testSleep() throws Exception {\n" +
+                "        Thread.\\u0073leep(1);\n" +
+                "    }\n" +
+                "}\n");
+        TestSmellDetector detector = new TestSmellDetector();
+        TestSmellDetector withoutPrescan = new TestSmellDetector();
+        withoutPrescan.setPrescan(false);
+
+        for (String testFile : new String[]{write("CalculatorTest.java", TEST_SOURCE), quietTestFile, escapedTestFile}) {
+            TestFile expected = withoutPrescan.detectSmellsMethodLevel(new TestFile("app", testFile, productionFile));
+            TestFile actual = detector.detectSmellsMethodLevel(new TestFile("app", testFile, productionFile));
+            assertEquals(summarize(expected), summarize(actual));
+            for (int i = 0; i < expected.getTestSmells().size(); i++) {
+                List<SmellyElement> expectedElements = expected.getTestSmells().get(i).getSmellyElements();
+                List<SmellyElement> actualElements = actual.getTestSmells().get(i).getSmellyElements();
+                for (int j = 0; j < expectedElements.size(); j++) {
+                    assertEquals(expectedElements.get(j).getData(), actualElements.get(j).getData());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMetricsAreRecordedPerTestMethod() throws IOException {
+        String productionFile = write("Calculator.java", PRODUCTION_SOURCE);
+        String testFile = write("CalculatorTest.java", TEST_SOURCE);
+
+        TestFile result = new TestSmellDetector().detectSmellsMethodLevel(new TestFile("app", testFile, productionFile));
+
+        SmellyElement testBoth = find(result, "Assertion Roulette").getSmellyElements().get(0);
+        assertEquals("testBoth", testBoth.getElementName());
+        assertEquals(2, testBoth.getMetric(Metric.ASSERT_COUNT));
+        assertFalse(testBoth.hasMetric(Metric.PRINT_COUNT));
+        assertEquals("2", testBoth.getData().get("AssertCount"));
+        SmellyElement testAdd = find(result, "Conditional Test Logic").getSmellyElements().get(1);
+        assertEquals(1, testAdd.getMetric(Metric.IF_COUNT));
+    }
+}
@@ -0,0 +1,32 @@
+package testsmell;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenScannerTest {
+
+    @Test
+    public void testOverlappingTokensAreFound() {
+        TokenScanner scanner = new TokenScanner(Arrays.asList("File", "FileOutputStream", "Output", "he", "she", "hers"));
+
+        long tokens = scanner.scan("new FileOutputStream(\"ushers\")".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(scanner.mask("File") | scanner.mask("FileOutputStream") | scanner.mask("Output")
+                | scanner.mask("he") | scanner.mask("she") | scanner.mask("hers"), tokens);
+        assertEquals(scanner.mask("he"), scanner.scan("téhe Filé".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0, scanner.scan(new byte[0]));
+    }
+
+    @Test
+    public void testTokensCanBeMatchedIgnoringCase() {
+        TokenScanner scanner = new TokenScanner(TokenScanner.ignoringCase("test"));
+
+        assertEquals(16, scanner.getTokens().size());
+        assertNotEquals(0, scanner.scan("void tEsTSomething()".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0, scanner.scan("void tst()".getBytes(StandardCharsets.UTF_8)));
+    }
+}